@@ -0,0 +1,48 @@
+package com.nodestand.controllers.serial;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nodestand.test.SyntheticGraph;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializes a synthetic tree of depth levels with width children per assertion. Override the sizes with
+ * e.g. -Pjmh.args="GraphSerialization -p depth=4 -p width=8".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GraphSerializationBenchmark {
+
+    @Param({"2", "3"})
+    public int depth;
+
+    @Param({"5"})
+    public int width;
+
+    @Param({"20"})
+    public int authorCount;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private QuickGraphResponse graph;
+
+    @Setup
+    public void setup() {
+        graph = SyntheticGraph.tree(depth, width, authorCount);
+    }
+
+    @Benchmark
+    public byte[] quickGraphResponse() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(graph);
+    }
+
+    @Benchmark
+    public byte[] compactGraphResponse() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(new CompactGraphResponse(graph));
+    }
+}
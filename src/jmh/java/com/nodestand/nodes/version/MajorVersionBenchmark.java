@@ -0,0 +1,51 @@
+package com.nodestand.nodes.version;
+
+import com.nodestand.nodes.Author;
+import com.nodestand.util.IdGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MajorVersionBenchmark {
+
+    @Param({"2", "10", "50"})
+    public int edgeCount;
+
+    private MajorVersion majorVersion;
+    private Author author;
+    private List<String> childMajorVersions;
+
+    @Setup
+    public void setup() {
+        author = new Author(null, "Jim");
+        majorVersion = new MajorVersion(1, new VersionAggregator(), author);
+        childMajorVersions = new ArrayList<>();
+        for (int i = 0; i < edgeCount; i++) {
+            childMajorVersions.add(IdGenerator.newId());
+        }
+        majorVersion.mergeEdgeOwners(author, childMajorVersions);
+    }
+
+    @Benchmark
+    public Map<String, String> getEdgeOwners() {
+        return majorVersion.getEdgeOwners();
+    }
+
+    /**
+     * Every id is already present, so the owners stay the same size from one invocation to the next.
+     */
+    @Benchmark
+    public MajorVersion mergeEdgeOwners() {
+        majorVersion.mergeEdgeOwners(author, childMajorVersions);
+        return majorVersion;
+    }
+}
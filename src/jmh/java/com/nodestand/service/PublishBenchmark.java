@@ -0,0 +1,106 @@
+package com.nodestand.service;
+
+import ch.qos.logback.classic.Logger;
+import com.nodestand.nodes.ArgumentNode;
+import com.nodestand.nodes.Author;
+import com.nodestand.nodes.NodeRulesException;
+import com.nodestand.nodes.assertion.AssertionNode;
+import com.nodestand.nodes.repository.UserRepository;
+import com.nodestand.nodes.source.SourceNode;
+import com.nodestand.service.argument.ArgumentService;
+import com.nodestand.service.argument.ArgumentTestUtil;
+import com.nodestand.test.IntegrationContext;
+import org.neo4j.ogm.session.Session;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishing a whole tree of drafts at once against the embedded database, through the same service call the publish
+ * endpoint makes.
+ *
+ * Every level of the tree is an assertion with width children: width - 1 interpretations of their own sources, and
+ * the assertion for the next level down. The bottom level has only interpretations. A fresh tree is built before each
+ * publish, outside the timing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PublishBenchmark {
+
+    @Param({"5"})
+    public int depth;
+
+    @Param({"10"})
+    public int width;
+
+    private AnnotationConfigApplicationContext context;
+    private ArgumentService argumentService;
+    private Session session;
+
+    private Author author;
+    private long userId;
+    private long draftRootId;
+
+    @Setup
+    public void setup() {
+        // With no logback config on the benchmark classpath everything logs at DEBUG, which would swamp the timings.
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(ch.qos.logback.classic.Level.WARN);
+
+        context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().setActiveProfiles("integration");
+        context.register(IntegrationContext.class);
+        context.refresh();
+
+        argumentService = context.getBean(ArgumentService.class);
+        session = context.getBean(Session.class);
+
+        author = ArgumentTestUtil.registerUser(context.getBean(UserRepository.class), "publisher", "Publisher");
+        userId = author.getUser().getNodeId();
+    }
+
+    @Setup(Level.Invocation)
+    public void createDraftTree() throws NodeRulesException {
+        draftRootId = createLevel(depth).getId();
+        session.clear(); // Publish like a fresh request would, with nothing loaded yet.
+    }
+
+    private AssertionNode createLevel(int levelsLeft) throws NodeRulesException {
+        List<ArgumentNode> children = new ArrayList<>(width);
+        for (int i = levelsLeft > 1 ? 1 : 0; i < width; i++) {
+            SourceNode source = argumentService.createSource(userId, author.getStableId(), "Source " + i, "Q",
+                    "http://example.com/" + i);
+            children.add(argumentService.createInterpretation(userId, author.getStableId(), "Interpretation " + i, "Q",
+                    "Body", source.getId()));
+        }
+        if (levelsLeft > 1) {
+            children.add(createLevel(levelsLeft - 1));
+        }
+
+        StringBuilder body = new StringBuilder("Level " + levelsLeft);
+        List<Long> links = new ArrayList<>(children.size());
+        for (ArgumentNode child : children) {
+            body.append(" {{[").append(child.getBody().getMajorVersion().getStableId()).append("]link}}");
+            links.add(child.getId());
+        }
+        return argumentService.createAssertion(userId, author.getStableId(), "Level " + levelsLeft, "Q",
+                body.toString(), links);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public ArgumentNode publishTree() throws Exception {
+        return argumentService.publishNode(userId, draftRootId, null).getRootNode();
+    }
+}
@@ -0,0 +1,89 @@
+package com.nodestand.service.search;
+
+import com.nodestand.nodes.NodeInputException;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Compares the inverted index against the scan that /search used to do, a case-insensitive regex over every title.
+ * The regex baseline runs in memory, so it flatters the old approach: the real query also paid for a label scan in
+ * neo4j.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SearchBenchmark {
+
+    private static final String[] WORDS = {
+            "climate", "carbon", "tax", "taxes", "housing", "rent", "zoning", "transit", "rail", "bus", "school",
+            "teacher", "energy", "nuclear", "solar", "wind", "health", "insurance", "trade", "tariff", "wage",
+            "immigration", "border", "crime", "police", "court", "vote", "election", "budget", "deficit", "debt",
+            "water", "farm", "food", "privacy", "speech", "internet", "science", "research", "space"
+    };
+
+    private static final int FILLER_WORDS = 20000;
+
+    @Param({"100000"})
+    public int bodyCount;
+
+    @Param({"climate", "tax rail", "imm"})
+    public String query;
+
+    private InvertedIndex index;
+    private String[] titles;
+    private Pattern pattern;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        index = new InvertedIndex();
+        titles = new String[bodyCount];
+        for (int i = 0; i < bodyCount; i++) {
+            titles[i] = sentence(random, 4);
+            index.put(new InvertedIndex.Document(i, "assertion", "mv" + i, titles[i], "Original",
+                    random.nextInt(10) > 0, (long) random.nextInt(100)), sentence(random, 30));
+        }
+        pattern = Pattern.compile(String.format("(?i).*%s.*", query));
+    }
+
+    /**
+     * One word in five is a topic word; the rest come from a long tail of filler words with a roughly Zipfian
+     * distribution, which is closer to real text than drawing everything from a small vocabulary.
+     */
+    private static String sentence(Random random, int words) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            builder.append(i == 0 ? "" : " ");
+            if (random.nextInt(5) == 0) {
+                builder.append(WORDS[random.nextInt(WORDS.length)]);
+            } else {
+                builder.append("filler").append((int) Math.pow(FILLER_WORDS, random.nextDouble()));
+            }
+        }
+        return builder.toString();
+    }
+
+    @Benchmark
+    public InvertedIndex.Page invertedIndex() throws NodeInputException {
+        return index.search(query, 42L, null, null, 50);
+    }
+
+    /**
+     * Only the matching, like the old query; it didn't rank or page either.
+     */
+    @Benchmark
+    public void regexTitleScan(Blackhole blackhole) {
+        for (String title : titles) {
+            if (pattern.matcher(title).matches()) {
+                blackhole.consume(title);
+            }
+        }
+    }
+}
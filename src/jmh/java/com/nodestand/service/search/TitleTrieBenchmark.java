@@ -0,0 +1,57 @@
+package com.nodestand.service.search;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One typeahead lookup per keystroke, against the same kind of titles as {@link SearchBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TitleTrieBenchmark {
+
+    private static final String[] WORDS = {
+            "climate", "carbon", "tax", "taxes", "housing", "rent", "zoning", "transit", "rail", "bus", "school",
+            "teacher", "energy", "nuclear", "solar", "wind", "health", "insurance", "trade", "tariff", "wage"
+    };
+
+    @Param({"100000"})
+    public int titleCount;
+
+    @Param({"c", "cli", "climate tax", "filler12"})
+    public String prefix;
+
+    private TitleTrie trie;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        List<TitleTrie.Title> titles = new ArrayList<>();
+        for (int i = 0; i < titleCount; i++) {
+            StringBuilder title = new StringBuilder();
+            for (int w = 0; w < 5; w++) {
+                title.append(w == 0 ? "" : " ");
+                if (random.nextInt(3) == 0) {
+                    title.append(WORDS[random.nextInt(WORDS.length)]);
+                } else {
+                    title.append("filler").append(random.nextInt(20000));
+                }
+            }
+            titles.add(new TitleTrie.Title(i, i, "mv" + i, "assertion", title.toString(), "Original"));
+        }
+        trie = new TitleTrie(titles);
+    }
+
+    @Benchmark
+    public List<TitleTrie.Match> suggest() {
+        return trie.suggest(prefix, TitleTrie.MAX_SUGGESTIONS);
+    }
+}
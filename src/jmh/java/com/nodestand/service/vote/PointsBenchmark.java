@@ -0,0 +1,63 @@
+package com.nodestand.service.vote;
+
+import com.nodestand.nodes.vote.VoteType;
+import com.nodestand.util.IdGenerator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The pure-Java part of scoring a vote. Lives in the same package as VoteServiceNeo4j to reach its package-private
+ * helpers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PointsBenchmark {
+
+    private static final String[] NODE_TYPES = {"assertion", "interpretation", "source"};
+
+    @Param({"2", "10", "50"})
+    public int edgeCount;
+
+    @Param({"3"})
+    public int ownerCount;
+
+    private Set<String> childMajorVersions;
+    private Map<String, String> edgeOwners;
+
+    @Setup
+    public void setup() {
+        childMajorVersions = new HashSet<>();
+        edgeOwners = new HashMap<>();
+        for (int i = 0; i < edgeCount; i++) {
+            String mvId = IdGenerator.newId();
+            childMajorVersions.add(mvId);
+            if (i % 5 != 0) { // Leave a few unowned, like an incomplete mapping would.
+                edgeOwners.put(mvId, "author" + (i % ownerCount));
+            }
+        }
+    }
+
+    @Benchmark
+    public Map<String, Long> countEdgesByOwner() {
+        return VoteServiceNeo4j.countEdgesByOwner(childMajorVersions, edgeOwners);
+    }
+
+    @Benchmark
+    public void getPoints(Blackhole blackhole) {
+        for (VoteType voteType : VoteType.values()) {
+            for (String nodeType : NODE_TYPES) {
+                blackhole.consume(VoteServiceNeo4j.getPoints(voteType, nodeType, edgeCount));
+            }
+        }
+    }
+}
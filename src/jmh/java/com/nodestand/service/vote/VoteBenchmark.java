@@ -0,0 +1,120 @@
+package com.nodestand.service.vote;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.nodestand.controllers.serial.EditResult;
+import com.nodestand.nodes.Author;
+import com.nodestand.nodes.Node;
+import com.nodestand.nodes.assertion.AssertionNode;
+import com.nodestand.nodes.repository.UserRepository;
+import com.nodestand.nodes.vote.VoteType;
+import com.nodestand.service.argument.ArgumentService;
+import com.nodestand.service.argument.ArgumentTestUtil;
+import com.nodestand.test.IntegrationContext;
+import org.neo4j.ogm.session.Session;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * End to end latency of a vote against the embedded database, as the number of authors who own links on the voted
+ * node grows. Each of them gets points, so this measures how the owner lookups and point writes scale.
+ *
+ * The voter flips between GREAT and WEAK, so every vote takes points back from each owner and gives new ones.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class VoteBenchmark {
+
+    @Param({"1", "4", "16"})
+    public int ownerCount;
+
+    private AnnotationConfigApplicationContext context;
+    private VoteService voteService;
+    private Session session;
+    private TransactionTemplate transaction;
+
+    private String voterStableId;
+    private String rootStableId;
+    private boolean great;
+
+    @Setup
+    public void setup() throws Exception {
+        // With no logback config on the benchmark classpath everything logs at DEBUG, which would swamp the timings.
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+
+        context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().setActiveProfiles("integration");
+        context.register(IntegrationContext.class);
+        context.refresh();
+
+        ArgumentService argumentService = context.getBean(ArgumentService.class);
+        UserRepository userRepository = context.getBean(UserRepository.class);
+        voteService = context.getBean(VoteService.class);
+        session = context.getBean(Session.class);
+        transaction = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+        voterStableId = ArgumentTestUtil.registerUser(userRepository, "voter", "Voter").getUser().getStableId();
+
+        // Each owner in turn edits the root to add a link to a triple of their own.
+        AssertionNode root = null;
+        for (int i = 0; i < ownerCount; i++) {
+            Author owner = ArgumentTestUtil.registerUser(userRepository, "owner" + i, "Owner " + i);
+            long userId = owner.getUser().getNodeId();
+            AssertionNode child = ArgumentTestUtil.createPublishedTriple(argumentService, owner);
+            String link = " {{[" + child.getBody().getMajorVersion().getStableId() + "]link " + i + "}}";
+
+            if (root == null) {
+                root = argumentService.createAssertion(userId, owner.getStableId(), "Root", "Q", "Root" + link,
+                        singletonList(child.getId()));
+                root = (AssertionNode) argumentService.publishNode(userId, root.getId(), null).getRootNode();
+            } else {
+                EditResult draft = argumentService.makeDraft(userId, owner.getStableId(), root.getId());
+                List<Long> links = draft.getEditedNode().getGraphChildren().stream().map(Node::getId)
+                        .collect(Collectors.toList());
+                links.add(child.getId());
+                AssertionNode edited = argumentService.editAssertion(userId, draft.getEditedNode().getId(), "Root", "Q",
+                        root.getBody().getBody() + link, links, null);
+                root = (AssertionNode) argumentService.publishNode(userId, edited.getId(), null).getRootNode();
+            }
+            session.clear();
+        }
+        rootStableId = root.getStableId();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void vote() {
+        great = !great;
+        transaction.execute(status -> {
+            try {
+                voteService.voteNode(voterStableId, rootStableId, great ? VoteType.GREAT : VoteType.WEAK);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+            return null;
+        });
+        session.clear(); // The next vote should act like a fresh request.
+    }
+
+    private static List<Long> singletonList(long id) {
+        List<Long> list = new ArrayList<>();
+        list.add(id);
+        return list;
+    }
+}
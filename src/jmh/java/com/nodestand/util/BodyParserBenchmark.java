@@ -0,0 +1,70 @@
+package com.nodestand.util;
+
+import com.nodestand.nodes.Node;
+import com.nodestand.nodes.NodeRulesException;
+import com.nodestand.nodes.assertion.AssertionNode;
+import com.nodestand.test.SyntheticGraph;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BodyParserBenchmark {
+
+    private static final Pattern LINK_PATTERN = Pattern.compile("\\{\\{\\[([0-9a-z]{1,25})\\](.+?)(?=}})\\}\\}");
+
+    @Param({"2", "10", "50"})
+    public int linkCount;
+
+    private String bodyText;
+    private List<Node> children;
+
+    @Setup
+    public void setup() {
+        AssertionNode root = (AssertionNode) SyntheticGraph.tree(1, linkCount, 5).getRootNode();
+        bodyText = root.getBody().getBody();
+        children = new ArrayList<>(root.getSupportingNodes());
+    }
+
+    @Benchmark
+    public Set<String> getMajorVersions() {
+        return BodyParser.getMajorVersions(bodyText);
+    }
+
+    @Benchmark
+    public String[] validateAndSortLinks() throws NodeRulesException {
+        // The children already have their major versions, so the repository is never consulted.
+        return BodyParser.validateAndSortLinks(children, bodyText, null);
+    }
+
+    @Benchmark
+    public void scanBodyText(Blackhole blackhole) {
+        BodyLinkScanner.scan(bodyText, (text, idStart, idEnd, labelStart, labelEnd) -> {
+            blackhole.consume(idStart);
+            blackhole.consume(labelEnd);
+        });
+    }
+
+    /**
+     * The regex the scanner replaced, kept as a baseline.
+     */
+    @Benchmark
+    public void regexBodyText(Blackhole blackhole) {
+        Matcher matcher = LINK_PATTERN.matcher(bodyText);
+        while (matcher.find()) {
+            blackhole.consume(matcher.group(1));
+            blackhole.consume(matcher.group(2));
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.nodestand.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class IdGeneratorBenchmark {
+
+    @Benchmark
+    public String newId() {
+        return IdGenerator.newId();
+    }
+}
@@ -0,0 +1,51 @@
+package com.nodestand.util;
+
+import com.nodestand.nodes.Node;
+import com.nodestand.nodes.assertion.AssertionNode;
+import com.nodestand.test.SyntheticGraph;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TwoWayUtilBenchmark {
+
+    @Param({"2", "10", "50"})
+    public int childCount;
+
+    private AssertionNode parent;
+    private Set<Node> allChildren;
+    private Set<Node> halfOfChildren;
+    private boolean useHalf;
+
+    @Setup
+    public void setup() {
+        parent = (AssertionNode) SyntheticGraph.tree(1, childCount, 5).getRootNode();
+        allChildren = new HashSet<>(parent.getSupportingNodes());
+        List<Node> ordered = new ArrayList<>(allChildren);
+        halfOfChildren = new HashSet<>(ordered.subList(0, childCount / 2));
+
+        // The synthetic graph only links downward; this fills in the dependent nodes on the children.
+        parent.setSupportingNodes(new HashSet<>());
+        TwoWayUtil.updateSupportingNodes(parent, new HashSet<>(allChildren));
+    }
+
+    /**
+     * Alternates between dropping half of the children and adding them back, so both directions get exercised.
+     */
+    @Benchmark
+    public AssertionNode updateSupportingNodes() {
+        useHalf = !useHalf;
+        TwoWayUtil.updateSupportingNodes(parent, new HashSet<>(useHalf ? halfOfChildren : allChildren));
+        return parent;
+    }
+}
@@ -10,6 +10,7 @@ import org.springframework.context.annotation.ScopedProxyMode;
 import org.springframework.core.env.Environment;
 import org.springframework.data.neo4j.config.Neo4jConfiguration;
 import org.springframework.data.neo4j.repository.config.EnableNeo4jRepositories;
+import org.springframework.transaction.PlatformTransactionManager;
 
 @org.springframework.context.annotation.Configuration
 @EnableNeo4jRepositories(basePackages = "com.nodestand.nodes")
@@ -49,4 +50,10 @@ public class Neo4jConfig extends Neo4jConfiguration {
         return super.getSession();
     }
 
+    @Override
+    @Bean
+    public PlatformTransactionManager transactionManager() throws Exception {
+        return new SynchronizingTransactionManager(super.transactionManager());
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,93 @@
+package com.nodestand;
+
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+/**
+ * Adds transaction synchronization to the transaction manager that spring-data-neo4j provides, which implements
+ * PlatformTransactionManager directly and never activates it. Without this, code that registers an afterCommit
+ * callback finds no synchronization active and runs it straight away, even if the transaction later rolls back.
+ *
+ * The outermost transaction on a thread owns the synchronization: callbacks run after it commits or rolls back, and
+ * transactions that join it leave them alone.
+ */
+public class SynchronizingTransactionManager implements PlatformTransactionManager {
+
+    private final PlatformTransactionManager delegate;
+
+    private final ThreadLocal<TransactionStatus> owner = new ThreadLocal<>();
+
+    public SynchronizingTransactionManager(PlatformTransactionManager delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public TransactionStatus getTransaction(TransactionDefinition definition) throws TransactionException {
+        TransactionStatus status = delegate.getTransaction(definition);
+        if (status.isNewTransaction() && !TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.initSynchronization();
+            owner.set(status);
+        }
+        return status;
+    }
+
+    @Override
+    public void commit(TransactionStatus status) throws TransactionException {
+        if (owner.get() != status) {
+            delegate.commit(status);
+            return;
+        }
+        try {
+            delegate.commit(status);
+        } catch (RuntimeException | Error e) {
+            complete(TransactionSynchronization.STATUS_UNKNOWN);
+            throw e;
+        }
+        List<TransactionSynchronization> synchronizations = release();
+        try {
+            for (TransactionSynchronization synchronization : synchronizations) {
+                synchronization.afterCommit();
+            }
+        } finally {
+            for (TransactionSynchronization synchronization : synchronizations) {
+                synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+            }
+        }
+    }
+
+    @Override
+    public void rollback(TransactionStatus status) throws TransactionException {
+        if (owner.get() != status) {
+            delegate.rollback(status);
+            return;
+        }
+        try {
+            delegate.rollback(status);
+        } finally {
+            complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+        }
+    }
+
+    private void complete(int completionStatus) {
+        for (TransactionSynchronization synchronization : release()) {
+            synchronization.afterCompletion(completionStatus);
+        }
+    }
+
+    /**
+     * Ends the synchronization before any callback runs, so that a callback that throws can't leave it behind for
+     * the next transaction on this thread.
+     */
+    private List<TransactionSynchronization> release() {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        owner.remove();
+        return synchronizations;
+    }
+}
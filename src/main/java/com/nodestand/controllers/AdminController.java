@@ -0,0 +1,59 @@
+package com.nodestand.controllers;
+
+import com.nodestand.service.argument.GraphCache;
+import com.nodestand.service.argument.GroundingBackfill;
+import com.nodestand.service.argument.LinkIndexBackfill;
+import com.nodestand.service.vote.ScoreLogger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Collections;
+import java.util.Map;
+
+@RestController
+public class AdminController {
+
+    private final LinkIndexBackfill linkIndexBackfill;
+
+    private final GroundingBackfill groundingBackfill;
+
+    private final ScoreLogger scoreLogger;
+
+    private final GraphCache graphCache;
+
+    @Autowired
+    public AdminController(LinkIndexBackfill linkIndexBackfill, GroundingBackfill groundingBackfill,
+                           ScoreLogger scoreLogger, GraphCache graphCache) {
+        this.linkIndexBackfill = linkIndexBackfill;
+        this.groundingBackfill = groundingBackfill;
+        this.scoreLogger = scoreLogger;
+        this.graphCache = graphCache;
+    }
+
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @RequestMapping(value = "/admin/backfillLinkIndex", method = RequestMethod.POST)
+    public Map<String, Integer> backfillLinkIndex() {
+        return Collections.singletonMap("indexed", linkIndexBackfill.backfill());
+    }
+
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @RequestMapping(value = "/admin/backfillGrounded", method = RequestMethod.POST)
+    public Map<String, Integer> backfillGrounded() {
+        return Collections.singletonMap("grounded", groundingBackfill.backfill());
+    }
+
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @RequestMapping("/admin/scoreLoggerStats")
+    public ScoreLogger.Stats scoreLoggerStats() {
+        return scoreLogger.getStats();
+    }
+
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @RequestMapping("/admin/graphCacheStats")
+    public GraphCache.Stats graphCacheStats() {
+        return graphCache.getStats();
+    }
+}
@@ -39,7 +39,7 @@ public class EditController {
     public ArgumentNode editAssertion(@RequestBody EditAssertionInput input) throws NotAuthorizedException, NodeRulesException {
         Long userId = userService.getUserNodeIdFromSecurityContext();
 
-        return argumentService.editAssertion(userId, input.nodeId, input.title, input.qualifier, input.body, input.links);
+        return argumentService.editAssertion(userId, input.nodeId, input.title, input.qualifier, input.body, input.links, input.editVersion);
     }
 
     public static class EditAssertionInput {
@@ -49,6 +49,7 @@ public class EditController {
         public String qualifier;
         public String body;
         public List<Long> links;
+        public Long editVersion; // The one the client last saw, if it wants conflicting edits refused.
     }
 
     @PreAuthorize("hasRole('ROLE_USER')")
@@ -57,7 +58,7 @@ public class EditController {
 
         Long userId = userService.getUserNodeIdFromSecurityContext();
 
-        return argumentService.editInterpretation(userId, input.nodeId, input.title, input.qualifier, input.body, input.sourceId);
+        return argumentService.editInterpretation(userId, input.nodeId, input.title, input.qualifier, input.body, input.sourceId, input.editVersion);
     }
 
     public static class EditInterpretationInput {
@@ -67,6 +68,7 @@ public class EditController {
         public String qualifier;
         public String body;
         public Long sourceId;
+        public Long editVersion;
     }
 
     @PreAuthorize("hasRole('ROLE_USER')")
@@ -74,7 +76,7 @@ public class EditController {
     public ArgumentNode editSource(@RequestBody EditLeafInput input) throws NotAuthorizedException, NodeRulesException {
         Long userId = userService.getUserNodeIdFromSecurityContext();
 
-        return argumentService.editSource(userId, input.nodeId, input.title, input.qualifier, input.url);
+        return argumentService.editSource(userId, input.nodeId, input.title, input.qualifier, input.url, input.editVersion);
     }
 
     @PreAuthorize("hasRole('ROLE_USER')")
@@ -82,7 +84,7 @@ public class EditController {
     public ArgumentNode editSubject(@RequestBody EditLeafInput input) throws NotAuthorizedException, NodeRulesException {
         Long userId = userService.getUserNodeIdFromSecurityContext();
 
-        return argumentService.editSubject(userId, input.nodeId, input.title, input.qualifier, input.url);
+        return argumentService.editSubject(userId, input.nodeId, input.title, input.qualifier, input.url, input.editVersion);
     }
 
     public static class EditLeafInput {
@@ -91,6 +93,7 @@ public class EditController {
         public String title;
         public String qualifier;
         public String url;
+        public Long editVersion;
     }
 
     @PreAuthorize("hasRole('ROLE_USER')")
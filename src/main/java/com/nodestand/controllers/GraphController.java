@@ -1,10 +1,17 @@
 package com.nodestand.controllers;
 
-import com.nodestand.controllers.serial.QuickGraphResponse;
+import com.nodestand.controllers.serial.CompactGraphResponse;
+import com.nodestand.controllers.serial.GraphPageResponse;
+import com.nodestand.controllers.serial.GraphSnapshot;
 import com.nodestand.nodes.ArgumentNode;
+import com.nodestand.nodes.NodeInputException;
 import com.nodestand.service.argument.ArgumentService;
 import com.nodestand.service.user.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -21,10 +28,52 @@ public class GraphController {
         this.userService = userService;
     }
 
+    /**
+     * Anonymous viewers get pre-serialized bytes with an ETag, and a 304 if they already have them.
+     *
+     * Clients that send Accept: application/vnd.finerpoints.compact+json, or format=compact, get a
+     * {@link CompactGraphResponse} instead.
+     *
+     * @param multiQuery If true, the graph is loaded the old way with several queries instead of one. This is only here
+     *                   so that the two approaches can be compared under load.
+     */
     @RequestMapping("/graph")
-    public QuickGraphResponse getGraph(@RequestParam(value="rootStableId", required=true) String rootStableId) {
+    public ResponseEntity<?> getGraph(@RequestParam(value="rootStableId", required=true) String rootStableId,
+                                      @RequestParam(value="multiQuery", required=false, defaultValue="false") boolean multiQuery,
+                                      @RequestParam(value="format", required=false) String format,
+                                      @RequestHeader(value="Accept", required=false) String accept,
+                                      @RequestHeader(value="If-None-Match", required=false) String ifNoneMatch) {
         Long userId = userService.getUserNodeIdFromSecurityContext();
-        return argumentService.getGraph(rootStableId, userId);
+        if ("compact".equals(format) || (accept != null && accept.contains(CompactGraphResponse.MEDIA_TYPE))) {
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType(CompactGraphResponse.MEDIA_TYPE))
+                    .body(new CompactGraphResponse(argumentService.getGraph(rootStableId, userId)));
+        }
+        if (multiQuery) {
+            return ResponseEntity.ok(argumentService.getGraphMultiQuery(rootStableId, userId));
+        }
+        if (userId == null) {
+            GraphSnapshot snapshot = argumentService.getAnonymousGraphSnapshot(rootStableId);
+            if (snapshot.getEtag().equals(ifNoneMatch)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(snapshot.getEtag()).build();
+            }
+            return ResponseEntity.ok()
+                    .eTag(snapshot.getEtag())
+                    .contentType(MediaType.APPLICATION_JSON_UTF8)
+                    .body(snapshot.getJson());
+        }
+        return ResponseEntity.ok(argumentService.getGraph(rootStableId, userId));
+    }
+
+    /**
+     * Chosen over the handler above whenever a depth is passed.
+     */
+    @RequestMapping(value="/graph", params="depth")
+    public GraphPageResponse getGraphPage(@RequestParam(value="rootStableId", required=true) String rootStableId,
+                                          @RequestParam(value="depth") int depth,
+                                          @RequestParam(value="cursor", required=false) String cursor) throws NodeInputException {
+        Long userId = userService.getUserNodeIdFromSecurityContext();
+        return argumentService.getGraphPage(rootStableId, userId, depth, cursor);
     }
 
     @RequestMapping("/fullDetail")
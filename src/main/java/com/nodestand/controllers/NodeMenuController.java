@@ -3,38 +3,104 @@ package com.nodestand.controllers;
 import com.nodestand.auth.NotAuthorizedException;
 import com.nodestand.nodes.ArgumentBody;
 import com.nodestand.nodes.ArgumentNode;
+import com.nodestand.nodes.NodeInputException;
 import com.nodestand.nodes.NodeRulesException;
+import com.nodestand.nodes.vote.VoteType;
 import com.nodestand.service.AuthorRulesUtil;
 import com.nodestand.service.argument.ArgumentService;
 import com.nodestand.service.user.UserService;
+import com.nodestand.service.vote.DecayingTopK;
+import com.nodestand.service.vote.TrendingNodes;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
+import java.util.stream.Collectors;
 
 @RestController
 public class NodeMenuController {
 
+    private static final int MAX_TRENDING = 100;
+
     private final ArgumentService argumentService;
 
     private final UserService userService;
 
+    private final TrendingNodes trendingNodes;
+
     @Autowired
-    public NodeMenuController(ArgumentService argumentService, UserService userService) {
+    public NodeMenuController(ArgumentService argumentService, UserService userService, TrendingNodes trendingNodes) {
         this.argumentService = argumentService;
         this.userService = userService;
+        this.trendingNodes = trendingNodes;
     }
 
+    /**
+     * @param order "trending" to put the roots with the most recent votes first, newest first after that.
+     *              Otherwise the order is unspecified.
+     */
     @Transactional
     @RequestMapping("/rootNodes")
-    public Set<ArgumentNode> getRootNodes() {
+    public Collection<ArgumentNode> getRootNodes(@RequestParam(value="order", required=false) String order) throws NodeInputException {
+
+        Set<ArgumentNode> rootNodes = argumentService.getRootNodes();
+        if (order == null) {
+            return rootNodes;
+        }
+        if (!order.equals("trending")) {
+            throw new NodeInputException("Unknown order: " + order);
+        }
+
+        Map<ArgumentNode, Double> scores = new HashMap<>();
+        for (ArgumentNode node : rootNodes) {
+            scores.put(node, trendingNodes.getScore(node.getType(), null, node.getBody().getMajorVersion().getStableId()));
+        }
+        return rootNodes.stream()
+                .sorted(Comparator.<ArgumentNode>comparingDouble(scores::get).reversed()
+                        .thenComparing(n -> n.getBody().getId(), Comparator.reverseOrder()))
+                .collect(Collectors.toList());
+    }
 
-        return argumentService.getRootNodes();
+    /**
+     * The published nodes with the most votes lately, where older votes count for less.
+     *
+     * @param nodeType e.g. "assertion"; all types if omitted
+     * @param voteType all vote types if omitted
+     */
+    @Transactional
+    @RequestMapping("/trending")
+    public List<Map<String, Object>> getTrending(@RequestParam(value="nodeType", required=false) String nodeType,
+                                                 @RequestParam(value="voteType", required=false) VoteType voteType,
+                                                 @RequestParam(value="limit", required=false, defaultValue="10") int limit) {
+
+        List<DecayingTopK.Trend> trends = trendingNodes.getTrending(nodeType, voteType, Math.min(limit, MAX_TRENDING));
+        if (trends.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Map<String, ArgumentNode> nodes = new HashMap<>();
+        for (ArgumentNode node : argumentService.getPublicNodes(trends.stream().map(t -> t.key).collect(Collectors.toList()))) {
+            // Keep the latest if there's more than one.
+            nodes.merge(node.getBody().getMajorVersion().getStableId(), node,
+                    (a, b) -> a.getBody().getId() > b.getBody().getId() ? a : b);
+        }
+
+        List<Map<String, Object>> trending = new ArrayList<>();
+        for (DecayingTopK.Trend trend : trends) {
+            ArgumentNode node = nodes.get(trend.key);
+            if (node == null) {
+                // No longer published.
+                continue;
+            }
+            Map<String, Object> entry = new HashMap<>();
+            entry.put("node", node);
+            entry.put("score", trend.score);
+            trending.add(entry);
+        }
+        return trending;
     }
 
     @Transactional
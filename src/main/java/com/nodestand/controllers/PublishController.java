@@ -45,7 +45,8 @@ public class PublishController {
 
         Long userId = userService.getUserNodeIdFromSecurityContext();
         Long nodeId = Long.valueOf((Integer) params.get("nodeId"));
+        Number editVersion = (Number) params.get("editVersion"); // Optional
 
-        return argumentService.publishNode(userId, nodeId);
+        return argumentService.publishNode(userId, nodeId, editVersion == null ? null : editVersion.longValue());
     }
 }
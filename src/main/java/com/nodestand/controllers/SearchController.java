@@ -1,12 +1,14 @@
 package com.nodestand.controllers;
 
 import com.nodestand.nodes.ArgumentBody;
-import com.nodestand.nodes.assertion.AssertionBody;
-import com.nodestand.nodes.interpretation.InterpretationBody;
+import com.nodestand.nodes.NodeInputException;
 import com.nodestand.nodes.repository.ArgumentBodyRepository;
-import com.nodestand.nodes.source.SourceBody;
+import com.nodestand.service.search.InvertedIndex;
+import com.nodestand.service.search.SearchIndex;
+import com.nodestand.service.search.TitleTrie;
 import com.nodestand.service.user.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -14,60 +16,74 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.*;
+import java.util.stream.Collectors;
 
 @RestController
 public class SearchController {
 
+    private static final int MAX_LIMIT = 100;
+
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final UserService userService;
 
     private final ArgumentBodyRepository argumentBodyRepository;
 
+    private final SearchIndex searchIndex;
+
     @Autowired
-    public SearchController(UserService userService, ArgumentBodyRepository argumentBodyRepository) {
+    public SearchController(UserService userService, ArgumentBodyRepository argumentBodyRepository, SearchIndex searchIndex) {
         this.userService = userService;
         this.argumentBodyRepository = argumentBodyRepository;
+        this.searchIndex = searchIndex;
     }
 
+    /**
+     * Matches every word of the query as a prefix of a word in the title, qualifier or body, best matches first, with
+     * only the best matching body of each major version. When there are more results, the X-Next-Cursor header holds
+     * the cursor for the next page.
+     */
     @PreAuthorize("hasRole('ROLE_USER')")
     @Transactional
     @RequestMapping("/search")
-    public List<ArgumentBody> findByTitle(@RequestParam String query, @RequestParam List<String> types) {
+    public ResponseEntity<List<ArgumentBody>> findByTitle(@RequestParam String query, @RequestParam List<String> types,
+                                                          @RequestParam(value="cursor", required=false) String cursor,
+                                                          @RequestParam(value="limit", required=false, defaultValue="50") int limit) throws NodeInputException {
 
         Long userId = userService.getUserNodeIdFromSecurityContext();
 
-        Set<ArgumentBody> richHits = argumentBodyRepository.queryTitlesRich(String.format("(?i).*%s.*", query), userId);
+        InvertedIndex.Page page = searchIndex.search(query, userId, types, cursor, Math.min(limit, MAX_LIMIT));
 
-        List<ArgumentBody> searchResults = new LinkedList<>();
+        Map<Long, ArgumentBody> bodiesById = new HashMap<>();
+        if (!page.hits.isEmpty()) {
+            List<Long> bodyIds = page.hits.stream().map(hit -> hit.bodyId).collect(Collectors.toList());
+            argumentBodyRepository.loadBodiesRich(bodyIds).forEach(body -> bodiesById.put(body.getId(), body));
+        }
 
-        Set<String> majorVersionIds = new HashSet<>();
+        // Back in rank order. A body can be missing if it was deleted after the search ran.
+        List<ArgumentBody> searchResults = page.hits.stream()
+                .map(hit -> bodiesById.get(hit.bodyId))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
 
-        List<Class> acceptableClasses = buildAcceptableClasses(types);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.nextCursor != null) {
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor);
+        }
+        return response.body(searchResults);
+    }
 
-        // Keep the search results in order. If there are multiple bodies corresponding to
-        // the same major version node, return only the first one.
-        // This is NOT the version number; it's the unique node id
-        richHits.stream().filter(body -> acceptableClasses.contains(body.getClass())).forEach(body -> {
-            String majorVersionId = body.getMajorVersion().getStableId(); // This is NOT the version number; it's the unique node id
-            if (!majorVersionIds.contains(majorVersionId)) {
-                searchResults.add(body);
-                majorVersionIds.add(majorVersionId);
-            }
-        });
+    /**
+     * Typeahead for linking: public titles, and the user's own drafts, with a word that starts with the prefix. Served
+     * from memory, so it is cheap enough to call on every keystroke.
+     */
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @RequestMapping("/suggest")
+    public List<TitleTrie.Title> suggest(@RequestParam String prefix, @RequestParam List<String> types,
+                                         @RequestParam(value="limit", required=false, defaultValue="10") int limit) {
 
-        return searchResults;
-    }
+        Long userId = userService.getUserNodeIdFromSecurityContext();
 
-    private List<Class> buildAcceptableClasses(List<String> types) {
-        List<Class> acceptableClasses = new ArrayList<>();
-        if (types.contains("assertion")) {
-            acceptableClasses.add(AssertionBody.class);
-        }
-        if (types.contains("interpretation")) {
-            acceptableClasses.add(InterpretationBody.class);
-        }
-        if (types.contains("source")) {
-            acceptableClasses.add(SourceBody.class);
-        }
-        return acceptableClasses;
+        return searchIndex.suggest(prefix, userId, types, limit);
     }
 }
@@ -8,15 +8,19 @@ import com.nodestand.nodes.repository.UserRepository;
 import com.nodestand.service.user.UserService;
 import com.nodestand.service.vote.ScoreLog;
 import com.nodestand.service.vote.ScoreLogReader;
+import com.nodestand.service.vote.ScoreRollups;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 @RestController
 public class UserController {
@@ -27,11 +31,15 @@ public class UserController {
 
     private final ScoreLogReader scoreLogReader;
 
+    private final ScoreRollups scoreRollups;
+
     @Autowired
-    public UserController(UserService userService, UserRepository userRepository, ScoreLogReader scoreLogReader) {
+    public UserController(UserService userService, UserRepository userRepository, ScoreLogReader scoreLogReader,
+                          ScoreRollups scoreRollups) {
         this.userService = userService;
         this.userRepository = userRepository;
         this.scoreLogReader = scoreLogReader;
+        this.scoreRollups = scoreRollups;
     }
 
     @Transactional
@@ -61,13 +69,49 @@ public class UserController {
     }
 
     @RequestMapping("/getScoreLog")
-    public List<ScoreLog> getScoreLog(@RequestParam String stableId) throws NodeRulesException {
+    public List<ScoreLog> getScoreLog(@RequestParam String stableId) throws IOException {
 
         List<ScoreLog> scoreLogForUser = scoreLogReader.getScoreLogForUser(stableId);
 
         return scoreLogForUser;
     }
 
+    /**
+     * Points per day and per week for the author's profile sparklines.
+     */
+    @RequestMapping("/scoreHistory")
+    public ScoreRollups.History getScoreHistory(@RequestParam String stableId) {
+
+        return scoreRollups.getHistory(stableId);
+    }
+
+    /**
+     * The authors who have earned the most points so far today or this week.
+     */
+    @Transactional
+    @RequestMapping("/leaderboard")
+    public List<Map<String, Object>> getLeaderboard(@RequestParam(value="period", required=false, defaultValue="WEEK") ScoreRollups.Period period,
+                                                    @RequestParam(value="limit", required=false, defaultValue="10") int limit) {
+
+        List<ScoreRollups.Standing> standings = scoreRollups.getLeaderboard(period, limit);
+        if (standings.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Map<String, Author> authors = new HashMap<>();
+        userRepository.loadAuthors(standings.stream().map(s -> s.authorStableId).collect(Collectors.toList()))
+                .forEach(author -> authors.put(author.getStableId(), author));
+
+        List<Map<String, Object>> leaderboard = new ArrayList<>();
+        for (ScoreRollups.Standing standing : standings) {
+            Map<String, Object> entry = new HashMap<>();
+            entry.put("author", authors.get(standing.authorStableId));
+            entry.put("points", standing.points);
+            leaderboard.add(entry);
+        }
+        return leaderboard;
+    }
+
     @RequestMapping("/canChangeAuthorName")
     public boolean canChangeAuthorName(@RequestParam String authorStableId) throws NodeRulesException {
 
@@ -1,8 +1,10 @@
 package com.nodestand.controllers;
 
+import com.nodestand.nodes.NodeInputException;
 import com.nodestand.nodes.NodeRulesException;
 import com.nodestand.nodes.User;
 import com.nodestand.nodes.comment.Comment;
+import com.nodestand.nodes.repository.UserRepository;
 import com.nodestand.nodes.version.MajorVersion;
 import com.nodestand.nodes.vote.ArgumentVote;
 import com.nodestand.nodes.vote.VoteType;
@@ -16,23 +18,30 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
 @RestController
 public class VoteController {
 
+    private static final int MAX_BATCH = 100;
+
     private final Session session;
 
     private final UserService userService;
 
     private final VoteService voteService;
 
+    private final UserRepository userRepository;
+
     @Autowired
-    public VoteController(Session session, UserService userService, VoteService voteService) {
+    public VoteController(Session session, UserService userService, VoteService voteService, UserRepository userRepository) {
         this.session = session;
         this.userService = userService;
         this.voteService = voteService;
+        this.userRepository = userRepository;
     }
 
     @Transactional
@@ -40,11 +49,10 @@ public class VoteController {
     @RequestMapping("/voteComment")
     public void voteComment(@RequestBody Map<String, Object> params) throws NodeRulesException {
 
-        User user = userService.getUserFromSecurityContext();
-
         Long commentId = Long.valueOf((Integer) params.get("commentId"));
         Boolean isUpvote = (Boolean) params.get("isUpvote");
 
+        User user = userRepository.loadUserWithCommentVote(userService.getUserFromSecurityContext().getStableId(), commentId);
         Comment comment = session.load(Comment.class, commentId);
 
         if (user.getAliases().stream().anyMatch(a -> a.getStableId().equals(comment.author.getStableId()))) {
@@ -61,10 +69,9 @@ public class VoteController {
     @PreAuthorize("hasRole('ROLE_USER')")
     @RequestMapping("/unvoteComment")
     public void unvoteComment(@RequestBody Map<String, Object> params) throws NodeRulesException {
-        Long userId = userService.getUserNodeIdFromSecurityContext();
-        User user = session.load(User.class, userId);
-
         Long commentId = Long.valueOf((Integer) params.get("commentId"));
+
+        User user = userRepository.loadUserWithCommentVote(userService.getUserFromSecurityContext().getStableId(), commentId);
         Comment comment = session.load(Comment.class, commentId);
         user.revokeCommentVote(comment);
 
@@ -88,6 +95,29 @@ public class VoteController {
         voteService.voteNode(user.getStableId(), voteBodyInput.nodeStableId, VoteType.valueOf(voteBodyInput.voteType.toUpperCase()));
     }
 
+    /**
+     * Like {@link #voteBody} for several nodes at once, all in one transaction. If any of the votes is not allowed,
+     * none of them are made.
+     */
+    @Transactional
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @RequestMapping("/voteBodies")
+    public void voteBodies(@RequestBody List<VoteBodyInput> voteBodyInputs) throws NodeRulesException {
+
+        if (voteBodyInputs.size() > MAX_BATCH) {
+            throw new NodeInputException("Can't vote on more than " + MAX_BATCH + " nodes at once.");
+        }
+
+        Map<String, VoteType> votes = new LinkedHashMap<>();
+        for (VoteBodyInput input : voteBodyInputs) {
+            votes.put(input.nodeStableId, VoteType.valueOf(input.voteType.toUpperCase()));
+        }
+
+        User user = userService.getUserFromSecurityContext();
+
+        voteService.voteNodes(user.getStableId(), votes);
+    }
+
     public static class UnvoteBodyInput {
         public String nodeStableId;
     }
@@ -0,0 +1,228 @@
+package com.nodestand.controllers.serial;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.nodestand.nodes.ArgumentBody;
+import com.nodestand.nodes.ArgumentNode;
+import com.nodestand.nodes.Author;
+import com.nodestand.nodes.assertion.AssertionBody;
+import com.nodestand.nodes.assertion.AssertionNode;
+import com.nodestand.nodes.interpretation.InterpretationBody;
+import com.nodestand.nodes.source.SourceBody;
+import com.nodestand.nodes.subject.SubjectBody;
+import com.nodestand.nodes.version.MajorVersion;
+
+import java.util.*;
+
+/**
+ * The same information as a {@link QuickGraphResponse}, minus the duplication. Authors and major versions are listed
+ * once each and referred to by their index in those tables. Edges are a flat array of [start, end, start, end...]
+ * indexes into the nodes list. Previous versions are reduced to their ids.
+ */
+public class CompactGraphResponse {
+
+    public static final String MEDIA_TYPE = "application/vnd.finerpoints.compact+json";
+
+    private final List<AuthorRow> authors = new ArrayList<>();
+    private final List<MajorVersionRow> majorVersions = new ArrayList<>();
+    private final List<NodeRow> nodes = new ArrayList<>();
+    private final List<NodeRow> consumers = new ArrayList<>();
+    private final int[] edges;
+    private final Long rootId;
+    private final String rootStableId;
+
+    private final Map<String, Integer> authorIndexes = new HashMap<>();
+    private final Map<String, Integer> majorVersionIndexes = new HashMap<>();
+
+    public CompactGraphResponse(QuickGraphResponse graph) {
+        this.rootId = graph.getRootId();
+        this.rootStableId = graph.getRootStableId();
+
+        Map<Long, Integer> nodeIndexes = new HashMap<>();
+        for (ArgumentNode node : sortedById(graph.getNodes())) {
+            nodeIndexes.put(node.getId(), nodes.size());
+            nodes.add(toRow(node));
+        }
+
+        if (graph.getConsumers() != null) {
+            for (ArgumentNode consumer : sortedById(graph.getConsumers())) {
+                consumers.add(toRow(consumer));
+            }
+        }
+
+        int[] packed = new int[graph.getEdges().size() * 2];
+        int i = 0;
+        for (QuickEdge edge : graph.getEdges()) {
+            Integer start = nodeIndexes.get(edge.getStart());
+            Integer end = nodeIndexes.get(edge.getEnd());
+            if (start != null && end != null) {
+                packed[i++] = start;
+                packed[i++] = end;
+            }
+        }
+        this.edges = i == packed.length ? packed : Arrays.copyOf(packed, i);
+    }
+
+    private static List<ArgumentNode> sortedById(Set<ArgumentNode> nodes) {
+        List<ArgumentNode> sorted = new ArrayList<>(nodes);
+        sorted.sort(Comparator.comparing(ArgumentNode::getId, Comparator.nullsLast(Comparator.naturalOrder())));
+        return sorted;
+    }
+
+    private NodeRow toRow(ArgumentNode node) {
+        ArgumentBody body = node.getBody();
+        return new NodeRow(node, body, indexOf(body.author), indexOf(body.getMajorVersion()));
+    }
+
+    private Integer indexOf(Author author) {
+        if (author == null) {
+            return null;
+        }
+        return authorIndexes.computeIfAbsent(author.getStableId(), k -> {
+            authors.add(new AuthorRow(author));
+            return authors.size() - 1;
+        });
+    }
+
+    private Integer indexOf(MajorVersion majorVersion) {
+        if (majorVersion == null) {
+            return null;
+        }
+        return majorVersionIndexes.computeIfAbsent(majorVersion.getStableId(), k -> {
+            Integer authorIndex = indexOf(majorVersion.author);
+            majorVersions.add(new MajorVersionRow(majorVersion, authorIndex));
+            return majorVersions.size() - 1;
+        });
+    }
+
+    public List<AuthorRow> getAuthors() {
+        return authors;
+    }
+
+    public List<MajorVersionRow> getMajorVersions() {
+        return majorVersions;
+    }
+
+    public List<NodeRow> getNodes() {
+        return nodes;
+    }
+
+    public List<NodeRow> getConsumers() {
+        return consumers;
+    }
+
+    public int[] getEdges() {
+        return edges;
+    }
+
+    public Long getRootId() {
+        return rootId;
+    }
+
+    public String getRootStableId() {
+        return rootStableId;
+    }
+
+    public static class AuthorRow {
+        public final Long nodeId;
+        public final String stableId;
+        public final String displayName;
+        public final long nodePoints;
+
+        private AuthorRow(Author author) {
+            this.nodeId = author.getNodeId();
+            this.stableId = author.getStableId();
+            this.displayName = author.getDisplayName();
+            this.nodePoints = author.getNodePoints();
+        }
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class MajorVersionRow {
+        public final Long id;
+        public final String stableId;
+        public final int versionNumber;
+        public final Integer author;
+        public final int greatVotes;
+        public final int weakVotes;
+        public final int toucheVotes;
+        public final int trashVotes;
+        public final Map<String, String> edgeOwners;
+
+        private MajorVersionRow(MajorVersion majorVersion, Integer author) {
+            this.id = majorVersion.getId();
+            this.stableId = majorVersion.getStableId();
+            this.versionNumber = majorVersion.getVersionNumber();
+            this.author = author;
+            this.greatVotes = majorVersion.greatVotes;
+            this.weakVotes = majorVersion.weakVotes;
+            this.toucheVotes = majorVersion.toucheVotes;
+            this.trashVotes = majorVersion.trashVotes;
+            this.edgeOwners = majorVersion.getEdgeOwners();
+        }
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class NodeRow {
+        public final Long id;
+        public final String stableId;
+        public final String type;
+        public final Long previousVersionId;
+        public final String childOrder;
+        public final Long bodyId;
+        public final String title;
+        public final String qualifier;
+        public final String body;
+        public final String url;
+        public final Integer author;
+        public final Integer majorVersion;
+        public final int minorVersion;
+        public final Long bodyPreviousVersionId;
+        public final Long dateCreated;
+        public final Long dateEdited;
+        public final boolean editable;
+        @JsonProperty("public")
+        public final boolean isPublic;
+
+        private NodeRow(ArgumentNode node, ArgumentBody argumentBody, Integer author, Integer majorVersion) {
+            this.id = node.getId();
+            this.stableId = node.getStableId();
+            this.type = node.getType();
+            this.previousVersionId = node.getPreviousVersion() != null ? node.getPreviousVersion().getId() : null;
+            this.childOrder = node instanceof AssertionNode ? ((AssertionNode) node).getChildOrder() : null;
+            this.bodyId = argumentBody.getId();
+            this.title = argumentBody.getTitle();
+            this.qualifier = argumentBody.getQualifier();
+            this.body = bodyTextOf(argumentBody);
+            this.url = urlOf(argumentBody);
+            this.author = author;
+            this.majorVersion = majorVersion;
+            this.minorVersion = argumentBody.getMinorVersion();
+            this.bodyPreviousVersionId = argumentBody.getPreviousVersion() != null ? argumentBody.getPreviousVersion().getId() : null;
+            this.dateCreated = argumentBody.getDateCreated() != null ? argumentBody.getDateCreated().getTime() : null;
+            this.dateEdited = argumentBody.getDateEdited() != null ? argumentBody.getDateEdited().getTime() : null;
+            this.editable = argumentBody.isEditable();
+            this.isPublic = argumentBody.isPublic();
+        }
+
+        private static String bodyTextOf(ArgumentBody body) {
+            if (body instanceof AssertionBody) {
+                return ((AssertionBody) body).getBody();
+            }
+            if (body instanceof InterpretationBody) {
+                return ((InterpretationBody) body).getBody();
+            }
+            return null;
+        }
+
+        private static String urlOf(ArgumentBody body) {
+            if (body instanceof SourceBody) {
+                return ((SourceBody) body).getUrl();
+            }
+            if (body instanceof SubjectBody) {
+                return ((SubjectBody) body).getUrl();
+            }
+            return null;
+        }
+    }
+}
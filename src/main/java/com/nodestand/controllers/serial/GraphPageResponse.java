@@ -0,0 +1,56 @@
+package com.nodestand.controllers.serial;
+
+import com.nodestand.nodes.ArgumentNode;
+
+import java.util.Set;
+
+/**
+ * One page of a graph that is being fetched level by level. Pass the cursor back to get the next levels; it is null
+ * once there is nothing left below this page. Nodes reachable by more than one path may show up on more than one page.
+ */
+public class GraphPageResponse {
+
+    private Set<ArgumentNode> nodes;
+    private Set<QuickEdge> edges;
+    private Long rootId;
+    private String rootStableId;
+    private Set<ArgumentNode> consumers;
+    private String cursor;
+
+    public GraphPageResponse(Set<ArgumentNode> nodes, Set<QuickEdge> edges, Long rootId, String rootStableId,
+                             Set<ArgumentNode> consumers, String cursor) {
+        this.nodes = nodes;
+        this.edges = edges;
+        this.rootId = rootId;
+        this.rootStableId = rootStableId;
+        this.consumers = consumers;
+        this.cursor = cursor;
+    }
+
+    public Set<ArgumentNode> getNodes() {
+        return nodes;
+    }
+
+    public Set<QuickEdge> getEdges() {
+        return edges;
+    }
+
+    public Long getRootId() {
+        return rootId;
+    }
+
+    public String getRootStableId() {
+        return rootStableId;
+    }
+
+    /**
+     * Only filled in on the first page.
+     */
+    public Set<ArgumentNode> getConsumers() {
+        return consumers;
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+}
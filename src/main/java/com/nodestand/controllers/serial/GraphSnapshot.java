@@ -0,0 +1,49 @@
+package com.nodestand.controllers.serial;
+
+import com.nodestand.nodes.ArgumentNode;
+
+import java.util.Collection;
+import java.util.zip.CRC32;
+
+/**
+ * A QuickGraphResponse that has already been serialized to JSON, along with an ETag for it.
+ */
+public class GraphSnapshot {
+
+    private final byte[] json;
+    private final String etag;
+
+    public GraphSnapshot(byte[] json, String etag) {
+        this.json = json;
+        this.etag = etag;
+    }
+
+    /**
+     * The ETag leads with the highest minor and build versions in the graph, which move whenever anything in it is
+     * published. Vote counts and consumers can change without a version bump, so a checksum of the bytes follows.
+     */
+    public static GraphSnapshot of(Collection<ArgumentNode> nodes, byte[] json) {
+        int maxMinorVersion = -1;
+        int maxBuildVersion = -1;
+        for (ArgumentNode node : nodes) {
+            maxBuildVersion = Math.max(maxBuildVersion, node.getBuildVersion());
+            if (node.getBody() != null) {
+                maxMinorVersion = Math.max(maxMinorVersion, node.getBody().getMinorVersion());
+            }
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(json);
+
+        String etag = String.format("\"%d.%d-%x\"", maxMinorVersion, maxBuildVersion, crc.getValue());
+        return new GraphSnapshot(json, etag);
+    }
+
+    public byte[] getJson() {
+        return json;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+}
@@ -159,4 +159,11 @@ public abstract class ArgumentBody {
 
     @JsonIgnore
     public abstract Set<String> getMajorVersionsFromBodyText();
+
+    /**
+     * Bodies that link to other nodes from their text parse those links here and keep the result. Call it after
+     * changing the text. Setters don't do it themselves because neo4j-ogm calls them while loading.
+     */
+    public void indexLinks() {
+    }
 }
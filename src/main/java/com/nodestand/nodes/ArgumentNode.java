@@ -20,6 +20,26 @@ public abstract class ArgumentNode implements Node {
 
     protected int buildVersion = -1;
 
+    /**
+     * Set on publish, once everything below this node is known to end in sources or subjects. Public nodes can't lose
+     * their support, so checks for grounding can stop here. Drafts, and nodes published before this was recorded,
+     * are false and get walked.
+     */
+    private boolean grounded;
+
+    /**
+     * Goes up by one with every edit or publish that changes this node, so that clients can tell the server which
+     * version they saw and have the change refused if somebody else got there first. Only ever changed through
+     * {@link VersionHelper#claimEdits}.
+     */
+    private long editVersion;
+
+    /**
+     * On a draft of a public node, the editVersion that node had when the draft was made. Publishing the draft is
+     * refused if the public node has changed since. Null on everything else, and on drafts made before this existed.
+     */
+    private Long baseEditVersion;
+
     @Relationship(type="DEFINED_BY", direction = Relationship.OUTGOING)
     protected ArgumentBody body;
 
@@ -103,6 +123,32 @@ public abstract class ArgumentNode implements Node {
         return buildVersion >= 0;
     }
 
+    @JsonIgnore
+    public boolean isGrounded() {
+        return grounded;
+    }
+
+    public void setGrounded(boolean grounded) {
+        this.grounded = grounded;
+    }
+
+    public long getEditVersion() {
+        return editVersion;
+    }
+
+    public void setEditVersion(long editVersion) {
+        this.editVersion = editVersion;
+    }
+
+    @JsonIgnore
+    public Long getBaseEditVersion() {
+        return baseEditVersion;
+    }
+
+    public void setBaseEditVersion(Long baseEditVersion) {
+        this.baseEditVersion = baseEditVersion;
+    }
+
     @Override
     public boolean equals(Object other) {
         if (other == null) {
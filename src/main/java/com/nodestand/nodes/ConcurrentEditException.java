@@ -0,0 +1,14 @@
+package com.nodestand.nodes;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Somebody else changed the node since the version the request was based on. Reload and try again.
+ */
+@ResponseStatus(value = HttpStatus.CONFLICT)
+public class ConcurrentEditException extends NodeRulesException {
+    public ConcurrentEditException(String message) {
+        super(message);
+    }
+}
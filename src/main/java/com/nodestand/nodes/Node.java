@@ -13,6 +13,11 @@ public interface Node {
     ArgumentBody getBody();
     void setBody(ArgumentBody body);
     boolean isFinalized();
+    boolean isGrounded();
+    void setGrounded(boolean grounded);
+    long getEditVersion();
+    void setEditVersion(long editVersion);
+    Long getBaseEditVersion();
     Set<? extends Node> getDependentNodes();
     Node getPreviousVersion();
     void alterToPointToChild(Node replacementChild, Node existingChildNode) throws NodeRulesException;
@@ -15,7 +15,6 @@ import org.neo4j.ogm.annotation.typeconversion.DateLong;
 import org.springframework.security.core.GrantedAuthority;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 @NodeEntity
 public class User {
@@ -27,19 +26,21 @@ public class User {
     @Relationship(type="ARGUMENT_VOTE", direction = Relationship.OUTGOING)
     private Set<ArgumentVote> argumentVotes;
 
+    /**
+     * Major version id -> this user's vote on it. Built from argumentVotes the first time it's needed and kept in step
+     * with it after that, except when neo4j-ogm hands over a new set, which drops it.
+     */
     @Transient
-    private Map<Long, VoteType> bodyVotes;
+    private Map<Long, ArgumentVote> argumentVoteIndex;
 
     @Relationship(type="COMMENT_VOTE", direction = Relationship.OUTGOING)
     private Set<CommentVote> commentVotes;
 
     /**
-     * Mapping of comment node id to either 1 or -1, representing this user's up-vote or down-vote on that comment.
-     *
-     * Transient because it does not get persisted in the database.
+     * Comment id -> this user's vote on it, maintained like argumentVoteIndex.
      */
     @Transient
-    private Map<Long, Integer> commentVoteMap;
+    private Map<Long, CommentVote> commentVoteIndex;
 
     private String stableId;
 
@@ -87,22 +88,36 @@ public class User {
     @Relationship(type="ARGUMENT_VOTE", direction = Relationship.OUTGOING)
     public void setArgumentVotes(Set<ArgumentVote> argumentVotes) {
         this.argumentVotes = argumentVotes;
-        bodyVotes = argumentVotes.stream().collect(Collectors.toMap(v -> v.majorVersion.getId(), v -> v.voteType));
+        argumentVoteIndex = null;
     }
 
+    /**
+     * Only covers the votes that were loaded; see {@link com.nodestand.nodes.repository.UserRepository#loadUserWithVotes}.
+     */
     @JsonIgnore
     public Map<Long, VoteType> getBodyVotes() {
+        Map<Long, VoteType> bodyVotes = new HashMap<>();
+        for (Map.Entry<Long, ArgumentVote> entry : argumentVoteIndex().entrySet()) {
+            bodyVotes.put(entry.getKey(), entry.getValue().voteType);
+        }
         return bodyVotes;
     }
 
     @Relationship(type="COMMENT_VOTE", direction = Relationship.OUTGOING)
     public void setCommentVotes(Set<CommentVote> commentVotes) {
         this.commentVotes = commentVotes;
-        commentVoteMap = commentVotes.stream().collect(Collectors.toMap(c -> c.comment.getId(), c -> c.isUpvote ? 1 : -1));
+        commentVoteIndex = null;
     }
 
+    /**
+     * Mapping of comment node id to either 1 or -1, representing this user's up-vote or down-vote on that comment.
+     */
     @JsonIgnore
     public Map<Long, Integer> getCommentVoteMap() {
+        Map<Long, Integer> commentVoteMap = new HashMap<>();
+        for (Map.Entry<Long, CommentVote> entry : commentVoteIndex().entrySet()) {
+            commentVoteMap.put(entry.getKey(), entry.getValue().isUpvote ? 1 : -1);
+        }
         return commentVoteMap;
     }
 
@@ -166,46 +181,31 @@ public class User {
     }
 
     public Optional<ArgumentVote> getExistingVote(MajorVersion mv) {
-        if (argumentVotes == null) {
-            argumentVotes = new HashSet<>();
-        }
-
-        return argumentVotes.stream().filter(v -> v.majorVersion.getId().equals(mv.getId())).findFirst();
+        return Optional.ofNullable(argumentVoteIndex().get(mv.getId()));
     }
 
     public void registerNewVote(ArgumentVote newVote) throws NodeRulesException {
-
-        if (argumentVotes == null) {
-            argumentVotes = new HashSet<>();
-        }
-
+        argumentVoteIndex().put(newVote.majorVersion.getId(), newVote);
         argumentVotes.add(newVote);
     }
 
 
-    public void revokeVote(String majorVersionStableId) throws NodeRulesException {
-        argumentVotes.removeIf(v -> v.majorVersion.getStableId().equals(majorVersionStableId));
+    public void revokeVote(MajorVersion mv) throws NodeRulesException {
+        ArgumentVote vote = argumentVoteIndex().remove(mv.getId());
+        if (vote != null) {
+            argumentVotes.remove(vote);
+        }
     }
 
     public void registerCommentVote(Comment comment, boolean isUpvote) {
 
-        if (commentVotes == null) {
-            commentVotes = new HashSet<>();
-        }
-
-        if (commentVoteMap == null) {
-            commentVoteMap = new HashMap<>();
-        }
-
-        Optional<CommentVote> existingVote = commentVotes.stream().filter(v -> v.comment.getId().equals(comment.getId())).findFirst();
+        CommentVote existingVote = commentVoteIndex().get(comment.getId());
         int numericRepresentation = isUpvote ? 1 : -1;
 
-        if (existingVote.isPresent()) {
-            CommentVote vote = existingVote.get();
-            if (vote.isUpvote != isUpvote) {
-                commentVoteMap.put(comment.getId(), numericRepresentation);
+        if (existingVote != null) {
+            if (existingVote.isUpvote != isUpvote) {
                 comment.modifyScore(numericRepresentation * 2); // We're reversing the direction of a vote, so it's a two-point swing.
-                existingVote.get().isUpvote = isUpvote;
+                existingVote.isUpvote = isUpvote;
             }
         } else {
             CommentVote newVote = new CommentVote();
@@ -213,18 +213,44 @@ public class User {
             newVote.comment = comment;
             newVote.user = this;
             commentVotes.add(newVote);
-            commentVoteMap.put(comment.getId(), numericRepresentation);
+            commentVoteIndex.put(comment.getId(), newVote);
             comment.modifyScore(numericRepresentation);
         }
     }
 
     public void revokeCommentVote(Comment comment) throws NodeRulesException {
 
-        Optional<CommentVote> existingVote = commentVotes.stream().filter(v -> v.comment.getId().equals(comment.getId())).findFirst();
-        if (existingVote.isPresent()) {
-            comment.modifyScore(existingVote.get().isUpvote ? -1 : 1);
-            commentVotes.removeIf(v -> v.comment.getId().equals(comment.getId()));
+        CommentVote existingVote = commentVoteIndex().remove(comment.getId());
+        if (existingVote != null) {
+            comment.modifyScore(existingVote.isUpvote ? -1 : 1);
+            commentVotes.remove(existingVote);
+        }
+    }
+
+    private Map<Long, ArgumentVote> argumentVoteIndex() {
+        if (argumentVotes == null) {
+            argumentVotes = new HashSet<>();
+        }
+        if (argumentVoteIndex == null) {
+            argumentVoteIndex = new HashMap<>();
+            for (ArgumentVote vote : argumentVotes) {
+                argumentVoteIndex.put(vote.majorVersion.getId(), vote);
+            }
+        }
+        return argumentVoteIndex;
+    }
+
+    private Map<Long, CommentVote> commentVoteIndex() {
+        if (commentVotes == null) {
+            commentVotes = new HashSet<>();
+        }
+        if (commentVoteIndex == null) {
+            commentVoteIndex = new HashMap<>();
+            for (CommentVote vote : commentVotes) {
+                commentVoteIndex.put(vote.comment.getId(), vote);
+            }
         }
+        return commentVoteIndex;
     }
 
 
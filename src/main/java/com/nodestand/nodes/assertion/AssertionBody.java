@@ -8,6 +8,8 @@ import com.nodestand.nodes.version.MajorVersion;
 import com.nodestand.util.BodyParser;
 import org.neo4j.ogm.annotation.NodeEntity;
 
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Set;
 
 
@@ -16,6 +18,12 @@ public class AssertionBody extends ArgumentBody {
 
     private String body;
 
+    /**
+     * The major version stable ids linked from the body text, kept so that votes don't have to parse the text.
+     * Null for bodies saved before this existed, until they are published again or LinkIndexBackfill runs.
+     */
+    private String[] linkedMajorVersions;
+
     public AssertionBody() {}
 
     @Override
@@ -25,7 +33,15 @@ public class AssertionBody extends ArgumentBody {
 
     @Override
     public Set<String> getMajorVersionsFromBodyText() {
-        return BodyParser.getMajorVersions(body);
+        if (linkedMajorVersions == null) {
+            return BodyParser.getMajorVersions(body);
+        }
+        return new HashSet<>(Arrays.asList(linkedMajorVersions));
+    }
+
+    @Override
+    public void indexLinks() {
+        linkedMajorVersions = BodyParser.getMajorVersionArray(body);
     }
 
     public AssertionBody(String title, String qualifier, String body, Author author) {
@@ -36,6 +52,7 @@ public class AssertionBody extends ArgumentBody {
         super(title, qualifier, author, majorVersion);
 
         this.body = body;
+        indexLinks();
     }
 
     public String getBody() {
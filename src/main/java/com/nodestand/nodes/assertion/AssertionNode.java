@@ -10,6 +10,7 @@ import com.nodestand.util.BodyParser;
 import org.neo4j.ogm.annotation.NodeEntity;
 import org.neo4j.ogm.annotation.Relationship;
 
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -53,6 +54,18 @@ public class AssertionNode extends ArgumentNode {
 
         targetNode.getSupportingNodes().add(replacement);
 
+        // The replacement is a version of the same major version, so the link in the body text still fits and only
+        // the id in childOrder needs to change.
+        if (targetNode.childOrder != null) {
+            String[] order = targetNode.childOrder.split(",");
+            for (int i = 0; i < order.length; i++) {
+                if (order[i].equals(existing.getStableId())) {
+                    order[i] = replacement.getStableId();
+                }
+            }
+            targetNode.childOrder = String.join(",", order);
+        }
+
         if (replacement instanceof AssertionNode) {
             AssertionNode assertionReplacement = ((AssertionNode) replacement);
             if (assertionReplacement.getDependentNodes() == null) {
@@ -75,6 +88,25 @@ public class AssertionNode extends ArgumentNode {
         childOrder = String.join(",", links);
     }
 
+    /**
+     * Like {@link #updateChildOrder}, but skips validating the body text again when childOrder already names exactly
+     * the current children. Replacing a child with another version of it keeps childOrder in step, so this only does
+     * the work when the set of children changed some other way, e.g. a linked draft was discarded.
+     */
+    public void updateChildOrderIfChanged(ArgumentNodeRepository repo) throws NodeRulesException {
+        Set<String> ordered = new HashSet<>();
+        if (childOrder != null && !childOrder.isEmpty()) {
+            Collections.addAll(ordered, childOrder.split(","));
+        }
+        Set<String> children = new HashSet<>();
+        for (Node child : getGraphChildren()) {
+            children.add(child.getStableId());
+        }
+        if (childOrder == null || !ordered.equals(children)) {
+            updateChildOrder(repo);
+        }
+    }
+
     @Override
     public void alterToPointToChild(Node replacementChild, Node existing) throws NodeRulesException {
         if (!shouldEditInPlace()) {
@@ -87,6 +119,7 @@ public class AssertionNode extends ArgumentNode {
     public void copyContentTo(Node target) throws NodeRulesException {
         AssertionNode assertionTarget = (AssertionNode) target;
         assertionTarget.setSupportingNodes(supportingNodes);
+        assertionTarget.childOrder = childOrder;
 
         for (Node supportingNode : supportingNodes) {
             if (supportingNode instanceof AssertionNode) {
@@ -113,6 +146,7 @@ public class AssertionNode extends ArgumentNode {
 
         AssertionNode copy = new AssertionNode(freshBody);
         copy.setSupportingNodes(new HashSet<>(getSupportingNodes()));
+        copy.childOrder = childOrder;
         copy.setPreviousVersion(this);
 
         return copy;
@@ -6,12 +6,20 @@ import com.nodestand.nodes.ImmutableNodeException;
 import com.nodestand.nodes.version.MajorVersion;
 import com.nodestand.util.BodyParser;
 
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Set;
 
 public class InterpretationBody extends ArgumentBody {
 
     String body;
 
+    /**
+     * The major version stable ids linked from the body text, kept so that votes don't have to parse the text.
+     * Null for bodies saved before this existed, until they are published again or LinkIndexBackfill runs.
+     */
+    private String[] linkedMajorVersions;
+
     public InterpretationBody() {}
 
     @Override
@@ -22,7 +30,15 @@ public class InterpretationBody extends ArgumentBody {
 
     @Override
     public Set<String> getMajorVersionsFromBodyText() {
-        return BodyParser.getMajorVersions(body);
+        if (linkedMajorVersions == null) {
+            return BodyParser.getMajorVersions(body);
+        }
+        return new HashSet<>(Arrays.asList(linkedMajorVersions));
+    }
+
+    @Override
+    public void indexLinks() {
+        linkedMajorVersions = BodyParser.getMajorVersionArray(body);
     }
 
     public InterpretationBody(String title, String qualifier, String body, Author author) {
@@ -33,6 +49,7 @@ public class InterpretationBody extends ArgumentBody {
         super(title, qualifier, author, majorVersion);
 
         this.body = body;
+        indexLinks();
     }
 
     public String getBody() {
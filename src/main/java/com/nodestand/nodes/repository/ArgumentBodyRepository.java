@@ -4,12 +4,13 @@ import com.nodestand.nodes.ArgumentBody;
 import org.springframework.data.neo4j.annotation.Query;
 import org.springframework.data.neo4j.repository.GraphRepository;
 
+import java.util.Collection;
 import java.util.Set;
 
 public interface ArgumentBodyRepository extends GraphRepository<ArgumentBody> {
 
-    @Query("MATCH p=(u:User)<-[CONTROLLED_BY]-(:Author)<-[:AUTHORED_BY]-(n:ArgumentBody)-[:VERSION_OF]->(m:MajorVersion)" +
-            " WHERE n.title=~{0} AND (n.isPublic OR id(u)={1}) return p")
-    Set<ArgumentBody> queryTitlesRich(String query, long searcherId);
+    @Query("MATCH p=(u:User)<-[:CONTROLLED_BY]-(:Author)<-[:AUTHORED_BY]-(n:ArgumentBody)-[:VERSION_OF]->(m:MajorVersion)" +
+            " WHERE id(n) IN {0} return p")
+    Set<ArgumentBody> loadBodiesRich(Collection<Long> bodyIds);
 
 }
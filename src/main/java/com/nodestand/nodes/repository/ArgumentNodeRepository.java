@@ -7,6 +7,9 @@ import org.neo4j.ogm.model.Result;
 import org.springframework.data.neo4j.annotation.Query;
 import org.springframework.data.neo4j.repository.GraphRepository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public interface ArgumentNodeRepository extends GraphRepository<ArgumentNode> {
@@ -20,6 +23,40 @@ public interface ArgumentNodeRepository extends GraphRepository<ArgumentNode> {
             "-[:DEFINED_BY]->(body:ArgumentBody)-[:VERSION_OF]->(:MajorVersion)-[:AUTHORED_BY]->(:Author) return path")
     Set<ArgumentNode> getGraph(String stableRootId);
 
+    /**
+     * Loads everything that getGraph, getNodeRich and getConsumerNodes would load for the same root, but in a
+     * single round trip. Consumers are filtered the same way as the two getConsumerNodes overloads: public ones
+     * are always included, drafts only if they are controlled by the given user. Pass a null userId for an
+     * anonymous viewer.
+     *
+     * The single result row has the columns graphNodes, graphRels, rootNodes, rootRels, consumerNodes,
+     * consumerPathNodes and consumerRels. Only graphNodes and consumerNodes are meant to be read by the caller;
+     * the other columns are there so that the relationships get mapped onto the entities.
+     */
+    @Query("MATCH (root:ArgumentNode {stableId: {0}})" +
+            " OPTIONAL MATCH graphPath=(root)-[:SUPPORTED_BY|INTERPRETS*0..5]->(:ArgumentNode)" +
+            "-[:DEFINED_BY]->(:ArgumentBody)-[:VERSION_OF]->(:MajorVersion)-[:AUTHORED_BY]->(:Author)" +
+            " WITH root, collect(graphPath) AS graphPaths" +
+            " OPTIONAL MATCH rootPath=(root)-[:DEFINED_BY]->(:ArgumentBody)-[:AUTHORED_BY]->(:Author)" +
+            " WITH root, graphPaths, collect(rootPath) AS rootPaths" +
+            " OPTIONAL MATCH (consumer:ArgumentNode)-[:SUPPORTED_BY|INTERPRETS]->(root)" +
+            " OPTIONAL MATCH consumerPath=(consumer)-[:DEFINED_BY]->(consumerBody:ArgumentBody)-[:VERSION_OF]->(:MajorVersion)-[:AUTHORED_BY]->(:Author)" +
+            " OPTIONAL MATCH editorPath=(consumerBody)-[:AUTHORED_BY]->(editor:Author)" +
+            " OPTIONAL MATCH (editor)-[:CONTROLLED_BY]->(editorUser:User)" +
+            " WITH root, graphPaths, rootPaths, consumerPath, editorPath," +
+            " consumerBody.isPublic OR (editorUser IS NOT NULL AND ID(editorUser) = {1}) AS visible" +
+            " WITH root, graphPaths, rootPaths," +
+            " collect(CASE WHEN visible THEN consumerPath END) AS consumerPaths," +
+            " collect(CASE WHEN visible THEN editorPath END) AS editorPaths" +
+            " RETURN reduce(acc = [], p IN graphPaths | acc + nodes(p)) AS graphNodes," +
+            " reduce(acc = [], p IN graphPaths | acc + rels(p)) AS graphRels," +
+            " reduce(acc = [], p IN rootPaths | acc + nodes(p)) AS rootNodes," +
+            " reduce(acc = [], p IN rootPaths | acc + rels(p)) AS rootRels," +
+            " [p IN consumerPaths | nodes(p)[0]] AS consumerNodes," +
+            " reduce(acc = [], p IN consumerPaths + editorPaths | acc + nodes(p)) AS consumerPathNodes," +
+            " reduce(acc = [], p IN consumerPaths + editorPaths | acc + rels(p)) AS consumerRels")
+    Result getGraphWithConsumers(String stableRootId, Long userId);
+
     @Query("start mv=node({0}) match p=(mv)<-[:VERSION_OF]-(:ArgumentBody)" +
             "<-[:DEFINED_BY]-(node:ArgumentNode) return p")
     Set<ArgumentNode> getNodesInMajorVersion(long majorVersionId);
@@ -39,11 +76,40 @@ public interface ArgumentNodeRepository extends GraphRepository<ArgumentNode> {
             " with p as p, b as b match q=(b)-[:AUTHORED_BY]->(:Author) return p, q")
     ArgumentNode getNodeRich(String stableId);
 
+    @Query("match p=(n:ArgumentNode)-[:DEFINED_BY]->(b:ArgumentBody)-[:VERSION_OF]->(:MajorVersion)-[:AUTHORED_BY]->(:Author)" +
+            " where n.stableId in {0}" +
+            " with p as p, b as b match q=(b)-[:AUTHORED_BY]->(:Author) return p, q")
+    Set<ArgumentNode> getNodesRich(Collection<String> stableIds);
+
+    @Query("match p=(n:ArgumentNode)-[:DEFINED_BY]->(b:ArgumentBody {isPublic:true})-[:VERSION_OF]->(mv:MajorVersion)-[:AUTHORED_BY]->(:Author)" +
+            " where mv.stableId in {0}" +
+            " with p as p, b as b match q=(b)-[:AUTHORED_BY]->(:Author) return p, q")
+    Set<ArgumentNode> getPublicNodesRich(Collection<String> majorVersionStableIds);
+
+    /**
+     * Adds to the vote counters of each MajorVersion in place. Each delta is a map with stableId, great, weak, touche
+     * and trash. Setting voteLock first takes the write lock on the node before the counters are read, so concurrent
+     * calls queue up instead of overwriting each other.
+     */
+    @Query("unwind {0} as delta match (mv:MajorVersion {stableId: delta.stableId}) set mv.voteLock = true with mv, delta" +
+            " set mv.greatVotes = coalesce(mv.greatVotes, 0) + delta.great, mv.weakVotes = coalesce(mv.weakVotes, 0) + delta.weak," +
+            " mv.toucheVotes = coalesce(mv.toucheVotes, 0) + delta.touche, mv.trashVotes = coalesce(mv.trashVotes, 0) + delta.trash" +
+            " remove mv.voteLock")
+    void addVotes(List<Map<String, Object>> deltas);
+
     @Query("match p=(n:ArgumentNode)-[:DEFINED_BY]->(b:ArgumentBody)-[:VERSION_OF]->(:MajorVersion)-[:AUTHORED_BY]->(:Author)" +
             " where ID(n) = {0}" +
             " with p as p, b as b match q=(b)-[:AUTHORED_BY]->(:Author) return p, q")
     ArgumentNode loadWithMajorVersion(long id);
 
+    /**
+     * {@link #loadWithMajorVersion} for many nodes in one query.
+     */
+    @Query("match p=(n:ArgumentNode)-[:DEFINED_BY]->(b:ArgumentBody)-[:VERSION_OF]->(:MajorVersion)-[:AUTHORED_BY]->(:Author)" +
+            " where ID(n) in {0}" +
+            " with p as p, b as b match q=(b)-[:AUTHORED_BY]->(:Author) return p, q")
+    Set<ArgumentNode> loadWithMajorVersions(Collection<Long> ids);
+
     @Query("match p=(n:ArgumentNode)-[:DEFINED_BY]->(b:ArgumentBody)-[:VERSION_OF]->(:MajorVersion)-[:AUTHORED_BY]->(:Author)" +
             " where ID(n) = {0}" +
             " with p as p, b as b, n as n match q=(b)-[:AUTHORED_BY]->(:Author)" +
@@ -51,19 +117,87 @@ public interface ArgumentNodeRepository extends GraphRepository<ArgumentNode> {
             " return p, q, c")
     Set<ArgumentNode> loadWithMajorVersionAndChildren(long id);
 
-    @Query("start n=node({0}) match (body)-[VERSION_OF]->(n) return max(body.minorVersion)")
-    Integer getMaxMinorVersion(long majorVersionId);
+    /**
+     * Everything publishing the draft with the given id needs, in one round trip. The walk down from the draft stops
+     * at grounded nodes, which are public and known to be sound, so it only covers the drafts and any public nodes
+     * published before grounding was recorded. Drafts only ever link to drafts and public nodes, so every draft
+     * being published is found. For each draft this maps the body with its major version and authors, the children
+     * with their major versions, the public version it will replace along with that version's current children, and,
+     * if there is such a public version, the nodes that depend on the draft along with their children, since those
+     * will be pointed at the public version.
+     *
+     * The single result row has the columns nodes, rels and support. Only support is meant to be read by the caller:
+     * one [id, [ids of supporting children that aren't grounded], has support of its own] list for every node the
+     * walk reached, for checking in memory that the whole argument is grounded. A node has support of its own if it
+     * interprets a source or subject, or is supported by anything. It comes from walking the graph a second time at
+     * the end; carrying it along from the first walk makes every aggregation in between group by it, which was slower
+     * than the walk.
+     */
+    @Query("MATCH (root:ArgumentNode) WHERE ID(root) = {0}" +
+            " MATCH walk=(root)-[:SUPPORTED_BY|INTERPRETS*0..]->(n:ArgumentNode)" +
+            " WHERE all(x IN nodes(walk) WHERE NOT coalesce(x.grounded, false))" +
+            " WITH root, [n IN collect(DISTINCT n) WHERE (n)-[:DEFINED_BY]->(:ArgumentBody {isPublic: false})] AS drafts" +
+            " UNWIND drafts AS draft" +
+            " MATCH bodyPath=(draft)-[:DEFINED_BY]->(body:ArgumentBody)-[:VERSION_OF]->(:MajorVersion)-[:AUTHORED_BY]->(:Author)" +
+            " OPTIONAL MATCH editorPath=(body)-[:AUTHORED_BY]->(:Author)" +
+            " WITH root, draft, collect(bodyPath) + collect(editorPath) AS paths" +
+            " OPTIONAL MATCH childPath=(draft)-[:SUPPORTED_BY|INTERPRETS]->(:ArgumentNode)-[:DEFINED_BY]->(:ArgumentBody)-[:VERSION_OF]->(:MajorVersion)" +
+            " WITH root, draft, paths + collect(childPath) AS paths" +
+            " OPTIONAL MATCH previousPath=(draft)-[:PRECEDED_BY]->(previous:ArgumentNode)-[:DEFINED_BY]->(:ArgumentBody)" +
+            " OPTIONAL MATCH previousChildPath=(previous)-[:SUPPORTED_BY|INTERPRETS]->(:ArgumentNode)" +
+            " WITH root, draft, previous, paths + collect(DISTINCT previousPath) + collect(DISTINCT previousChildPath) AS paths" +
+            " OPTIONAL MATCH dependentPath=(dependent:ArgumentNode)-[:SUPPORTED_BY|INTERPRETS]->(draft) WHERE previous IS NOT NULL" +
+            " OPTIONAL MATCH dependentBodyPath=(dependent)-[:DEFINED_BY]->(:ArgumentBody)" +
+            " OPTIONAL MATCH dependentChildPath=(dependent)-[:SUPPORTED_BY|INTERPRETS]->(:ArgumentNode)-[:DEFINED_BY]->(:ArgumentBody)-[:VERSION_OF]->(:MajorVersion)" +
+            " WITH root, paths + collect(DISTINCT dependentPath) + collect(DISTINCT dependentBodyPath) + collect(DISTINCT dependentChildPath) AS paths" +
+            " UNWIND paths AS path UNWIND rels(path) AS rel" +
+            " WITH root, collect(DISTINCT rel) AS rels" +
+            " MATCH walk=(root)-[:SUPPORTED_BY|INTERPRETS*0..]->(n:ArgumentNode)" +
+            " WHERE all(x IN nodes(walk) WHERE NOT coalesce(x.grounded, false))" +
+            " WITH rels, collect(DISTINCT n) AS ungrounded" +
+            " RETURN reduce(acc = [], r IN rels | acc + [startNode(r), endNode(r)]) AS nodes, rels," +
+            " [n IN ungrounded | [ID(n), [(n)-[:SUPPORTED_BY]->(c) WHERE NOT coalesce(c.grounded, false) | ID(c)]," +
+            " exists((n)-[:SUPPORTED_BY]->()) OR exists((n)-[:INTERPRETS]->(:SourceNode)) OR exists((n)-[:INTERPRETS]->(:SubjectNode))]] AS support")
+    Result loadPublishClosure(long draftId);
+
+    /**
+     * Hands out minor version numbers from the nextMinorVersion counter on each MajorVersion. Every claim is a map of
+     * majorVersionId and count, and gets count consecutive numbers starting at the returned firstMinorVersion.
+     * Setting minorVersionLock first takes the write lock on the node before the counter is read, so concurrent
+     * publishes of the same major version queue up and never get the same number. A major version that doesn't have
+     * the counter yet starts it after the highest minor version among its bodies.
+     */
+    @Query("unwind {0} as claim match (mv:MajorVersion) where ID(mv) = claim.majorVersionId" +
+            " set mv.minorVersionLock = true with mv, claim" +
+            " set mv.nextMinorVersion = claim.count + CASE WHEN mv.nextMinorVersion IS NULL" +
+            " THEN reduce(highest = -1, v IN [(mv)<-[:VERSION_OF]-(body:ArgumentBody) | body.minorVersion] | CASE WHEN v > highest THEN v ELSE highest END) + 1" +
+            " ELSE mv.nextMinorVersion END" +
+            " remove mv.minorVersionLock" +
+            " return ID(mv) as majorVersionId, mv.nextMinorVersion - claim.count as firstMinorVersion")
+    Result claimMinorVersions(List<Map<String, Object>> claims);
+
+    /**
+     * Moves every claimed node one editVersion up, but only if all of them are still at the editVersion in their
+     * claim, a map of id and editVersion. A claim with a null editVersion takes whatever version the node is at.
+     * Either all of them move or none do. Setting and removing editLock first takes each node's write lock before the
+     * versions are compared, so of two requests claiming the same version only the first one wins. Reads never wait
+     * on these locks.
+     *
+     * @return id and the new editVersion of every node, or nothing if any of them had moved on
+     */
+    @Query("unwind {0} as claim match (n:ArgumentNode) where ID(n) = claim.id" +
+            " set n.editLock = true remove n.editLock" +
+            " with collect([n, coalesce(claim.editVersion, n.editVersion, 0)]) as claimed" +
+            " where size(claimed) = size({0}) and all(c in claimed where coalesce((c[0]).editVersion, 0) = c[1])" +
+            " unwind claimed as c with c[0] as n, c[1] as version" +
+            " set n.editVersion = version + 1" +
+            " return ID(n) as id, n.editVersion as editVersion")
+    Result claimEdits(List<Map<String, Object>> claims);
 
 
     @Query("start n=node({0}) match (node)-[DEFINED_BY]->(n) return max(node.buildVersion)")
     Integer getMaxBuildVersion(long bodyId);
 
-    @Query("start n=node({0}) match (n)-[:SUPPORTED_BY*0..]->(support:ArgumentNode) " +
-            "WHERE NOT (support)-[:INTERPRETS]->(:SourceNode) " +
-            "AND NOT (support)-[:INTERPRETS]->(:SubjectNode) " +
-            "AND NOT (support)-[:SUPPORTED_BY]->(:ArgumentNode) return support")
-    Set<ArgumentNode> getUnsupportedNodes(long nodeId);
-
     @Query("match p=(:Author {stableId: {0}})<-[:AUTHORED_BY]-(b:ArgumentBody)<-[:DEFINED_BY]-(n:ArgumentNode) where not b.isPublic" +
             " with p as p, b as b match q=(b)-[:VERSION_OF]->(:MajorVersion)-[:AUTHORED_BY]->(:Author) return p, q")
     Set<ArgumentNode> getDraftNodesRich(String authorStableId);
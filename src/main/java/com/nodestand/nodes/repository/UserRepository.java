@@ -5,6 +5,11 @@ import com.nodestand.nodes.User;
 import org.springframework.data.neo4j.annotation.Query;
 import org.springframework.data.neo4j.repository.GraphRepository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 public interface UserRepository extends GraphRepository<User> {
 
     @Query("match p=(u:User {stableId: {0}})<-[:CONTROLLED_BY]-(:Author) return p")
@@ -22,11 +27,39 @@ public interface UserRepository extends GraphRepository<User> {
     @Query("match (a:Author {stableId: {0}}) return a")
     Author loadAuthor(String authorStableId);
 
+    @Query("match (a:Author) where a.stableId in {0} return a")
+    Set<Author> loadAuthors(Collection<String> authorStableIds);
+
+    /**
+     * Loads every vote the user has ever made. To check or change particular votes, use
+     * {@link #loadUserWithVotesOn} or {@link #loadUserWithCommentVote}, which only load those.
+     */
     @Query("match p=(u:User {stableId: {0}})<-[:CONTROLLED_BY]-(:Author) " +
             "with p, u optional match bv=(u)-[:ARGUMENT_VOTE]->(:MajorVersion) " +
             "with p, u, bv optional match cv=(u)-[:COMMENT_VOTE]->(:Comment) return u, p, bv, cv")
     User loadUserWithVotes(String stableId);
 
+    /**
+     * Loads the user with only their votes on the given major versions. Saving the user leaves their other votes alone.
+     */
+    @Query("match p=(u:User {stableId: {0}})<-[:CONTROLLED_BY]-(:Author) " +
+            "with p, u optional match v=(u)-[:ARGUMENT_VOTE]->(mv:MajorVersion) where mv.stableId in {1} return u, p, v")
+    User loadUserWithVotesOn(String stableId, Collection<String> majorVersionStableIds);
+
+    /**
+     * Loads the user with only their vote on the given comment, if any.
+     */
+    @Query("match p=(u:User {stableId: {0}})<-[:CONTROLLED_BY]-(:Author) " +
+            "with p, u optional match v=(u)-[:COMMENT_VOTE]->(c:Comment) where id(c) = {1} return u, p, v")
+    User loadUserWithCommentVote(String stableId, long commentId);
+
+    /**
+     * @param awards each with the author's stableId and the points to add
+     */
+    @Query("unwind {0} as award match (a:Author {stableId: award.stableId}) set a.pointsLock = true with a, award" +
+            " set a.nodePoints = coalesce(a.nodePoints, 0) + award.points remove a.pointsLock")
+    void awardNodePoints(List<Map<String, Object>> awards);
+
     @Query("return exists( (:Author {stableId: {0}})<-[:AUTHORED_BY]-(:ArgumentBody {isPublic: true}) )")
     boolean isPublishedAuthor(String authorStableId);
 }
@@ -3,10 +3,8 @@ package com.nodestand.nodes.version;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.nodestand.nodes.ArgumentNode;
 import com.nodestand.nodes.Author;
-import com.nodestand.nodes.NodeRulesException;
 import com.nodestand.nodes.User;
 import com.nodestand.nodes.comment.Commentable;
-import com.nodestand.nodes.vote.VoteType;
 import com.nodestand.util.IdGenerator;
 import org.neo4j.ogm.annotation.*;
 
@@ -37,6 +35,9 @@ public class MajorVersion implements Commentable {
     @Property
     private String[] edgeOwners;
 
+    // The nextMinorVersion property is left unmapped on purpose: it's only ever changed in place by
+    // ArgumentNodeRepository.claimMinorVersions, and saving a stale copy of it would hand out numbers twice.
+
     public MajorVersion() {}
 
     public MajorVersion(int versionNumber, VersionAggregator versionAggregator, Author author) {
@@ -67,44 +68,6 @@ public class MajorVersion implements Commentable {
         return stableId;
     }
 
-    public void decrementVote(VoteType voteType) throws NodeRulesException {
-        switch (voteType) {
-            case GREAT:
-                greatVotes--;
-                break;
-            case WEAK:
-                weakVotes--;
-                break;
-            case TOUCHE:
-                toucheVotes--;
-                break;
-            case TRASH:
-                trashVotes--;
-                break;
-            default:
-                throw new NodeRulesException("Unexpected vote type: " + voteType.name());
-        }
-    }
-
-    public void incrementVote(VoteType voteType) throws NodeRulesException {
-        switch (voteType) {
-            case GREAT:
-                greatVotes++;
-                break;
-            case WEAK:
-                weakVotes++;
-                break;
-            case TOUCHE:
-                toucheVotes++;
-                break;
-            case TRASH:
-                trashVotes++;
-                break;
-            default:
-                throw new NodeRulesException("Unexpected vote type: " + voteType.name());
-        }
-    }
-
     /**
      * This is a map of majorVersionStableId -> authorStableId.
      *
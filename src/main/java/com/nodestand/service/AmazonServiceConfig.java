@@ -1,8 +1,6 @@
 package com.nodestand.service;
 
 import com.amazonaws.regions.Regions;
-import com.amazonaws.services.logs.AWSLogs;
-import com.amazonaws.services.logs.AWSLogsClient;
 import com.amazonaws.services.simpleemail.AmazonSimpleEmailService;
 import com.amazonaws.services.simpleemail.AmazonSimpleEmailServiceClient;
 import com.amazonaws.services.simpleemail.AmazonSimpleEmailServiceClientBuilder;
@@ -28,11 +26,6 @@ public class AmazonServiceConfig {
         }
     }
 
-    @Bean
-    public AWSLogs awsLogs() {
-        return new AWSLogsClient();
-    }
-
     @Bean
     public AmazonSimpleEmailService simpleEmailService() {
         return AmazonSimpleEmailServiceClientBuilder.standard()
@@ -2,21 +2,18 @@ package com.nodestand.service;
 
 import com.nodestand.nodes.*;
 import com.nodestand.nodes.assertion.AssertionNode;
-import com.nodestand.nodes.interpretation.InterpretationNode;
 import com.nodestand.nodes.repository.ArgumentBodyRepository;
 import com.nodestand.nodes.repository.ArgumentNodeRepository;
-import com.nodestand.nodes.source.SourceNode;
 import com.nodestand.nodes.version.MajorVersion;
 import com.nodestand.nodes.version.VersionAggregator;
+import com.nodestand.service.argument.GraphCache;
+import com.nodestand.service.search.SearchIndex;
 import com.nodestand.util.TwoWayUtil;
 import org.neo4j.ogm.session.Session;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.util.Collection;
-import java.util.Date;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.*;
 import java.util.stream.Collectors;
 
 @Component
@@ -31,6 +28,12 @@ public class VersionHelper {
     @Autowired
     Session session;
 
+    @Autowired
+    GraphCache graphCache;
+
+    @Autowired
+    SearchIndex searchIndex;
+
     /**
      * This sets the major and minor version on the draft body.
      * @param body
@@ -53,138 +56,286 @@ public class VersionHelper {
 
     }
 
-    private int getNextMinorVersion(MajorVersion majorVersion) {
-
-        Integer max = nodeRepository.getMaxMinorVersion(majorVersion.getId());
-
-        if (max != null) {
-            return max + 1;
-        }
-
-        return 0;
-    }
-
     public Node publish(Node draftNode) throws NodeRulesException {
 
-        // We'll need the reference to the major version later.
-        nodeRepository.loadWithMajorVersion(draftNode.getId());
+        // Load every draft this publishes, and everything around them that publishing touches, up front.
+        Iterator<Map<String, Object>> rows = nodeRepository.loadPublishClosure(draftNode.getId()).queryResults().iterator();
+        if (!rows.hasNext()) {
+            throw new NodeRulesException("No new changes to publish!");
+        }
+        Map<String, Object> closure = rows.next();
 
         if (!(draftNode instanceof LeafNode)) {
             // validate that the node and its descendants follow all the rules, e.g. being grounded in sources
-            if (hasMissingSupport(draftNode)) {
+            if (!isGrounded(draftNode.getId(), readSupport(closure.get("support")), new HashMap<>())) {
                 throw new NodeRulesException("The roots of this node do not all end in leaf nodes!");
             }
-            publishDescendants(draftNode);
         }
 
-        Node resultingNode = draftNode;
+        // Children are published before the nodes that link to them, so parents can be pointed at the published
+        // versions first.
+        List<Node> drafts = new ArrayList<>();
+        collectDrafts(draftNode, new HashSet<>(), drafts);
+
+        // Claim everything publishing will write, at the versions loaded above, before writing any of it.
+        Map<Node, Long> editVersions = new HashMap<>();
+        for (Node draft : drafts) {
+            editVersions.put(draft, draft.getEditVersion());
+            Node publicVersion = draft.getPreviousVersion();
+            if (publicVersion == null) {
+                continue;
+            }
+            if (draft.getBaseEditVersion() != null && draft.getBaseEditVersion() != publicVersion.getEditVersion()) {
+                throw new ConcurrentEditException("\"" + publicVersion.getBody().getTitle() + "\" was changed since " +
+                        "this draft was made. Make a new draft of it to publish your changes.");
+            }
+            editVersions.put(publicVersion, publicVersion.getEditVersion());
+            if (draft.getDependentNodes() != null) {
+                for (Node parent : draft.getDependentNodes()) {
+                    editVersions.putIfAbsent(parent, parent.getEditVersion());
+                }
+            }
+        }
+        claimEdits(editVersions);
+
+        Map<Node, Node> published = new LinkedHashMap<>();
+        Set<Node> alteredParents = new HashSet<>();
+        Set<Node> deletedDrafts = new HashSet<>();
+        for (Node draft : drafts) {
+            Node resultingNode = publishInMemory(draft, alteredParents);
+            if (resultingNode != draft) {
+                deletedDrafts.add(draft);
+            }
+            published.put(draft, resultingNode);
+        }
 
-        Node publicVersion = draftNode.getPreviousVersion();
-        if (publicVersion != null && !publicVersion.isFinalized()) {
-            // previous version is the edit target.
+        assignMinorVersions(published.values());
 
-            // Make sure it's loaded
-            if (publicVersion.getBody() == null) {
-                session.load(publicVersion.getClass(), publicVersion.getId(), 1);
+        Set<Node> changed = new LinkedHashSet<>(published.values());
+        for (Node node : published.values()) {
+            node.getBody().setIsPublic(true);
+            node.getBody().indexLinks();
+            node.setGrounded(true);
+        }
+        changed.addAll(alteredParents);
+        changed.removeAll(deletedDrafts); // They may have been parents of other drafts.
+
+        for (Node node : changed) {
+            if (node instanceof AssertionNode) {
+                // Pointing parents at published children keeps their childOrder current, so this only revalidates
+                // nodes whose children changed some other way since their last edit.
+                ((AssertionNode) node).updateChildOrderIfChanged(nodeRepository);
             }
+        }
 
-            // Copy links to children into the previous version
-            draftNode.copyContentTo(publicVersion);
-
-            bodyTransplant(draftNode, publicVersion);
+        // Everything that changed is connected to the published node, so saving it writes all of it in one batch.
+        // Saving each changed node instead would write the whole dirty graph once per node.
+        session.save(published.get(draftNode));
 
-            ArgumentBody freshlyPublishedBody = publicVersion.getBody();
-            freshlyPublishedBody.setDateEdited(new Date());
-            freshlyPublishedBody.setIsPublic(true);
+        for (Node node : published.values()) {
+            ArgumentBody body = node.getBody();
+            searchIndex.index(body, null);
 
-            // Any parents that had pointed to the draft should be modified so that they point to the
-            // published version. The draft is going away. We will save them later when the dust has settled a bit.
-            Set<Node> dependentNodes = new HashSet<>();
-            if (draftNode.getDependentNodes() != null) {
-                dependentNodes.addAll(draftNode.getDependentNodes());
-                for (Node parent : dependentNodes) {
-                    parent.alterToPointToChild(publicVersion, draftNode);
-                }
-            }
+            // Any cached graph that includes the public version of this node is now out of date, and so is any snapshot
+            // that lists the consumers of its children.
+            graphCache.invalidateMajorVersion(body.getMajorVersion().getStableId());
+            graphCache.invalidateConsumersOf(node.getGraphChildren().stream()
+                    .map(Node::getStableId)
+                    .collect(Collectors.toList()));
+        }
 
-            // Destroy the current version
-            session.delete(draftNode);
+        return published.get(draftNode);
+    }
 
-            TwoWayUtil.forgetNode(draftNode);
+    /**
+     * Checks that nothing changed the node since the editVersion the client saw, if the client said which one that
+     * was, and claims the next version for the edit. Without one the edit simply goes on top of whatever is there.
+     * Call it after validating the edit and before writing anything.
+     */
+    public void claimEdit(Node node, Long seenEditVersion) throws ConcurrentEditException {
+        if (seenEditVersion != null && seenEditVersion != node.getEditVersion()) {
+            throw new ConcurrentEditException("This node was changed by someone else. Reload it and try again.");
+        }
+        claimEdits(Collections.singletonMap(node, seenEditVersion));
+    }
 
-            for (Node parent : dependentNodes) {
-                if (parent instanceof AssertionNode) {
-                    // This is probably unnecessary, I'm doing it just to be safe.
-                    // Consider removing this later for performance reasons.
-                    ((AssertionNode)parent).updateChildOrder(nodeRepository);
-                }
-                session.save(parent);
-            }
+    /**
+     * Moves all of the nodes to their next editVersion in the database and in memory, as long as none of them changed
+     * since the given versions. A null version matches anything. Either all of them move or none do, so a conflict
+     * leaves nothing half written.
+     */
+    private void claimEdits(Map<Node, Long> editVersions) throws ConcurrentEditException {
+        // Always lock in the same order, so two claims on overlapping nodes can't deadlock.
+        List<Node> nodes = new ArrayList<>(editVersions.keySet());
+        nodes.sort(Comparator.comparing(Node::getId));
+
+        List<Map<String, Object>> claims = new ArrayList<>(nodes.size());
+        Map<Long, Node> nodesById = new HashMap<>();
+        for (Node node : nodes) {
+            Map<String, Object> claim = new HashMap<>();
+            claim.put("id", node.getId());
+            claim.put("editVersion", editVersions.get(node));
+            claims.add(claim);
+            nodesById.put(node.getId(), node);
+        }
 
-            resultingNode = publicVersion;
+        int claimed = 0;
+        for (Map<String, Object> row : nodeRepository.claimEdits(claims).queryResults()) {
+            nodesById.get(((Number) row.get("id")).longValue()).setEditVersion(((Number) row.get("editVersion")).longValue());
+            claimed++;
+        }
+        if (claimed != claims.size()) {
+            throw new ConcurrentEditException("Some of these nodes were changed by someone else. Reload and try again.");
         }
+    }
 
-        ArgumentBody body = resultingNode.getBody();
-        if (body.getMinorVersion() < 0) {
-            body.setMinorVersion(getNextMinorVersion(body.getMajorVersion()));
+    private static void collectDrafts(Node node, Set<Node> visited, List<Node> drafts) {
+        if (!visited.add(node)) {
+            return;
+        }
+        for (Node child : node.getGraphChildren()) {
+            if (!child.getBody().isPublic()) {
+                collectDrafts(child, visited, drafts);
+            }
         }
+        drafts.add(node);
+    }
 
-        body.setIsPublic(true);
+    /**
+     * Does the in-memory part of publishing one draft, without saving anything.
+     *
+     * @param alteredParents collects the parents that were pointed at the published version and need saving
+     * @return the published node, which is the public version the draft was an edit of if there is one
+     */
+    private Node publishInMemory(Node draftNode, Set<Node> alteredParents) throws NodeRulesException {
 
-        if (resultingNode instanceof AssertionNode) {
-            // This is probably unnecessary, I'm doing it just to be safe.
-            // Consider removing this later for performance reasons.
-            ((AssertionNode)resultingNode).updateChildOrder(nodeRepository);
+        Node publicVersion = draftNode.getPreviousVersion();
+        if (publicVersion == null || publicVersion.isFinalized()) {
+            return draftNode;
         }
-        session.save(resultingNode);
 
-        return resultingNode;
-    }
+        // previous version is the edit target.
 
-    private void bodyTransplant(Node donor, Node recipient) {
-        // Null out the back-references
-        recipient.getBody().setNode(null);
-        donor.getBody().setNode(null);
+        // Copy links to children into the previous version
+        draftNode.copyContentTo(publicVersion);
 
-        // Move the body
-        recipient.setBody(donor.getBody());
+        bodyTransplant(draftNode, publicVersion);
 
-        // Reciprocate the relationship
-        donor.getBody().setNode(recipient);
+        ArgumentBody freshlyPublishedBody = publicVersion.getBody();
+        freshlyPublishedBody.setDateEdited(new Date());
+        freshlyPublishedBody.setIsPublic(true);
+
+        // Any parents that had pointed to the draft should be modified so that they point to the
+        // published version. The draft is going away.
+        if (draftNode.getDependentNodes() != null) {
+            Set<Node> dependentNodes = new HashSet<>(draftNode.getDependentNodes());
+            for (Node parent : dependentNodes) {
+                parent.alterToPointToChild(publicVersion, draftNode);
+            }
+            alteredParents.addAll(dependentNodes);
+        }
+
+        // Destroy the current version
+        session.delete(draftNode);
+
+        TwoWayUtil.forgetNode(draftNode);
+
+        return publicVersion;
     }
 
-    private void publishDescendants(Node node) throws NodeRulesException {
+    /**
+     * Gives every body that doesn't have a minor version yet the next one in its major version, claiming them from
+     * the counters of all the major versions in one query.
+     */
+    private void assignMinorVersions(Collection<Node> nodes) {
 
-        if (node instanceof AssertionNode) {
-            AssertionNode assertion = (AssertionNode) node;
+        Map<Long, List<ArgumentBody>> unversioned = nodes.stream()
+                .map(Node::getBody)
+                .filter(body -> body.getMinorVersion() < 0)
+                .collect(Collectors.groupingBy(body -> body.getMajorVersion().getId()));
 
-            // If assertion.getSupportingNodes returns null, this will go awry. Keep an eye on it.
-            Collection<ArgumentNode> support = session.loadAll(ArgumentNode.class,
-                    assertion.getSupportingNodes().stream().map(Node::getId).collect(Collectors.toList()), 1);
+        if (unversioned.isEmpty()) {
+            return;
+        }
 
-            for (ArgumentNode childNode : support) {
-                if (!childNode.getBody().isPublic()) {
-                    publish(childNode);
-                }
+        List<Map<String, Object>> claims = new ArrayList<>();
+        for (Map.Entry<Long, List<ArgumentBody>> entry : unversioned.entrySet()) {
+            Map<String, Object> claim = new HashMap<>();
+            claim.put("majorVersionId", entry.getKey());
+            claim.put("count", entry.getValue().size());
+            claims.add(claim);
+        }
+
+        for (Map<String, Object> row : nodeRepository.claimMinorVersions(claims).queryResults()) {
+            int next = ((Number) row.get("firstMinorVersion")).intValue();
+            for (ArgumentBody body : unversioned.get(((Number) row.get("majorVersionId")).longValue())) {
+                body.setMinorVersion(next++);
             }
-        } else if (node instanceof InterpretationNode) {
-            InterpretationNode interpretation = (InterpretationNode) node;
+        }
+    }
 
-            // If interpretation.getLeafNode returns null, this will go awry. Keep an eye on it.
-            session.load(SourceNode.class, interpretation.getLeafNode().getId());
+    /**
+     * @param support nodeId -> [supporting children that aren't grounded yet, or null if the node has no support of
+     *                its own]. Nodes that aren't in the map were already grounded, so the walk stopped there.
+     */
+    private static boolean isGrounded(Long nodeId, Map<Long, List<Long>> support, Map<Long, Boolean> grounded) {
+        if (!support.containsKey(nodeId)) {
+            return true;
+        }
+        Boolean known = grounded.get(nodeId);
+        if (known != null) {
+            return known;
+        }
+        grounded.put(nodeId, false); // A cycle can't be grounded.
 
-            if (!interpretation.getLeafNode().getBody().isPublic()) {
-                publish(interpretation.getLeafNode());
+        List<Long> children = support.get(nodeId);
+        boolean result = children != null;
+        if (children != null) {
+            for (Long child : children) {
+                result = result && isGrounded(child, support, grounded);
+            }
+        }
+        grounded.put(nodeId, result);
+        return result;
+    }
+
+    /**
+     * Reads the support column of {@link ArgumentNodeRepository#loadPublishClosure}. A node that neither interprets a
+     * source or subject nor is supported by anything maps to null. Any other node maps to those of its supporting
+     * children that still need checking.
+     */
+    private static Map<Long, List<Long>> readSupport(Object column) {
+        Map<Long, List<Long>> support = new HashMap<>();
+        for (Object value : elements(column)) {
+            List<?> row = elements(value);
+            List<Long> children = new ArrayList<>();
+            for (Object child : elements(row.get(1))) {
+                children.add(((Number) child).longValue());
             }
+            support.put(((Number) row.get(0)).longValue(), Boolean.TRUE.equals(row.get(2)) ? children : null);
         }
+        return support;
     }
 
-    private boolean hasMissingSupport(Node node) {
-        // TODO: consider making the isFinalized attribute belong to nodes instead of bodies so that we can easily
-        // short-circuit these queries.
+    // Depending on the driver, lists in query results come back as arrays or as collections.
+    private static List<?> elements(Object list) {
+        if (list instanceof Object[]) {
+            return Arrays.asList((Object[]) list);
+        }
+        List<Object> elements = new ArrayList<>();
+        ((Iterable<?>) list).forEach(elements::add);
+        return elements;
+    }
 
-        Set<ArgumentNode> unsupportedNodes = nodeRepository.getUnsupportedNodes(node.getId());
+    private void bodyTransplant(Node donor, Node recipient) {
+        // Null out the back-references
+        recipient.getBody().setNode(null);
+        donor.getBody().setNode(null);
 
-        return !unsupportedNodes.isEmpty();
+        // Move the body
+        recipient.setBody(donor.getBody());
+
+        // Reciprocate the relationship
+        donor.getBody().setNode(recipient);
     }
 }
@@ -2,8 +2,11 @@ package com.nodestand.service.argument;
 
 import com.nodestand.auth.NotAuthorizedException;
 import com.nodestand.controllers.serial.EditResult;
+import com.nodestand.controllers.serial.GraphPageResponse;
+import com.nodestand.controllers.serial.GraphSnapshot;
 import com.nodestand.controllers.serial.QuickGraphResponse;
 import com.nodestand.nodes.ArgumentNode;
+import com.nodestand.nodes.NodeInputException;
 import com.nodestand.nodes.NodeRulesException;
 import com.nodestand.nodes.assertion.AssertionNode;
 import com.nodestand.nodes.interpretation.InterpretationNode;
@@ -17,6 +20,26 @@ public interface ArgumentService {
 
     QuickGraphResponse getGraph(String rootStableId, Long userId);
 
+    /**
+     * Produces the same response as {@link #getGraph(String, Long)}, but the old way: one query for the subgraph,
+     * one for the consumers and one more to enrich the root. Kept around so the two can be compared under load.
+     */
+    QuickGraphResponse getGraphMultiQuery(String rootStableId, Long userId);
+
+    /**
+     * The graph as an anonymous viewer sees it, already serialized. For published roots this is served from
+     * memory until something in the graph (or one of its consumers) changes.
+     */
+    GraphSnapshot getAnonymousGraphSnapshot(String rootStableId);
+
+    /**
+     * Fetches the graph a few levels at a time, with no limit on total depth.
+     * @param depth How many levels below the root (or below the previous page) to return.
+     * @param cursor Null for the first page, otherwise the cursor from the previous page of the same root.
+     * @throws NodeInputException if the cursor is malformed or was handed out for another root
+     */
+    GraphPageResponse getGraphPage(String rootStableId, Long userId, int depth, String cursor) throws NodeInputException;
+
     ArgumentNode getFullDetail(String stableId);
 
     AssertionNode createAssertion(long userId, String authorStableId, String title, String qualifier, String body, Collection<Long> links) throws NodeRulesException;
@@ -27,13 +50,18 @@ public interface ArgumentService {
 
     SubjectNode createSubject(long userId, String authorStableId, String title, String qualifier, String url) throws NodeRulesException;
 
-    AssertionNode editAssertion(long userId, long nodeId, String title, String qualifier, String body, Collection<Long> links) throws NodeRulesException;
+    /**
+     * The edit methods and publishNode take the editVersion of the node that the client last saw. If the node has
+     * changed since, they throw {@link com.nodestand.nodes.ConcurrentEditException}. Pass null to skip that check.
+     * Publishing still refuses to overwrite changes made since the draft was loaded or made.
+     */
+    AssertionNode editAssertion(long userId, long nodeId, String title, String qualifier, String body, Collection<Long> links, Long editVersion) throws NodeRulesException;
 
-    InterpretationNode editInterpretation(long userId, long nodeId, String title, String qualifier, String body, Long sourceId) throws NodeRulesException;
+    InterpretationNode editInterpretation(long userId, long nodeId, String title, String qualifier, String body, Long sourceId, Long editVersion) throws NodeRulesException;
 
-    SourceNode editSource(long userId, long nodeId, String title, String qualifier, String url) throws NodeRulesException;
+    SourceNode editSource(long userId, long nodeId, String title, String qualifier, String url, Long editVersion) throws NodeRulesException;
 
-    SubjectNode editSubject(long userId, long nodeId, String title, String qualifier, String url) throws NodeRulesException;
+    SubjectNode editSubject(long userId, long nodeId, String title, String qualifier, String url, Long editVersion) throws NodeRulesException;
 
     EditResult makeDraft(long userId, String authorStableId, long nodeId) throws NodeRulesException;
 
@@ -41,12 +69,17 @@ public interface ArgumentService {
      * This may or may not result in a node with a different id.
      * Examine the root node of the response to see if it matches the nodeId you passed in.
      */
-    QuickGraphResponse publishNode(long userId, long nodeId) throws NotAuthorizedException, NodeRulesException;
+    QuickGraphResponse publishNode(long userId, long nodeId, Long editVersion) throws NotAuthorizedException, NodeRulesException;
 
     Set<ArgumentNode> getNodesInMajorVersion(long majorVersionId);
 
     Set<ArgumentNode> getRootNodes();
 
+    /**
+     * The published nodes in each of the given major versions.
+     */
+    Set<ArgumentNode> getPublicNodes(Collection<String> majorVersionStableIds);
+
     Set<ArgumentNode> getDraftNodes(long userId, String authorStableId) throws NodeRulesException;
 
     Set<ArgumentNode> getNodesPublishedByAuthor(String authorStableId);
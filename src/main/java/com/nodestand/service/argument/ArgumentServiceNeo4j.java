@@ -1,8 +1,12 @@
 package com.nodestand.service.argument;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.nodestand.auth.NotAuthorizedException;
 import com.nodestand.controllers.ResourceNotFoundException;
 import com.nodestand.controllers.serial.EditResult;
+import com.nodestand.controllers.serial.GraphPageResponse;
+import com.nodestand.controllers.serial.GraphSnapshot;
 import com.nodestand.controllers.serial.QuickEdge;
 import com.nodestand.controllers.serial.QuickGraphResponse;
 import com.nodestand.nodes.*;
@@ -18,21 +22,25 @@ import com.nodestand.nodes.subject.SubjectBody;
 import com.nodestand.nodes.subject.SubjectNode;
 import com.nodestand.service.AuthorRulesUtil;
 import com.nodestand.service.VersionHelper;
+import com.nodestand.service.search.SearchIndex;
 import com.nodestand.util.TwoWayUtil;
+import org.neo4j.ogm.model.Result;
 import org.neo4j.ogm.session.Session;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
 import java.util.stream.Collectors;
 
 @Component
 public class ArgumentServiceNeo4j implements ArgumentService {
 
+    private static final int MAX_PAGE_DEPTH = 10;
+    private static final int MAX_PAGE_FRONTIER = 50;
+
     private final ArgumentNodeRepository argumentRepo;
 
     private final UserRepository userRepo;
@@ -41,29 +49,278 @@ public class ArgumentServiceNeo4j implements ArgumentService {
 
     private final Session session;
 
+    private final GraphCache graphCache;
+
+    private final SearchIndex searchIndex;
+
+    private final ObjectMapper objectMapper;
+
+    /**
+     * @param objectMapper Snapshots should be serialized exactly as Spring MVC would serialize the graph, so we borrow
+     *                     its ObjectMapper when there is one.
+     */
     @Autowired
-    public ArgumentServiceNeo4j(ArgumentNodeRepository argumentRepo, UserRepository userRepo, VersionHelper versionHelper, Session session) {
+    public ArgumentServiceNeo4j(ArgumentNodeRepository argumentRepo, UserRepository userRepo, VersionHelper versionHelper,
+                                Session session, GraphCache graphCache, SearchIndex searchIndex,
+                                ObjectProvider<ObjectMapper> objectMapper) {
         this.argumentRepo = argumentRepo;
         this.userRepo = userRepo;
         this.versionHelper = versionHelper;
         this.session = session;
+        this.graphCache = graphCache;
+        this.searchIndex = searchIndex;
+        ObjectMapper mapper = objectMapper.getIfAvailable();
+        this.objectMapper = mapper != null ? mapper : new ObjectMapper();
     }
 
     @Override
     @Transactional
     public QuickGraphResponse getGraph(String rootStableId, Long userId) {
-        Set<ArgumentNode> nodes = argumentRepo.getGraph(rootStableId);
 
-        Set<ArgumentNode> consumers;
-        if (userId != null) {
-            consumers = argumentRepo.getConsumerNodes(rootStableId, userId);
-        } else {
-            consumers = argumentRepo.getConsumerNodes(rootStableId);
+        GraphCache.CachedGraph cachedGraph = graphCache.get(rootStableId);
+        if (cachedGraph != null) {
+            return cachedGraph.withConsumers(getConsumers(rootStableId, userId));
         }
 
+        long cacheGeneration = graphCache.getGeneration();
+
+        Result result = argumentRepo.getGraphWithConsumers(rootStableId, userId);
+
+        Iterator<Map<String, Object>> rows = result.queryResults().iterator();
+        if (!rows.hasNext()) {
+            throw new ResourceNotFoundException("Node not found!");
+        }
+
+        Map<String, Object> row = rows.next();
+
+        QuickGraphResponse graph = buildGraphResponse(rootStableId, argumentNodesIn(row.get("graphNodes")), argumentNodesIn(row.get("consumerNodes")));
+        graphCache.put(graph, cacheGeneration);
+        return graph;
+    }
+
+    @Override
+    @Transactional
+    public QuickGraphResponse getGraphMultiQuery(String rootStableId, Long userId) {
+        Set<ArgumentNode> nodes = argumentRepo.getGraph(rootStableId);
+
+        Set<ArgumentNode> consumers = getConsumers(rootStableId, userId);
+
         // This should enhance the node already in our set.
         argumentRepo.getNodeRich(rootStableId);
 
+        return buildGraphResponse(rootStableId, nodes, consumers);
+    }
+
+    @Override
+    @Transactional
+    public GraphSnapshot getAnonymousGraphSnapshot(String rootStableId) {
+
+        GraphSnapshot snapshot = graphCache.getSnapshot(rootStableId);
+        if (snapshot != null) {
+            return snapshot;
+        }
+
+        long cacheGeneration = graphCache.getGeneration();
+
+        QuickGraphResponse graph = getGraph(rootStableId, null);
+
+        try {
+            snapshot = GraphSnapshot.of(graph.getNodes(), objectMapper.writeValueAsBytes(graph));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize graph for " + rootStableId, e);
+        }
+
+        Set<String> consumerMajorVersions = graph.getConsumers().stream()
+                .map(c -> c.getBody().getMajorVersion().getStableId())
+                .collect(Collectors.toSet());
+
+        graphCache.putSnapshot(rootStableId, snapshot, consumerMajorVersions, cacheGeneration);
+
+        return snapshot;
+    }
+
+    @Override
+    @Transactional
+    public GraphPageResponse getGraphPage(String rootStableId, Long userId, int depth, String cursor) throws NodeInputException {
+
+        if (depth < 1 || depth > MAX_PAGE_DEPTH) {
+            throw new NodeInputException("Depth must be between 1 and " + MAX_PAGE_DEPTH);
+        }
+
+        boolean firstPage = cursor == null || cursor.isEmpty();
+        GraphCursor position = firstPage ? new GraphCursor(0, 0) : GraphCursor.decode(cursor, rootStableId);
+
+        Map<String, Object> params = new HashMap<>();
+        String startClause;
+        List<Long> frontier = Collections.emptyList();
+        boolean moreAtThisLevel = false;
+        if (firstPage) {
+            startClause = "MATCH (start:ArgumentNode {stableId: {rootStableId}})";
+            params.put("rootStableId", rootStableId);
+        } else {
+            // One more than fits on the page, to find out whether this level needs another page.
+            frontier = loadFrontier(rootStableId, position.level, position.offset, MAX_PAGE_FRONTIER + 1);
+            if (frontier.size() > MAX_PAGE_FRONTIER) {
+                frontier = frontier.subList(0, MAX_PAGE_FRONTIER);
+                moreAtThisLevel = true;
+            }
+            if (frontier.isEmpty()) {
+                // The graph has changed since the previous page and there is nothing left at this level.
+                return new GraphPageResponse(new HashSet<>(), new HashSet<>(), null, rootStableId, null, null);
+            }
+            startClause = "MATCH (start:ArgumentNode) WHERE ID(start) IN {frontier}";
+            params.put("frontier", frontier);
+        }
+
+        // Variable length bounds can't be parameterized, which is why depth is validated above.
+        Iterable<ArgumentNode> loaded = session.query(ArgumentNode.class, startClause +
+                " MATCH path=(start)-[:SUPPORTED_BY|INTERPRETS*0.." + depth + "]->(:ArgumentNode)" +
+                "-[:DEFINED_BY]->(:ArgumentBody)-[:VERSION_OF]->(:MajorVersion)-[:AUTHORED_BY]->(:Author)" +
+                " RETURN path", params);
+
+        Map<Long, ArgumentNode> loadedById = new HashMap<>();
+        for (ArgumentNode node : loaded) {
+            loadedById.put(node.getId(), node);
+        }
+
+        List<ArgumentNode> startNodes = new ArrayList<>();
+        if (firstPage) {
+            loadedById.values().stream().filter(n -> n.getStableId().equals(rootStableId)).forEach(startNodes::add);
+            if (startNodes.isEmpty()) {
+                throw new ResourceNotFoundException("Node not found!");
+            }
+        } else {
+            for (Long id : frontier) {
+                ArgumentNode start = loadedById.get(id);
+                if (start != null) {
+                    startNodes.add(start);
+                }
+            }
+        }
+
+        // Breadth first, so every node is placed at its shallowest level below the start nodes.
+        Map<Long, Integer> levels = new HashMap<>();
+        Deque<ArgumentNode> queue = new ArrayDeque<>();
+        for (ArgumentNode start : startNodes) {
+            levels.put(start.getId(), 0);
+            queue.add(start);
+        }
+
+        Set<QuickEdge> edges = new HashSet<>();
+
+        while (!queue.isEmpty()) {
+            ArgumentNode node = queue.poll();
+            int level = levels.get(node.getId());
+            if (level == depth) {
+                continue;
+            }
+            for (Node child : node.getGraphChildren()) {
+                ArgumentNode loadedChild = loadedById.get(child.getId());
+                if (loadedChild == null) {
+                    continue;
+                }
+                edges.add(new QuickEdge(node.getId(), child.getId()));
+                if (!levels.containsKey(child.getId())) {
+                    levels.put(child.getId(), level + 1);
+                    queue.add(loadedChild);
+                }
+            }
+        }
+
+        Set<ArgumentNode> nodes = new HashSet<>();
+        for (Map.Entry<Long, Integer> entry : levels.entrySet()) {
+            if (firstPage || entry.getValue() > 0) {
+                nodes.add(loadedById.get(entry.getKey()));
+            }
+        }
+
+        GraphCursor next = null;
+        if (moreAtThisLevel) {
+            next = new GraphCursor(position.level, position.offset + MAX_PAGE_FRONTIER);
+        } else if (!loadFrontier(rootStableId, position.level + depth, 0, 1).isEmpty()) {
+            next = new GraphCursor(position.level + depth, 0);
+        }
+        String nextCursor = next == null ? null : next.encode(rootStableId);
+
+        if (firstPage) {
+            // This should enhance the root node already in our set.
+            argumentRepo.getNodeRich(rootStableId);
+            return new GraphPageResponse(nodes, edges, startNodes.get(0).getId(), rootStableId,
+                    getConsumers(rootStableId, userId), nextCursor);
+        }
+
+        return new GraphPageResponse(nodes, edges, null, rootStableId, null, nextCursor);
+    }
+
+    /**
+     * The ids of the nodes whose shallowest path from the root is exactly level long and that have children of their
+     * own, in id order. The frontier is found again from the root on every page rather than carried in the cursor, so
+     * the cursor stays small and can only ever lead to nodes below the root it was handed out for.
+     */
+    private List<Long> loadFrontier(String rootStableId, int level, int skip, int limit) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("rootStableId", rootStableId);
+        params.put("level", level);
+        params.put("skip", skip);
+        params.put("limit", limit);
+        Result result = session.query("MATCH path=(:ArgumentNode {stableId: {rootStableId}})" +
+                "-[:SUPPORTED_BY|INTERPRETS*0.." + level + "]->(n:ArgumentNode)" +
+                " WITH n, min(length(path)) AS shallowest WHERE shallowest = {level}" +
+                " AND (n)-[:SUPPORTED_BY|INTERPRETS]->(:ArgumentNode)" +
+                " RETURN ID(n) AS id ORDER BY id SKIP {skip} LIMIT {limit}", params);
+        List<Long> frontier = new ArrayList<>();
+        for (Map<String, Object> row : result.queryResults()) {
+            frontier.add(((Number) row.get("id")).longValue());
+        }
+        return frontier;
+    }
+
+    /**
+     * Where the next page of a graph starts: the level of the graph below the root, and how many of the nodes at that
+     * level have already had their page. The root's stableId goes into the encoded cursor so that it can't be used
+     * against another graph.
+     */
+    private static class GraphCursor {
+
+        private final int level;
+        private final int offset;
+
+        private GraphCursor(int level, int offset) {
+            this.level = level;
+            this.offset = offset;
+        }
+
+        private String encode(String rootStableId) {
+            String position = level + ":" + offset + ":" + rootStableId;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+        }
+
+        private static GraphCursor decode(String cursor, String rootStableId) throws NodeInputException {
+            try {
+                String[] position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":", 3);
+                if (position.length == 3 && position[2].equals(rootStableId)) {
+                    int level = Integer.parseInt(position[0]);
+                    int offset = Integer.parseInt(position[1]);
+                    if (level > 0 && offset >= 0) {
+                        return new GraphCursor(level, offset);
+                    }
+                }
+            } catch (IllegalArgumentException e) {
+                // NumberFormatException is an IllegalArgumentException too.
+            }
+            throw new NodeInputException("Malformed cursor");
+        }
+    }
+
+    private Set<ArgumentNode> getConsumers(String rootStableId, Long userId) {
+        if (userId != null) {
+            return argumentRepo.getConsumerNodes(rootStableId, userId);
+        }
+        return argumentRepo.getConsumerNodes(rootStableId);
+    }
+
+    private QuickGraphResponse buildGraphResponse(String rootStableId, Set<ArgumentNode> nodes, Set<ArgumentNode> consumers) {
+
         if (nodes.isEmpty()) {
             throw new ResourceNotFoundException("Node not found!");
         }
@@ -84,6 +341,23 @@ public class ArgumentServiceNeo4j implements ArgumentService {
         return new QuickGraphResponse(nodes, edges, rootId, rootStableId, consumers);
     }
 
+    /**
+     * Picks the mapped ArgumentNode entities out of a result column, which may hold a single value or a list.
+     */
+    private static Set<ArgumentNode> argumentNodesIn(Object column) {
+        Set<ArgumentNode> argumentNodes = new HashSet<>();
+        if (column instanceof ArgumentNode) {
+            argumentNodes.add((ArgumentNode) column);
+        } else if (column instanceof Iterable) {
+            for (Object value : (Iterable<?>) column) {
+                if (value instanceof ArgumentNode) {
+                    argumentNodes.add((ArgumentNode) value);
+                }
+            }
+        }
+        return argumentNodes;
+    }
+
     @Override
     @Transactional
     public ArgumentNode getFullDetail(String stableId) {
@@ -113,6 +387,7 @@ public class ArgumentServiceNeo4j implements ArgumentService {
         assertionBody.getMajorVersion().mergeEdgeOwners(author, mvIds);
 
         session.save(node);
+        searchIndex.index(node.getBody(), userId);
         return node;
     }
 
@@ -135,6 +410,7 @@ public class ArgumentServiceNeo4j implements ArgumentService {
         }
 
         session.save(node);
+        searchIndex.index(node.getBody(), userId);
         return node;
     }
 
@@ -148,6 +424,7 @@ public class ArgumentServiceNeo4j implements ArgumentService {
         SourceNode node = sourceBody.constructNode();
 
         session.save(node);
+        searchIndex.index(node.getBody(), userId);
         return node;
     }
 
@@ -161,12 +438,13 @@ public class ArgumentServiceNeo4j implements ArgumentService {
         SubjectNode node = subjectBody.constructNode();
 
         session.save(node);
+        searchIndex.index(node.getBody(), userId);
         return node;
     }
 
     @Override
     @Transactional
-    public AssertionNode editAssertion(long userId, long nodeId, String title, String qualifier, String body, Collection<Long> links) throws NodeRulesException {
+    public AssertionNode editAssertion(long userId, long nodeId, String title, String qualifier, String body, Collection<Long> links, Long editVersion) throws NodeRulesException {
 
         AssertionNode existingNode = (AssertionNode) loadWithChildren(nodeId);
 
@@ -177,6 +455,7 @@ public class ArgumentServiceNeo4j implements ArgumentService {
         existingNode.getBody().setTitle(title);
         existingNode.getBody().setQualifier(qualifier);
         existingNode.getBody().setBody(body);
+        existingNode.getBody().indexLinks();
 
         Set<Node> children = getAndValidateChildNodes(links);
 
@@ -190,7 +469,9 @@ public class ArgumentServiceNeo4j implements ArgumentService {
 
         existingNode.getBody().getMajorVersion().mergeEdgeOwners(author, mvIds);
 
+        versionHelper.claimEdit(existingNode, editVersion);
         session.save(existingNode);
+        searchIndex.index(existingNode.getBody(), userId);
         return existingNode;
     }
 
@@ -205,20 +486,29 @@ public class ArgumentServiceNeo4j implements ArgumentService {
 
     private Set<Node> getAndValidateChildNodes(Collection<Long> links) throws NodeRulesException {
         Set<Node> children = new HashSet<>();
-        for (Long id : links) {
-            ArgumentNode supportingNode = argumentRepo.loadWithMajorVersion(id);
+        if (links.isEmpty()) {
+            return children;
+        }
+        Set<Long> ids = new HashSet<>(links);
+        for (ArgumentNode supportingNode : argumentRepo.loadWithMajorVersions(ids)) {
+            if (!ids.contains(supportingNode.getId())) {
+                continue;
+            }
             if (supportingNode instanceof LeafNode) {
                 throw new NodeRulesException("An assertion node cannot link directly to a leaf node!");
             }
             children.add(supportingNode);
         }
+        if (children.size() < ids.size()) {
+            throw new NodeInputException("Some of the linked nodes do not exist!");
+        }
         return children;
     }
 
 
     @Override
     @Transactional
-    public InterpretationNode editInterpretation(long userId, long nodeId, String title, String qualifier, String body, Long sourceId) throws NodeRulesException {
+    public InterpretationNode editInterpretation(long userId, long nodeId, String title, String qualifier, String body, Long sourceId, Long editVersion) throws NodeRulesException {
 
         InterpretationNode existingNode = (InterpretationNode) loadWithChildren(nodeId);
 
@@ -229,6 +519,7 @@ public class ArgumentServiceNeo4j implements ArgumentService {
         existingNode.getBody().setTitle(title);
         existingNode.getBody().setQualifier(qualifier);
         existingNode.getBody().setBody(body);
+        existingNode.getBody().indexLinks();
 
         LeafNode leafNode = null;
         if (sourceId != null) {
@@ -239,13 +530,15 @@ public class ArgumentServiceNeo4j implements ArgumentService {
 
         TwoWayUtil.updateSupportingNodes(existingNode, leafNode);
 
+        versionHelper.claimEdit(existingNode, editVersion);
         session.save(existingNode);
+        searchIndex.index(existingNode.getBody(), userId);
         return existingNode;
     }
 
     @Override
     @Transactional
-    public SourceNode editSource(long userId, long nodeId, String title, String qualifier, String url) throws NodeRulesException {
+    public SourceNode editSource(long userId, long nodeId, String title, String qualifier, String url, Long editVersion) throws NodeRulesException {
 
         SourceNode existingNode = (SourceNode) argumentRepo.loadWithMajorVersion(nodeId);
 
@@ -257,13 +550,15 @@ public class ArgumentServiceNeo4j implements ArgumentService {
         existingNode.getBody().setQualifier(qualifier);
         existingNode.getBody().setUrl(url);
 
+        versionHelper.claimEdit(existingNode, editVersion);
         session.save(existingNode);
+        searchIndex.index(existingNode.getBody(), userId);
         return existingNode;
     }
 
     @Override
     @Transactional
-    public SubjectNode editSubject(long userId, long nodeId, String title, String qualifier, String url) throws NodeRulesException {
+    public SubjectNode editSubject(long userId, long nodeId, String title, String qualifier, String url, Long editVersion) throws NodeRulesException {
 
         SubjectNode existingNode = (SubjectNode) argumentRepo.loadWithMajorVersion(nodeId);
 
@@ -275,7 +570,9 @@ public class ArgumentServiceNeo4j implements ArgumentService {
         existingNode.getBody().setQualifier(qualifier);
         existingNode.getBody().setUrl(url);
 
+        versionHelper.claimEdit(existingNode, editVersion);
         session.save(existingNode);
+        searchIndex.index(existingNode.getBody(), userId);
         return existingNode;
     }
 
@@ -301,8 +598,10 @@ public class ArgumentServiceNeo4j implements ArgumentService {
         // This will set the previous version on the draft. Later, when we publish the edit,
         // this draft will copy its contents to the previous version and then be destroyed.
         ArgumentNode draftNode = existingNode.createNewDraft(author);
+        draftNode.setBaseEditVersion(existingNode.getEditVersion());
 
         session.save(draftNode);
+        searchIndex.index(draftNode.getBody(), userId);
 
         EditResult result = new EditResult(draftNode);
         result.setGraph(getGraph(draftNode.getStableId(), userId));
@@ -312,7 +611,7 @@ public class ArgumentServiceNeo4j implements ArgumentService {
 
     @Override
     @Transactional
-    public QuickGraphResponse publishNode(long userId, long nodeId) throws NotAuthorizedException, NodeRulesException {
+    public QuickGraphResponse publishNode(long userId, long nodeId, Long editVersion) throws NotAuthorizedException, NodeRulesException {
 
         ArgumentNode existingNode = session.load(ArgumentNode.class, nodeId, 2);
 
@@ -326,6 +625,10 @@ public class ArgumentServiceNeo4j implements ArgumentService {
             throw new NodeRulesException("No new changes to publish!");
         }
 
+        if (editVersion != null && editVersion != existingNode.getEditVersion()) {
+            throw new ConcurrentEditException("This draft was changed by someone else. Reload it and try again.");
+        }
+
         Node resultingNode = versionHelper.publish(existingNode);
 
         return getGraph(resultingNode.getStableId(), userId);
@@ -342,6 +645,11 @@ public class ArgumentServiceNeo4j implements ArgumentService {
         return argumentRepo.getRootNodesRich();
     }
 
+    @Override
+    public Set<ArgumentNode> getPublicNodes(Collection<String> majorVersionStableIds) {
+        return argumentRepo.getPublicNodesRich(majorVersionStableIds);
+    }
+
     @Override
     public Set<ArgumentNode> getDraftNodes(long userId, String authorStableId) throws NodeRulesException {
         AuthorRulesUtil.loadAuthorWithSecurityCheck(userRepo, userId, authorStableId);
@@ -375,6 +683,9 @@ public class ArgumentServiceNeo4j implements ArgumentService {
         session.delete(draftNode);
         session.delete(draftNode.getBody());
         TwoWayUtil.forgetNode(draftNode);
+
+        searchIndex.remove(draftNode.getBody().getId());
+        graphCache.invalidateMajorVersion(draftNode.getBody().getMajorVersion().getStableId());
     }
 
     private void checkEditRules(ArgumentNode existingNode) throws NodeRulesException {
@@ -0,0 +1,306 @@
+package com.nodestand.service.argument;
+
+import com.nodestand.controllers.serial.GraphSnapshot;
+import com.nodestand.controllers.serial.QuickEdge;
+import com.nodestand.controllers.serial.QuickGraphResponse;
+import com.nodestand.nodes.ArgumentNode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds the node/edge skeleton of published subgraphs, keyed by root stableId, so that {@link ArgumentService#getGraph}
+ * can skip the variable length walk for popular arguments. Consumers are per-user and are not stored here, except
+ * inside the serialized snapshot that anonymous viewers get.
+ *
+ * Entries are dropped whenever a MajorVersion inside them is published, discarded or voted on. Author point totals
+ * inside an entry are allowed to go stale until then.
+ */
+@Component
+public class GraphCache {
+
+    private final int maxEntries;
+    private final int maxWeight;
+
+    // Access-ordered, so iteration starts with the least recently used entry.
+    private final LinkedHashMap<String, CachedGraph> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    // majorVersionStableId -> stableIds of the cached roots whose subgraph contains that major version.
+    private final Map<String, Set<String>> rootsByMajorVersion = new HashMap<>();
+
+    // majorVersionStableId -> stableIds of the cached roots whose anonymous snapshot shows that major version as a consumer.
+    private final Map<String, Set<String>> snapshotRootsByConsumer = new HashMap<>();
+
+    private int totalWeight;
+
+    // Bumped on every invalidation so that a graph loaded before the invalidation is not cached after it.
+    private long generation;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong snapshotHits = new AtomicLong();
+    private final AtomicLong snapshotMisses = new AtomicLong();
+
+    @Autowired
+    public GraphCache(@Value("${graphCache.maxEntries:1000}") int maxEntries,
+                      @Value("${graphCache.maxWeight:250000}") int maxWeight) {
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+    }
+
+    public synchronized CachedGraph get(String rootStableId) {
+        CachedGraph graph = entries.get(rootStableId);
+        if (graph != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return graph;
+    }
+
+    public synchronized GraphSnapshot getSnapshot(String rootStableId) {
+        CachedGraph graph = entries.get(rootStableId);
+        if (graph != null && graph.snapshot != null) {
+            snapshotHits.incrementAndGet();
+            return graph.snapshot;
+        }
+        snapshotMisses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Call this before loading a graph from the database, and pass the value to {@link #put}.
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Caches the skeleton of the given graph if every node in it is public. Nothing is cached if an invalidation
+     * happened after loadGeneration was obtained, because the graph might predate it.
+     */
+    public synchronized void put(QuickGraphResponse graph, long loadGeneration) {
+        if (loadGeneration != generation || !isFullyPublic(graph.getNodes())) {
+            return;
+        }
+
+        CachedGraph cachedGraph = new CachedGraph(graph);
+        if (cachedGraph.weight > maxWeight) {
+            return;
+        }
+
+        remove(cachedGraph.rootStableId);
+        entries.put(cachedGraph.rootStableId, cachedGraph);
+        totalWeight += cachedGraph.weight;
+        for (String mvId : cachedGraph.majorVersionStableIds) {
+            rootsByMajorVersion.computeIfAbsent(mvId, k -> new HashSet<>()).add(cachedGraph.rootStableId);
+        }
+
+        Iterator<CachedGraph> leastRecentlyUsed = entries.values().iterator();
+        while (entries.size() > maxEntries || totalWeight > maxWeight) {
+            CachedGraph evicted = leastRecentlyUsed.next();
+            leastRecentlyUsed.remove();
+            forget(evicted);
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Attaches the anonymous snapshot to the graph already cached for rootStableId. The snapshot is dropped again when
+     * any of the given consumer major versions change, or when the root gains a consumer.
+     */
+    public synchronized void putSnapshot(String rootStableId, GraphSnapshot snapshot,
+                                         Set<String> consumerMajorVersionStableIds, long loadGeneration) {
+        CachedGraph graph = entries.get(rootStableId);
+        if (graph == null || loadGeneration != generation) {
+            return;
+        }
+
+        dropSnapshot(graph);
+        graph.snapshot = snapshot;
+        graph.consumerMajorVersionStableIds = new HashSet<>(consumerMajorVersionStableIds);
+        for (String mvId : graph.consumerMajorVersionStableIds) {
+            snapshotRootsByConsumer.computeIfAbsent(mvId, k -> new HashSet<>()).add(rootStableId);
+        }
+    }
+
+    /**
+     * Drops every cached graph that contains the given major version, and every snapshot that shows it as a
+     * consumer. If a transaction is in progress, this happens again when it completes, so that graphs loaded in the
+     * meantime (from old or uncommitted data) don't linger.
+     */
+    public void invalidateMajorVersion(String majorVersionStableId) {
+        invalidateMajorVersions(Collections.singleton(majorVersionStableId));
+    }
+
+    public void invalidateMajorVersions(Collection<String> majorVersionStableIds) {
+        invalidate(new HashSet<>(majorVersionStableIds), Collections.emptySet());
+    }
+
+    /**
+     * Drops the snapshots of the given roots, because something that points at them has been published.
+     */
+    public void invalidateConsumersOf(Collection<String> rootStableIds) {
+        invalidate(Collections.emptySet(), new HashSet<>(rootStableIds));
+    }
+
+    private void invalidate(Set<String> majorVersionStableIds, Set<String> consumedRootStableIds) {
+        invalidateNow(majorVersionStableIds, consumedRootStableIds);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    invalidateNow(majorVersionStableIds, consumedRootStableIds);
+                }
+            });
+        }
+    }
+
+    private synchronized void invalidateNow(Set<String> majorVersionStableIds, Set<String> consumedRootStableIds) {
+        generation++;
+        for (String mvId : majorVersionStableIds) {
+            Set<String> roots = rootsByMajorVersion.get(mvId);
+            if (roots != null) {
+                for (String rootStableId : new ArrayList<>(roots)) {
+                    if (remove(rootStableId)) {
+                        invalidations.incrementAndGet();
+                    }
+                }
+            }
+            Set<String> snapshotRoots = snapshotRootsByConsumer.get(mvId);
+            if (snapshotRoots != null) {
+                for (String rootStableId : new ArrayList<>(snapshotRoots)) {
+                    dropSnapshot(entries.get(rootStableId));
+                }
+            }
+        }
+        for (String rootStableId : consumedRootStableIds) {
+            dropSnapshot(entries.get(rootStableId));
+        }
+    }
+
+    public synchronized void clear() {
+        generation++;
+        entries.clear();
+        rootsByMajorVersion.clear();
+        snapshotRootsByConsumer.clear();
+        totalWeight = 0;
+    }
+
+    private boolean remove(String rootStableId) {
+        CachedGraph existing = entries.remove(rootStableId);
+        if (existing != null) {
+            forget(existing);
+            return true;
+        }
+        return false;
+    }
+
+    private void forget(CachedGraph graph) {
+        dropSnapshot(graph);
+        totalWeight -= graph.weight;
+        for (String mvId : graph.majorVersionStableIds) {
+            Set<String> roots = rootsByMajorVersion.get(mvId);
+            if (roots != null) {
+                roots.remove(graph.rootStableId);
+                if (roots.isEmpty()) {
+                    rootsByMajorVersion.remove(mvId);
+                }
+            }
+        }
+    }
+
+    private void dropSnapshot(CachedGraph graph) {
+        if (graph == null || graph.snapshot == null) {
+            return;
+        }
+        for (String mvId : graph.consumerMajorVersionStableIds) {
+            Set<String> roots = snapshotRootsByConsumer.get(mvId);
+            if (roots != null) {
+                roots.remove(graph.rootStableId);
+                if (roots.isEmpty()) {
+                    snapshotRootsByConsumer.remove(mvId);
+                }
+            }
+        }
+        graph.snapshot = null;
+        graph.consumerMajorVersionStableIds = Collections.emptySet();
+    }
+
+    private static boolean isFullyPublic(Set<ArgumentNode> nodes) {
+        return nodes.stream().allMatch(n -> n.getBody() != null && n.getBody().isPublic());
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(hits.get(), misses.get(), evictions.get(), invalidations.get(), snapshotHits.get(),
+                snapshotMisses.get(), entries.size(), totalWeight);
+    }
+
+    public static class CachedGraph {
+        private final String rootStableId;
+        private final Long rootId;
+        private final Set<ArgumentNode> nodes;
+        private final Set<QuickEdge> edges;
+        private final Set<String> majorVersionStableIds;
+        private final int weight;
+
+        // Guarded by the cache's lock.
+        private GraphSnapshot snapshot;
+        private Set<String> consumerMajorVersionStableIds = Collections.emptySet();
+
+        private CachedGraph(QuickGraphResponse graph) {
+            this.rootStableId = graph.getRootStableId();
+            this.rootId = graph.getRootId();
+            this.nodes = Collections.unmodifiableSet(new HashSet<>(graph.getNodes()));
+            this.edges = Collections.unmodifiableSet(new HashSet<>(graph.getEdges()));
+            this.majorVersionStableIds = new HashSet<>();
+            for (ArgumentNode node : nodes) {
+                majorVersionStableIds.add(node.getBody().getMajorVersion().getStableId());
+            }
+            this.weight = nodes.size() + edges.size();
+        }
+
+        public QuickGraphResponse withConsumers(Set<ArgumentNode> consumers) {
+            return new QuickGraphResponse(nodes, edges, rootId, rootStableId, consumers);
+        }
+
+        public Set<ArgumentNode> getNodes() {
+            return nodes;
+        }
+
+        public Set<String> getMajorVersionStableIds() {
+            return majorVersionStableIds;
+        }
+    }
+
+    public static class Stats {
+        public final long hits;
+        public final long misses;
+        public final long evictions;
+        public final long invalidations;
+        public final long snapshotHits;
+        public final long snapshotMisses;
+        public final int entries;
+        public final int weight;
+
+        public Stats(long hits, long misses, long evictions, long invalidations, long snapshotHits, long snapshotMisses,
+                     int entries, int weight) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.invalidations = invalidations;
+            this.snapshotHits = snapshotHits;
+            this.snapshotMisses = snapshotMisses;
+            this.entries = entries;
+            this.weight = weight;
+        }
+    }
+}
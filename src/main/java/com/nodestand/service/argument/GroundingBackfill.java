@@ -0,0 +1,47 @@
+package com.nodestand.service.argument;
+
+import org.neo4j.ogm.session.Session;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+
+/**
+ * Sets the grounded flag on nodes that were published before publishing started recording it. Until then, the
+ * validation walk goes through those nodes instead of stopping at them.
+ */
+@Service
+public class GroundingBackfill {
+
+    static final int BATCH_SIZE = 500;
+
+    private final Session session;
+
+    @Autowired
+    public GroundingBackfill(Session session) {
+        this.session = session;
+    }
+
+    /**
+     * Works through the public nodes without the flag in batches until there are none left. Safe to run while the
+     * site is up, and safe to run again; public nodes are never unpublished, so the flag stays true.
+     *
+     * @return the number of nodes that were flagged
+     */
+    public int backfill() {
+        int total = 0;
+        while (true) {
+            Number flagged = (Number) session.query(
+                    "MATCH (n:ArgumentNode)-[:DEFINED_BY]->(:ArgumentBody {isPublic:true}) " +
+                            "WHERE NOT coalesce(n.grounded, false) " +
+                            "WITH n LIMIT {batchSize} SET n.grounded = true RETURN count(n) AS flagged",
+                    Collections.singletonMap("batchSize", BATCH_SIZE)).iterator().next().get("flagged");
+
+            if (flagged.intValue() == 0) {
+                return total;
+            }
+
+            total += flagged.intValue();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.nodestand.service.argument;
+
+import com.nodestand.util.BodyParser;
+import org.neo4j.ogm.model.Result;
+import org.neo4j.ogm.session.Session;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * Fills in linkedMajorVersions on assertion and interpretation bodies that were saved before the field existed.
+ * Until then, those bodies fall back to parsing their text whenever the links are needed.
+ */
+@Service
+public class LinkIndexBackfill {
+
+    static final int BATCH_SIZE = 500;
+
+    private final Session session;
+
+    @Autowired
+    public LinkIndexBackfill(Session session) {
+        this.session = session;
+    }
+
+    /**
+     * Works through the unindexed bodies in batches until there are none left. Safe to run while the site is up,
+     * and safe to run again; bodies that already have an index are left alone.
+     *
+     * @return the number of bodies that were indexed
+     */
+    public int backfill() {
+        int total = 0;
+        while (true) {
+            Result result = session.query(
+                    "MATCH (b:ArgumentBody) WHERE (b:AssertionBody OR b:InterpretationBody) " +
+                            "AND NOT exists(b.linkedMajorVersions) " +
+                            "RETURN id(b) AS id, b.body AS body LIMIT {batchSize}",
+                    Collections.singletonMap("batchSize", BATCH_SIZE));
+
+            List<Map<String, Object>> rows = new ArrayList<>();
+            for (Map<String, Object> row : result.queryResults()) {
+                Map<String, Object> update = new HashMap<>();
+                update.put("id", row.get("id"));
+                update.put("links", BodyParser.getMajorVersionArray((String) row.get("body")));
+                rows.add(update);
+            }
+
+            if (rows.isEmpty()) {
+                return total;
+            }
+
+            session.query("UNWIND {rows} AS row MATCH (b) WHERE id(b) = row.id SET b.linkedMajorVersions = row.links",
+                    Collections.singletonMap("rows", rows));
+
+            total += rows.size();
+        }
+    }
+}
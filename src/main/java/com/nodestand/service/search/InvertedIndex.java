@@ -0,0 +1,556 @@
+package com.nodestand.service.search;
+
+import com.nodestand.nodes.NodeInputException;
+import com.nodestand.util.BodyLinkScanner;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An in-memory inverted index over argument bodies. Text is split into lowercase letter/digit tokens, and every query
+ * token matches any indexed term that starts with it, so "clim" finds "climate". A body has to match every query
+ * token to be a hit.
+ *
+ * Hits are ranked by the sum, over query tokens, of the best matching term's weight: occurrences in the title count
+ * triple and in the qualifier double, rarer terms count for more, and an exact term beats a longer term that merely
+ * starts with the query token.
+ *
+ * Internally every document gets a dense ordinal, and postings are parallel int arrays of ordinals and weights, so a
+ * search touches no boxed numbers. Removing a document only forgets its ordinal; the postings are compacted once the
+ * dead ordinals outnumber the live ones.
+ *
+ * This class knows nothing about neo4j; see {@link SearchIndex} for how it is kept up to date.
+ */
+public class InvertedIndex {
+
+    private static final int TITLE_WEIGHT = 3;
+    private static final int QUALIFIER_WEIGHT = 2;
+    private static final int BODY_WEIGHT = 1;
+    private static final double PREFIX_PENALTY = 0.5;
+    private static final int MIN_DEAD_TO_COMPACT = 1024;
+
+    public static class Document {
+        public final long bodyId;
+        public final String type;
+        public final String majorVersionStableId;
+        public final String title;
+        public final String qualifier;
+        public final boolean isPublic;
+        public final Long ownerUserId;
+
+        /**
+         * @param type the same type string that ArgumentNode.getType() returns, e.g. "assertion"
+         * @param ownerUserId the user who controls the author, so that drafts show up in their owner's searches
+         */
+        public Document(long bodyId, String type, String majorVersionStableId, String title, String qualifier,
+                        boolean isPublic, Long ownerUserId) {
+            this.bodyId = bodyId;
+            this.type = type;
+            this.majorVersionStableId = majorVersionStableId;
+            this.title = title;
+            this.qualifier = qualifier;
+            this.isPublic = isPublic;
+            this.ownerUserId = ownerUserId;
+        }
+
+        boolean isVisibleTo(Long userId) {
+            return isPublic || (ownerUserId != null && ownerUserId.equals(userId));
+        }
+    }
+
+    private static class Entry {
+        final Document document;
+        final int majorVersionOrdinal;
+        final String[] terms;
+        final int[] weights;
+
+        Entry(Document document, int majorVersionOrdinal, String[] terms, int[] weights) {
+            this.document = document;
+            this.majorVersionOrdinal = majorVersionOrdinal;
+            this.terms = terms;
+            this.weights = weights;
+        }
+    }
+
+    public static class Page {
+        public final List<Document> hits;
+
+        /**
+         * Pass this back to get the next page, or null if this was the last one.
+         */
+        public final String nextCursor;
+
+        Page(List<Document> hits, String nextCursor) {
+            this.hits = hits;
+            this.nextCursor = nextCursor;
+        }
+    }
+
+    private static class Postings {
+        int[] ordinals = new int[4];
+        int[] weights = new int[4];
+        int size;
+        int live;
+
+        void add(int ordinal, int weight) {
+            if (size == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            ordinals[size] = ordinal;
+            weights[size] = weight;
+            size++;
+            live++;
+        }
+    }
+
+    /**
+     * Per-thread scratch space for scoring, indexed by ordinal. matched is all zeros between searches.
+     */
+    private static class Scratch {
+        int[] matched = new int[0];
+        double[] current = new double[0];
+        double[] total = new double[0];
+
+        /**
+         * major version ordinal -> 1 + ordinal of its best hit so far, or 0. All zeros between searches.
+         */
+        int[] bestByMajorVersion = new int[0];
+
+        void ensureCapacity(int ordinals, int majorVersions) {
+            if (matched.length < ordinals) {
+                int capacity = Math.max(ordinals, matched.length * 2);
+                matched = new int[capacity];
+                current = new double[capacity];
+                total = new double[capacity];
+            }
+            if (bestByMajorVersion.length < majorVersions) {
+                bestByMajorVersion = new int[Math.max(majorVersions, bestByMajorVersion.length * 2)];
+            }
+        }
+    }
+
+    private final NavigableMap<String, Postings> postings = new TreeMap<>();
+    private final Map<Long, Integer> ordinalsByBodyId = new HashMap<>();
+    private final Map<String, Integer> majorVersionOrdinals = new HashMap<>();
+    private Entry[] entries = new Entry[1024];
+    private int nextOrdinal;
+    private int deadOrdinals;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+    /**
+     * Adds the document, replacing any previous document with the same body id.
+     *
+     * @param bodyText text that may contain {{[majorVersionId]label}} links; only the labels are indexed
+     */
+    public void put(Document document, String bodyText) {
+        Map<String, Integer> weightsByTerm = new HashMap<>();
+        addTokens(document.title, TITLE_WEIGHT, weightsByTerm);
+        addTokens(document.qualifier, QUALIFIER_WEIGHT, weightsByTerm);
+        addBodyTokens(bodyText, weightsByTerm);
+
+        String[] terms = new String[weightsByTerm.size()];
+        int[] weights = new int[weightsByTerm.size()];
+        int i = 0;
+        for (Map.Entry<String, Integer> term : weightsByTerm.entrySet()) {
+            terms[i] = term.getKey();
+            weights[i] = term.getValue();
+            i++;
+        }
+
+        lock.writeLock().lock();
+        try {
+            removeNow(document.bodyId);
+            int ordinal = nextOrdinal++;
+            if (ordinal == entries.length) {
+                entries = Arrays.copyOf(entries, entries.length * 2);
+            }
+            int majorVersionOrdinal = majorVersionOrdinals.computeIfAbsent(document.majorVersionStableId, k -> majorVersionOrdinals.size());
+            entries[ordinal] = new Entry(document, majorVersionOrdinal, terms, weights);
+            ordinalsByBodyId.put(document.bodyId, ordinal);
+            for (int t = 0; t < terms.length; t++) {
+                postings.computeIfAbsent(terms[t], k -> new Postings()).add(ordinal, weights[t]);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Document get(long bodyId) {
+        lock.readLock().lock();
+        try {
+            Integer ordinal = ordinalsByBodyId.get(bodyId);
+            return ordinal == null ? null : entries[ordinal].document;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void remove(long bodyId) {
+        lock.writeLock().lock();
+        try {
+            removeNow(bodyId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            ordinalsByBodyId.clear();
+            majorVersionOrdinals.clear();
+            entries = new Entry[1024];
+            nextOrdinal = 0;
+            deadOrdinals = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ordinalsByBodyId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ranks the bodies that match the query and collapses them to the best body per major version, so that a page
+     * doesn't fill up with old versions of the same argument.
+     *
+     * @param searcherId drafts owned by this user are included; may be null
+     * @param types only bodies of these types, e.g. "assertion"; null for all types
+     * @param cursor the nextCursor of the previous page, or null for the first page
+     * @throws NodeInputException if the cursor is not one that this index handed out
+     */
+    public Page search(String query, Long searcherId, Collection<String> types, String cursor, int limit) throws NodeInputException {
+        double[] after = decodeCursor(cursor);
+        List<String> queryTokens = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+        if (queryTokens.isEmpty() || limit <= 0) {
+            return new Page(new ArrayList<>(), null);
+        }
+
+        lock.readLock().lock();
+        Scratch s = scratch.get();
+        s.ensureCapacity(nextOrdinal, majorVersionOrdinals.size());
+        int[] candidates = new int[0];
+        try {
+            double documentCount = ordinalsByBodyId.size();
+
+            // After token i, the bodies that matched tokens 0..i have matched == i + 1 and are listed in candidates.
+            for (int i = 0; i < queryTokens.size(); i++) {
+                String token = queryTokens.get(i);
+                int[] next = new int[16];
+                int nextSize = 0;
+
+                for (Map.Entry<String, Postings> term : postings.subMap(token, true, token + Character.MAX_VALUE, false).entrySet()) {
+                    Postings p = term.getValue();
+                    double idf = Math.log(1 + documentCount / p.live);
+                    if (!term.getKey().equals(token)) {
+                        idf *= PREFIX_PENALTY;
+                    }
+                    for (int j = 0; j < p.size; j++) {
+                        int ordinal = p.ordinals[j];
+                        if (entries[ordinal] == null) {
+                            continue;
+                        }
+                        double score = p.weights[j] * idf;
+                        int matched = s.matched[ordinal];
+                        if (matched == i) {
+                            s.matched[ordinal] = i + 1;
+                            s.current[ordinal] = score;
+                            if (nextSize == next.length) {
+                                next = Arrays.copyOf(next, nextSize * 2);
+                            }
+                            next[nextSize++] = ordinal;
+                        } else if (matched == i + 1 && score > s.current[ordinal]) {
+                            s.current[ordinal] = score;
+                        }
+                    }
+                }
+
+                if (i == 0) {
+                    candidates = Arrays.copyOf(next, nextSize);
+                    for (int ordinal : candidates) {
+                        s.total[ordinal] = s.current[ordinal];
+                    }
+                } else {
+                    for (int k = 0; k < nextSize; k++) {
+                        s.total[next[k]] += s.current[next[k]];
+                    }
+                }
+            }
+
+            int[] winners = bestPerMajorVersion(s, candidates, queryTokens.size(), searcherId, types);
+            return topHits(s, winners, after, limit);
+        } finally {
+            // Every body that got a nonzero matched count is in the first round of candidates.
+            for (int ordinal : candidates) {
+                s.matched[ordinal] = 0;
+            }
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return for each major version with a visible hit of an acceptable type, the ordinal of its best hit
+     */
+    private int[] bestPerMajorVersion(Scratch s, int[] candidates, int tokenCount, Long searcherId, Collection<String> types) {
+        int[] majorVersions = new int[16];
+        int count = 0;
+
+        for (int ordinal : candidates) {
+            Entry entry = entries[ordinal];
+            if (s.matched[ordinal] != tokenCount || !entry.document.isVisibleTo(searcherId) ||
+                    (types != null && !types.contains(entry.document.type))) {
+                continue;
+            }
+            int best = s.bestByMajorVersion[entry.majorVersionOrdinal] - 1;
+            if (best < 0) {
+                if (count == majorVersions.length) {
+                    majorVersions = Arrays.copyOf(majorVersions, count * 2);
+                }
+                majorVersions[count++] = entry.majorVersionOrdinal;
+                s.bestByMajorVersion[entry.majorVersionOrdinal] = ordinal + 1;
+            } else if (isBetter(s, ordinal, best)) {
+                s.bestByMajorVersion[entry.majorVersionOrdinal] = ordinal + 1;
+            }
+        }
+
+        int[] winners = new int[count];
+        for (int i = 0; i < count; i++) {
+            winners[i] = s.bestByMajorVersion[majorVersions[i]] - 1;
+            s.bestByMajorVersion[majorVersions[i]] = 0;
+        }
+        return winners;
+    }
+
+    /**
+     * Picks the best limit hits that rank after the cursor with a bounded min-heap. One extra is kept to find out
+     * whether there is another page.
+     */
+    private Page topHits(Scratch s, int[] winners, double[] after, int limit) {
+        int[] heap = new int[Math.min(limit + 1, winners.length)];
+        int heapSize = 0;
+
+        for (int ordinal : winners) {
+            if (after != null && !isAfter(s, ordinal, after)) {
+                continue;
+            }
+            if (heapSize < heap.length) {
+                heap[heapSize] = ordinal;
+                siftUp(s, heap, heapSize++);
+            } else if (heap.length > 0 && isBetter(s, ordinal, heap[0])) {
+                heap[0] = ordinal;
+                siftDown(s, heap, heapSize);
+            }
+        }
+
+        boolean hasMore = heapSize > limit;
+        if (hasMore) {
+            // Drop the worst, it belongs to the next page.
+            heap[0] = heap[--heapSize];
+            siftDown(s, heap, heapSize);
+        }
+
+        // Pop the worst first, filling the array from the back.
+        int[] ranked = new int[heapSize];
+        for (int i = heapSize - 1; i >= 0; i--) {
+            ranked[i] = heap[0];
+            heap[0] = heap[--heapSize];
+            siftDown(s, heap, heapSize);
+        }
+
+        List<Document> hits = new ArrayList<>(ranked.length);
+        for (int ordinal : ranked) {
+            hits.add(entries[ordinal].document);
+        }
+
+        String nextCursor = null;
+        if (hasMore) {
+            int last = ranked[ranked.length - 1];
+            nextCursor = encodeCursor(s.total[last], entries[last].document.bodyId);
+        }
+        return new Page(hits, nextCursor);
+    }
+
+    /**
+     * True if the hit ranks strictly after the position the cursor points at.
+     */
+    private boolean isAfter(Scratch s, int ordinal, double[] after) {
+        if (s.total[ordinal] != after[0]) {
+            return s.total[ordinal] < after[0];
+        }
+        return entries[ordinal].document.bodyId < (long) after[1];
+    }
+
+    /**
+     * A cursor is the score and body id of the last hit on the page. Scores can drift as the index changes, which
+     * at worst repeats or skips a hit near a page boundary.
+     */
+    private static String encodeCursor(double score, long bodyId) {
+        String position = Long.toHexString(Double.doubleToLongBits(score)) + ":" + bodyId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static double[] decodeCursor(String cursor) throws NodeInputException {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String[] position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":");
+            return new double[]{Double.longBitsToDouble(Long.parseUnsignedLong(position[0], 16)), Long.parseLong(position[1])};
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw new NodeInputException("Invalid search cursor.");
+        }
+    }
+
+    /**
+     * Higher scores first. Ties go to the newer body, which has the higher id.
+     */
+    private boolean isBetter(Scratch s, int a, int b) {
+        if (s.total[a] != s.total[b]) {
+            return s.total[a] > s.total[b];
+        }
+        return entries[a].document.bodyId > entries[b].document.bodyId;
+    }
+
+    private void siftUp(Scratch s, int[] heap, int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (!isBetter(s, heap[parent], heap[i])) {
+                break;
+            }
+            swap(heap, parent, i);
+            i = parent;
+        }
+    }
+
+    private void siftDown(Scratch s, int[] heap, int size) {
+        int i = 0;
+        while (true) {
+            int worst = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && isBetter(s, heap[worst], heap[left])) {
+                worst = left;
+            }
+            if (right < size && isBetter(s, heap[worst], heap[right])) {
+                worst = right;
+            }
+            if (worst == i) {
+                return;
+            }
+            swap(heap, i, worst);
+            i = worst;
+        }
+    }
+
+    private static void swap(int[] array, int i, int j) {
+        int tmp = array[i];
+        array[i] = array[j];
+        array[j] = tmp;
+    }
+
+    private void removeNow(long bodyId) {
+        Integer ordinal = ordinalsByBodyId.remove(bodyId);
+        if (ordinal == null) {
+            return;
+        }
+        for (String term : entries[ordinal].terms) {
+            Postings p = postings.get(term);
+            if (--p.live == 0) {
+                postings.remove(term);
+            }
+        }
+        entries[ordinal] = null;
+        deadOrdinals++;
+
+        if (deadOrdinals >= MIN_DEAD_TO_COMPACT && deadOrdinals > ordinalsByBodyId.size()) {
+            compact();
+        }
+    }
+
+    /**
+     * Renumbers the live documents and rebuilds the postings without the dead ordinals.
+     */
+    private void compact() {
+        Entry[] live = new Entry[Math.max(1024, ordinalsByBodyId.size() * 2)];
+        postings.clear();
+        ordinalsByBodyId.clear();
+        majorVersionOrdinals.clear();
+        int ordinal = 0;
+        for (int i = 0; i < nextOrdinal; i++) {
+            Entry previous = entries[i];
+            if (previous == null) {
+                continue;
+            }
+            int majorVersionOrdinal = majorVersionOrdinals.computeIfAbsent(previous.document.majorVersionStableId, k -> majorVersionOrdinals.size());
+            Entry entry = new Entry(previous.document, majorVersionOrdinal, previous.terms, previous.weights);
+            live[ordinal] = entry;
+            ordinalsByBodyId.put(entry.document.bodyId, ordinal);
+            for (int t = 0; t < entry.terms.length; t++) {
+                postings.computeIfAbsent(entry.terms[t], k -> new Postings()).add(ordinal, entry.weights[t]);
+            }
+            ordinal++;
+        }
+        entries = live;
+        nextOrdinal = ordinal;
+        deadOrdinals = 0;
+    }
+
+    /**
+     * Indexes the text outside of links and the labels inside them, but not the major version ids.
+     */
+    private static void addBodyTokens(String body, Map<String, Integer> weights) {
+        if (body == null) {
+            return;
+        }
+        int[] position = {0};
+        BodyLinkScanner.scan(body, (text, idStart, idEnd, labelStart, labelEnd) -> {
+            addTokens(text, position[0], idStart - 3, BODY_WEIGHT, weights);
+            addTokens(text, labelStart, labelEnd, BODY_WEIGHT, weights);
+            position[0] = labelEnd + 2;
+        });
+        addTokens(body, position[0], body.length(), BODY_WEIGHT, weights);
+    }
+
+    private static void addTokens(String text, int weight, Map<String, Integer> weights) {
+        if (text != null) {
+            addTokens(text, 0, text.length(), weight, weights);
+        }
+    }
+
+    private static void addTokens(String text, int start, int end, int weight, Map<String, Integer> weights) {
+        for (String token : tokenize(text, start, end)) {
+            weights.merge(token, weight, Integer::sum);
+        }
+    }
+
+    static List<String> tokenize(String text) {
+        return text == null ? new ArrayList<>() : tokenize(text, 0, text.length());
+    }
+
+    private static List<String> tokenize(String text, int start, int end) {
+        List<String> tokens = new ArrayList<>();
+        int tokenStart = -1;
+        for (int i = start; i <= end; i++) {
+            boolean inToken = i < end && Character.isLetterOrDigit(text.charAt(i));
+            if (inToken && tokenStart < 0) {
+                tokenStart = i;
+            } else if (!inToken && tokenStart >= 0) {
+                tokens.add(text.substring(tokenStart, i).toLowerCase(Locale.ROOT));
+                tokenStart = -1;
+            }
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,288 @@
+package com.nodestand.service.search;
+
+import com.nodestand.nodes.ArgumentBody;
+import com.nodestand.nodes.NodeInputException;
+import com.nodestand.nodes.assertion.AssertionBody;
+import com.nodestand.nodes.interpretation.InterpretationBody;
+import com.nodestand.nodes.source.SourceBody;
+import com.nodestand.nodes.subject.SubjectBody;
+import org.neo4j.ogm.session.Session;
+import org.neo4j.ogm.session.SessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps an {@link InvertedIndex} of every argument body, a {@link TitleTrie} of public titles for each type, and the
+ * titles of each user's drafts, in step with the database. They are loaded in full when the application starts, and after that the argument services
+ * tell this about each body they create, edit, publish or discard. Changes made inside a transaction only reach the
+ * indexes once it commits.
+ */
+@Component
+public class SearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(SearchIndex.class);
+
+    private static final int LOAD_BATCH_SIZE = 10000;
+
+    private static final Map<String, String> TYPES_BY_LABEL = new HashMap<>();
+    static {
+        TYPES_BY_LABEL.put(AssertionBody.class.getSimpleName(), "assertion");
+        TYPES_BY_LABEL.put(InterpretationBody.class.getSimpleName(), "interpretation");
+        TYPES_BY_LABEL.put(SourceBody.class.getSimpleName(), "source");
+        TYPES_BY_LABEL.put(SubjectBody.class.getSimpleName(), "subject");
+    }
+
+    private final SessionFactory sessionFactory;
+
+    /**
+     * Replaced wholesale by {@link #rebuild()}. A change that lands on the old index while a rebuild is reading the
+     * database can be lost, which is acceptable because rebuilds only happen at startup.
+     */
+    private volatile InvertedIndex index = new InvertedIndex();
+
+    /**
+     * type -> public titles of that type. Replaced wholesale along with the index.
+     */
+    private volatile Map<String, TitleTrie> titlesByType = emptyTries();
+
+    /**
+     * owner user id -> body id -> title of a draft. Users only have a handful of drafts, so suggestions from these are
+     * found by scanning rather than kept in a trie. Replaced wholesale along with the index.
+     */
+    private volatile Map<Long, Map<Long, TitleTrie.Title>> draftTitlesByOwner = new ConcurrentHashMap<>();
+
+    /**
+     * @param sessionFactory the index is loaded outside of any web request, where the request scoped Session doesn't
+     *                       exist, so it opens a session of its own.
+     */
+    @Autowired
+    public SearchIndex(SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    @EventListener(ContextRefreshedEvent.class)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        Session session = sessionFactory.openSession();
+        InvertedIndex fresh = new InvertedIndex();
+        Map<String, List<TitleTrie.Title>> publicTitles = new HashMap<>();
+        Map<Long, Map<Long, TitleTrie.Title>> draftTitles = new ConcurrentHashMap<>();
+
+        long after = -1;
+        while (true) {
+            Map<String, Object> params = new HashMap<>();
+            params.put("after", after);
+            params.put("batchSize", LOAD_BATCH_SIZE);
+
+            int rows = 0;
+            for (Map<String, Object> row : session.query(
+                    "MATCH (n:ArgumentBody)-[:VERSION_OF]->(m:MajorVersion) WHERE id(n) > {after} " +
+                            "OPTIONAL MATCH (n)-[:AUTHORED_BY]->(:Author)-[:CONTROLLED_BY]->(u:User) " +
+                            "RETURN id(n) AS id, labels(n) AS labels, n.title AS title, n.qualifier AS qualifier, " +
+                            "n.body AS body, n.isPublic AS isPublic, id(u) AS owner, id(m) AS majorVersionId, " +
+                            "m.stableId AS majorVersion " +
+                            "ORDER BY id(n) LIMIT {batchSize}", params).queryResults()) {
+                rows++;
+                after = ((Number) row.get("id")).longValue();
+                String type = typeOf(labelsOf(row.get("labels")));
+                boolean isPublic = Boolean.TRUE.equals(row.get("isPublic"));
+                Long owner = row.get("owner") == null ? null : ((Number) row.get("owner")).longValue();
+                fresh.put(new InvertedIndex.Document(
+                        after,
+                        type,
+                        (String) row.get("majorVersion"),
+                        (String) row.get("title"),
+                        (String) row.get("qualifier"),
+                        isPublic,
+                        owner),
+                        (String) row.get("body"));
+                if (type != null) {
+                    TitleTrie.Title title = new TitleTrie.Title(
+                            after,
+                            ((Number) row.get("majorVersionId")).longValue(),
+                            (String) row.get("majorVersion"),
+                            type,
+                            (String) row.get("title"),
+                            (String) row.get("qualifier"));
+                    if (isPublic) {
+                        publicTitles.computeIfAbsent(type, k -> new ArrayList<>()).add(title);
+                    } else if (owner != null) {
+                        draftTitles.computeIfAbsent(owner, k -> new ConcurrentHashMap<>()).put(after, title);
+                    }
+                }
+            }
+            if (rows < LOAD_BATCH_SIZE) {
+                break;
+            }
+        }
+
+        Map<String, TitleTrie> freshTitles = new HashMap<>();
+        for (String type : TYPES_BY_LABEL.values()) {
+            freshTitles.put(type, new TitleTrie(publicTitles.getOrDefault(type, Collections.emptyList())));
+        }
+
+        index = fresh;
+        titlesByType = freshTitles;
+        draftTitlesByOwner = draftTitles;
+        log.info("Indexed {} argument bodies for search in {} ms", fresh.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Adds or replaces the body once the current transaction commits.
+     *
+     * @param ownerUserId the user controlling the body's author. If null, the owner already on record is kept.
+     */
+    public void index(ArgumentBody body, Long ownerUserId) {
+        String type = typeOf(Collections.singleton(body.getClass().getSimpleName()));
+        String text = body instanceof AssertionBody ? ((AssertionBody) body).getBody()
+                : body instanceof InterpretationBody ? ((InterpretationBody) body).getBody() : null;
+        long bodyId = body.getId();
+        long majorVersionId = body.getMajorVersion().getId();
+        String majorVersionStableId = body.getMajorVersion().getStableId();
+        String title = body.getTitle();
+        String qualifier = body.getQualifier();
+        boolean isPublic = body.isPublic();
+
+        afterCommit(() -> {
+            Long owner = ownerUserId;
+            if (owner == null) {
+                InvertedIndex.Document existing = index.get(bodyId);
+                owner = existing != null ? existing.ownerUserId : null;
+            }
+            index.put(new InvertedIndex.Document(bodyId, type, majorVersionStableId, title, qualifier, isPublic, owner), text);
+            if (type == null) {
+                return;
+            }
+            TitleTrie.Title suggestion = new TitleTrie.Title(bodyId, majorVersionId, majorVersionStableId, type, title, qualifier);
+            if (isPublic) {
+                titlesByType.get(type).put(suggestion);
+                removeDraftTitle(owner, bodyId);
+            } else if (owner != null) {
+                draftTitlesByOwner.computeIfAbsent(owner, k -> new ConcurrentHashMap<>()).put(bodyId, suggestion);
+            }
+        });
+    }
+
+    /**
+     * Drops the body once the current transaction commits.
+     */
+    public void remove(long bodyId) {
+        afterCommit(() -> {
+            InvertedIndex.Document existing = index.get(bodyId);
+            if (existing != null) {
+                removeDraftTitle(existing.ownerUserId, bodyId);
+            }
+            index.remove(bodyId);
+        });
+    }
+
+    /**
+     * @see InvertedIndex#search(String, Long, Collection, String, int)
+     */
+    public InvertedIndex.Page search(String query, Long searcherId, Collection<String> types, String cursor, int limit)
+            throws NodeInputException {
+        return index.search(query, searcherId, types, cursor, limit);
+    }
+
+    /**
+     * Public titles of the given types with a word that starts with the prefix, best first, along with the searcher's
+     * own drafts so that they can link drafts to each other. Only reads memory.
+     *
+     * @param searcherId drafts owned by this user are included; may be null
+     * @param limit capped at {@link TitleTrie#MAX_SUGGESTIONS}
+     */
+    public List<TitleTrie.Title> suggest(String prefix, Long searcherId, Collection<String> types, int limit) {
+        Map<String, TitleTrie> tries = titlesByType;
+        List<TitleTrie.Match> matches = new ArrayList<>();
+        for (String type : types) {
+            TitleTrie trie = tries.get(type);
+            if (trie != null) {
+                matches.addAll(trie.suggest(prefix, limit));
+            }
+        }
+        Map<Long, TitleTrie.Title> drafts = searcherId == null ? null : draftTitlesByOwner.get(searcherId);
+        if (drafts != null) {
+            List<TitleTrie.Title> ofTypes = new ArrayList<>();
+            for (TitleTrie.Title draft : drafts.values()) {
+                if (types.contains(draft.getType())) {
+                    ofTypes.add(draft);
+                }
+            }
+            if (!ofTypes.isEmpty()) {
+                matches.addAll(new TitleTrie(ofTypes).suggest(prefix, limit));
+            }
+        }
+        List<TitleTrie.Title> titles = new ArrayList<>();
+        for (TitleTrie.Match match : TitleTrie.best(matches, Math.min(limit, TitleTrie.MAX_SUGGESTIONS))) {
+            titles.add(match.title);
+        }
+        return titles;
+    }
+
+    public void clear() {
+        index.clear();
+        titlesByType = emptyTries();
+        draftTitlesByOwner = new ConcurrentHashMap<>();
+    }
+
+    private void removeDraftTitle(Long ownerUserId, long bodyId) {
+        if (ownerUserId == null) {
+            return;
+        }
+        Map<Long, TitleTrie.Title> drafts = draftTitlesByOwner.get(ownerUserId);
+        if (drafts != null) {
+            drafts.remove(bodyId);
+        }
+    }
+
+    private void afterCommit(Runnable change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    change.run();
+                }
+            });
+        } else {
+            change.run();
+        }
+    }
+
+    private static Map<String, TitleTrie> emptyTries() {
+        Map<String, TitleTrie> tries = new HashMap<>();
+        for (String type : TYPES_BY_LABEL.values()) {
+            tries.put(type, new TitleTrie());
+        }
+        return tries;
+    }
+
+    private static Collection<String> labelsOf(Object labels) {
+        if (labels instanceof Collection) {
+            List<String> copied = new ArrayList<>();
+            for (Object label : (Collection<?>) labels) {
+                copied.add(String.valueOf(label));
+            }
+            return copied;
+        }
+        return Arrays.asList((String[]) labels);
+    }
+
+    private static String typeOf(Collection<String> labels) {
+        for (String label : labels) {
+            String type = TYPES_BY_LABEL.get(label);
+            if (type != null) {
+                return type;
+            }
+        }
+        return null;
+    }
+}
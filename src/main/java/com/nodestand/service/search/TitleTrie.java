@@ -0,0 +1,389 @@
+package com.nodestand.service.search;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A prefix trie over the titles of one type of node, for typeahead. Each title is normalized the same way as
+ * {@link InvertedIndex} tokens, and inserted once from the start of every word, so "chan" finds "Climate change".
+ *
+ * Every trie node caches the best few titles in its subtree, so a lookup only walks down the prefix and copies
+ * that list out. Titles that match from their first word rank first, then shorter titles, then newer bodies.
+ *
+ * There is one title per major version: putting a newer body of the same major version replaces the old one.
+ */
+public class TitleTrie {
+
+    public static final int MAX_SUGGESTIONS = 10;
+
+    /**
+     * Keys are cut off at this length to bound the depth of the trie. Longer prefixes walk as far as the cutoff and
+     * check the few titles below it directly.
+     */
+    private static final int MAX_KEY_LENGTH = 24;
+
+    private static final char[] NO_LABELS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final Match[] NO_MATCHES = new Match[0];
+
+    public static class Title {
+        private final long bodyId;
+        private final long majorVersionId;
+        private final String majorVersionStableId;
+        private final String type;
+        private final String title;
+        private final String qualifier;
+
+        public Title(long bodyId, long majorVersionId, String majorVersionStableId, String type, String title,
+                     String qualifier) {
+            this.bodyId = bodyId;
+            this.majorVersionId = majorVersionId;
+            this.majorVersionStableId = majorVersionStableId;
+            this.type = type;
+            this.title = title;
+            this.qualifier = qualifier;
+        }
+
+        public long getBodyId() {
+            return bodyId;
+        }
+
+        public long getMajorVersionId() {
+            return majorVersionId;
+        }
+
+        public String getMajorVersionStableId() {
+            return majorVersionStableId;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public String getQualifier() {
+            return qualifier;
+        }
+    }
+
+    /**
+     * A title reached through one of its words.
+     */
+    static class Match {
+        final Title title;
+
+        /**
+         * The normalized title from the word on. Only the first {@link #MAX_KEY_LENGTH} characters are in the trie.
+         */
+        final String key;
+        final int wordIndex;
+
+        Match(Title title, String key, int wordIndex) {
+            this.title = title;
+            this.key = key;
+            this.wordIndex = wordIndex;
+        }
+    }
+
+    static final Comparator<Match> RANK = Comparator.<Match>comparingInt(m -> m.wordIndex)
+            .thenComparingInt(m -> m.title.title.length())
+            .thenComparingLong(m -> -m.title.bodyId);
+
+    private static class Node {
+        char[] labels = NO_LABELS;
+        Node[] children = NO_CHILDREN;
+
+        /**
+         * Matches whose key ends at this node, or is cut off here. Null when there are none.
+         */
+        List<Match> matches;
+
+        /**
+         * The best matches in this subtree, one per title, best first. A node whose only content is a single child
+         * shares that child's array.
+         */
+        Match[] top = NO_MATCHES;
+
+        Node child(char label) {
+            int i = Arrays.binarySearch(labels, label);
+            return i < 0 ? null : children[i];
+        }
+
+        Node childOrCreate(char label) {
+            int i = Arrays.binarySearch(labels, label);
+            if (i >= 0) {
+                return children[i];
+            }
+            i = -i - 1;
+            Node child = new Node();
+            char[] newLabels = new char[labels.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(labels, 0, newLabels, 0, i);
+            System.arraycopy(children, 0, newChildren, 0, i);
+            newLabels[i] = label;
+            newChildren[i] = child;
+            System.arraycopy(labels, i, newLabels, i + 1, labels.length - i);
+            System.arraycopy(children, i, newChildren, i + 1, children.length - i);
+            labels = newLabels;
+            children = newChildren;
+            return child;
+        }
+
+        void removeChild(char label) {
+            int i = Arrays.binarySearch(labels, label);
+            if (i < 0) {
+                return;
+            }
+            char[] newLabels = new char[labels.length - 1];
+            Node[] newChildren = new Node[children.length - 1];
+            System.arraycopy(labels, 0, newLabels, 0, i);
+            System.arraycopy(children, 0, newChildren, 0, i);
+            System.arraycopy(labels, i + 1, newLabels, i, labels.length - i - 1);
+            System.arraycopy(children, i + 1, newChildren, i, children.length - i - 1);
+            labels = newLabels;
+            children = newChildren;
+        }
+
+        boolean isEmpty() {
+            return matches == null && children.length == 0;
+        }
+    }
+
+    private final Node root = new Node();
+    private final Map<String, Title> titlesByMajorVersion = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public TitleTrie() {
+    }
+
+    /**
+     * Loads all the titles at once, which is much cheaper than putting them one by one because every node's best
+     * matches are only worked out once.
+     */
+    public TitleTrie(Collection<Title> titles) {
+        for (Title title : titles) {
+            Title existing = titlesByMajorVersion.get(title.majorVersionStableId);
+            if (existing == null || existing.bodyId < title.bodyId) {
+                titlesByMajorVersion.put(title.majorVersionStableId, title);
+            }
+        }
+        for (Title title : titlesByMajorVersion.values()) {
+            for (Match match : matchesOf(title)) {
+                insertPath(match).addMatch(match);
+            }
+        }
+        recomputeSubtree(root);
+    }
+
+    /**
+     * Adds the title, replacing the one for the same major version unless that one belongs to a newer body.
+     */
+    public void put(Title title) {
+        lock.writeLock().lock();
+        try {
+            Title existing = titlesByMajorVersion.get(title.majorVersionStableId);
+            if (existing != null) {
+                if (existing.bodyId > title.bodyId) {
+                    return;
+                }
+                removeNow(existing);
+            }
+            titlesByMajorVersion.put(title.majorVersionStableId, title);
+            for (Match match : matchesOf(title)) {
+                Path path = insertPath(match);
+                path.addMatch(match);
+                path.recompute();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String majorVersionStableId) {
+        lock.writeLock().lock();
+        try {
+            Title existing = titlesByMajorVersion.get(majorVersionStableId);
+            if (existing != null) {
+                removeNow(existing);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return titlesByMajorVersion.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return at most limit (and at most {@link #MAX_SUGGESTIONS}) titles with a word that starts with the prefix,
+     * best first
+     */
+    List<Match> suggest(String prefix, int limit) {
+        String key = normalize(InvertedIndex.tokenize(prefix), 0);
+        limit = Math.min(limit, MAX_SUGGESTIONS);
+        if (key.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            for (int i = 0; i < Math.min(key.length(), MAX_KEY_LENGTH) && node != null; i++) {
+                node = node.child(key.charAt(i));
+            }
+            if (node == null) {
+                return new ArrayList<>();
+            }
+            if (key.length() <= MAX_KEY_LENGTH) {
+                return new ArrayList<>(Arrays.asList(node.top).subList(0, Math.min(limit, node.top.length)));
+            }
+
+            // Past the cutoff every match lives in this node's own list.
+            List<Match> matches = new ArrayList<>();
+            if (node.matches != null) {
+                for (Match match : node.matches) {
+                    if (match.key.startsWith(key)) {
+                        matches.add(match);
+                    }
+                }
+            }
+            return best(matches, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The nodes from the root down to where a key ends.
+     */
+    private static class Path {
+        final Node[] nodes;
+
+        Path(Node[] nodes) {
+            this.nodes = nodes;
+        }
+
+        void addMatch(Match match) {
+            Node last = nodes[nodes.length - 1];
+            if (last.matches == null) {
+                last.matches = new ArrayList<>(1);
+            }
+            last.matches.add(match);
+        }
+
+        /**
+         * Works out the best matches again from the end of the key back up to the root.
+         */
+        void recompute() {
+            for (int i = nodes.length - 1; i >= 0; i--) {
+                TitleTrie.recompute(nodes[i]);
+            }
+        }
+    }
+
+    private Path insertPath(Match match) {
+        Node[] nodes = new Node[pathLength(match) + 1];
+        nodes[0] = root;
+        for (int i = 0; i < nodes.length - 1; i++) {
+            nodes[i + 1] = nodes[i].childOrCreate(match.key.charAt(i));
+        }
+        return new Path(nodes);
+    }
+
+    private void removeNow(Title title) {
+        titlesByMajorVersion.remove(title.majorVersionStableId);
+        for (Match match : matchesOf(title)) {
+            Node[] nodes = new Node[pathLength(match) + 1];
+            nodes[0] = root;
+            for (int i = 0; i < nodes.length - 1 && nodes[i] != null; i++) {
+                nodes[i + 1] = nodes[i].child(match.key.charAt(i));
+            }
+            Node last = nodes[nodes.length - 1];
+            if (last == null || last.matches == null) {
+                // Already removed through an earlier word with the same key.
+                continue;
+            }
+            last.matches.removeIf(m -> m.title == title);
+            if (last.matches.isEmpty()) {
+                last.matches = null;
+            }
+            for (int i = nodes.length - 1; i >= 0; i--) {
+                if (i > 0 && nodes[i].isEmpty()) {
+                    nodes[i - 1].removeChild(match.key.charAt(i - 1));
+                } else {
+                    recompute(nodes[i]);
+                }
+            }
+        }
+    }
+
+    private static void recomputeSubtree(Node node) {
+        for (Node child : node.children) {
+            recomputeSubtree(child);
+        }
+        recompute(node);
+    }
+
+    private static void recompute(Node node) {
+        if (node.matches == null && node.children.length == 1) {
+            node.top = node.children[0].top;
+            return;
+        }
+        List<Match> candidates = new ArrayList<>();
+        if (node.matches != null) {
+            candidates.addAll(node.matches);
+        }
+        for (Node child : node.children) {
+            Collections.addAll(candidates, child.top);
+        }
+        node.top = best(candidates, MAX_SUGGESTIONS).toArray(NO_MATCHES);
+    }
+
+    /**
+     * The best matches, keeping only the best one for each title.
+     */
+    static List<Match> best(List<Match> candidates, int limit) {
+        candidates.sort(RANK);
+        List<Match> best = new ArrayList<>(Math.min(limit, candidates.size()));
+        Set<Title> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Match match : candidates) {
+            if (best.size() == limit) {
+                break;
+            }
+            if (seen.add(match.title)) {
+                best.add(match);
+            }
+        }
+        return best;
+    }
+
+    private static List<Match> matchesOf(Title title) {
+        List<String> words = InvertedIndex.tokenize(title.title);
+        List<Match> matches = new ArrayList<>(words.size());
+        for (int i = 0; i < words.size(); i++) {
+            matches.add(new Match(title, normalize(words, i), i));
+        }
+        return matches;
+    }
+
+    private static int pathLength(Match match) {
+        return Math.min(match.key.length(), MAX_KEY_LENGTH);
+    }
+
+    /**
+     * The words from the given one on, separated by single spaces.
+     */
+    private static String normalize(List<String> words, int from) {
+        return String.join(" ", words.subList(from, words.size()));
+    }
+}
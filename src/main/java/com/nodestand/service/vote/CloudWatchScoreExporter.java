@@ -0,0 +1,31 @@
+package com.nodestand.service.vote;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Writes score events to user-score.log (see logback-spring.xml), which the Elastic Beanstalk log agent ships to
+ * CloudWatch. Nothing in the application reads them back any more; turn this off with
+ * scoreLog.cloudWatchExport=false.
+ */
+@Component
+@ConditionalOnProperty(name = "scoreLog.cloudWatchExport", matchIfMissing = true)
+public class CloudWatchScoreExporter implements ScoreEventSink {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    private final ObjectWriter writer = new ObjectMapper().writerFor(ScoreLog.class);
+
+    @Override
+    public void write(List<TimestampedScoreLog> batch) throws IOException {
+        for (TimestampedScoreLog scoreLog : batch) {
+            logger.info("{} {}", scoreLog.recipientId, writer.writeValueAsString(scoreLog));
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.nodestand.service.vote;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Approximately the k keys that were added most often recently, in bounded memory. Counting follows the Space-Saving
+ * algorithm: at most {@link #capacity} keys are tracked, and a new key takes over the smallest counter, inheriting its
+ * count as the possible error. Any key whose true count is more than the smallest tracked count is guaranteed to be
+ * tracked.
+ *
+ * Each add is worth less the older it gets, halving every half-life. Rather than decaying every counter as time
+ * passes, an add at time t is given the weight 2^((t - landmark) / halfLife), which grows with time, and counts are
+ * scaled back down to the present when they are read. That keeps the relative order of counters fixed between adds,
+ * so they can stay in a sorted set. When the weights get large the landmark is moved up and all counters are scaled
+ * down once.
+ *
+ * All methods are safe to call from any thread.
+ */
+public class DecayingTopK {
+
+    // Move the landmark before weights reach 2^RENORMALIZE_EXPONENT, well inside what a double holds exactly enough.
+    private static final double RENORMALIZE_EXPONENT = 40;
+
+    public static class Trend {
+        public final String key;
+
+        /**
+         * Decayed count as of the time it was read. An overestimate by at most error.
+         */
+        public final double score;
+        public final double error;
+
+        Trend(String key, double score, double error) {
+            this.key = key;
+            this.score = score;
+            this.error = error;
+        }
+    }
+
+    private static class Counter {
+        final String key;
+        final double weight;
+        final double error;
+
+        Counter(String key, double weight, double error) {
+            this.key = key;
+            this.weight = weight;
+            this.error = error;
+        }
+    }
+
+    private static final Comparator<Counter> BY_WEIGHT =
+            Comparator.<Counter>comparingDouble(c -> c.weight).thenComparing(c -> c.key);
+
+    private final int capacity;
+    private final double halfLifeMillis;
+
+    private long landmark = Long.MIN_VALUE;
+    private final Map<String, Counter> counters = new HashMap<>();
+
+    // Smallest first, so the counter to take over is first().
+    private final TreeSet<Counter> ordered = new TreeSet<>(BY_WEIGHT);
+
+    public DecayingTopK(int capacity, long halfLife, TimeUnit unit) {
+        if (capacity < 1 || halfLife <= 0) {
+            throw new IllegalArgumentException("Capacity and half-life must be positive.");
+        }
+        this.capacity = capacity;
+        this.halfLifeMillis = unit.toMillis(halfLife);
+    }
+
+    public synchronized void add(String key, long timeMillis) {
+        if (landmark == Long.MIN_VALUE) {
+            landmark = timeMillis;
+        } else if (exponent(timeMillis) > RENORMALIZE_EXPONENT) {
+            renormalize(timeMillis);
+        }
+        double weight = Math.pow(2, exponent(timeMillis));
+
+        Counter counter = counters.get(key);
+        if (counter != null) {
+            ordered.remove(counter);
+            counter = new Counter(key, counter.weight + weight, counter.error);
+        } else if (counters.size() < capacity) {
+            counter = new Counter(key, weight, 0);
+        } else {
+            Counter smallest = ordered.pollFirst();
+            counters.remove(smallest.key);
+            counter = new Counter(key, smallest.weight + weight, smallest.weight);
+        }
+        counters.put(key, counter);
+        ordered.add(counter);
+    }
+
+    /**
+     * @return up to limit keys with the highest decayed counts as of now, highest first
+     */
+    public synchronized List<Trend> top(int limit, long now) {
+        List<Trend> top = new ArrayList<>(Math.max(0, Math.min(limit, counters.size())));
+        double scale = scale(now);
+        for (Iterator<Counter> it = ordered.descendingIterator(); it.hasNext() && top.size() < limit; ) {
+            Counter counter = it.next();
+            top.add(new Trend(counter.key, counter.weight * scale, counter.error * scale));
+        }
+        return top;
+    }
+
+    /**
+     * @return the decayed count of key as of now, or 0 if it is not tracked
+     */
+    public synchronized double score(String key, long now) {
+        Counter counter = counters.get(key);
+        return counter == null ? 0 : counter.weight * scale(now);
+    }
+
+    public synchronized int size() {
+        return counters.size();
+    }
+
+    private double scale(long now) {
+        return landmark == Long.MIN_VALUE ? 0 : Math.pow(2, -exponent(now));
+    }
+
+    private double exponent(long timeMillis) {
+        return (timeMillis - landmark) / halfLifeMillis;
+    }
+
+    private void renormalize(long newLandmark) {
+        double scale = Math.pow(2, -exponent(newLandmark));
+        landmark = newLandmark;
+        ordered.clear();
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            Counter old = entry.getValue();
+            Counter scaled = new Counter(old.key, old.weight * scale, old.error * scale);
+            entry.setValue(scaled);
+            ordered.add(scaled);
+        }
+    }
+}
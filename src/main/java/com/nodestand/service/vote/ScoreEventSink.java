@@ -0,0 +1,16 @@
+package com.nodestand.service.vote;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Somewhere that {@link ScoreLogger} delivers score events. Every sink bean gets every event, in batches, on the
+ * score logger's writer thread, so implementations don't need to be thread safe for writing.
+ */
+public interface ScoreEventSink {
+
+    /**
+     * @param batch only valid for the duration of the call
+     */
+    void write(List<TimestampedScoreLog> batch) throws IOException;
+}
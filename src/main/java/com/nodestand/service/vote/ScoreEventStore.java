@@ -0,0 +1,426 @@
+package com.nodestand.service.vote;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.*;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * An append-only store of score events on local disk, so that score history can be read without going to
+ * CloudWatch.
+ *
+ * Events are appended as JSON lines to segment files named scores-[number].jsonl. A segment is closed once it
+ * reaches the size limit or spans a day, and closed segments whose newest event is older than the retention period
+ * are deleted. An in-memory index maps each recipient to the file position, length and timestamp of their events;
+ * it is rebuilt by reading the segments on startup.
+ *
+ * Writes come from the score logger's writer thread only. Events become visible to queries once their batch has
+ * been flushed.
+ *
+ * This is the only copy of the score history, and it assumes a single instance of the application. The directory
+ * must outlive redeploys and must not be shared with another instance, which would write its own segments with the
+ * same numbers. There is deliberately no default for scoreStore.directory, so that startup fails rather than
+ * quietly keeping history somewhere like a tmpdir, where /getScoreLog and the rollups would lose it on every deploy.
+ */
+@Component
+public class ScoreEventStore implements ScoreEventSink {
+
+    private static final Logger log = LoggerFactory.getLogger(ScoreEventStore.class);
+
+    private static final String SEGMENT_PREFIX = "scores-";
+    private static final String SEGMENT_SUFFIX = ".jsonl";
+    private static final long MAX_SEGMENT_SPAN_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private final File directory;
+    private final long maxSegmentBytes;
+    private final long retentionMillis;
+
+    private final ObjectWriter writer;
+    private final ObjectReader reader;
+
+    private final List<Segment> segments = new ArrayList<>();
+    private final Map<String, Postings> postingsByRecipient = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Only touched by the writing thread.
+    private Segment current;
+    private OutputStream out;
+
+    private static class Segment {
+        final long number;
+        final File file;
+        // Only the writer thread changes these, outside the lock, so they are volatile for replay and deleteExpired.
+        volatile long size;
+        volatile long minTimestamp = Long.MAX_VALUE;
+        volatile long maxTimestamp = Long.MIN_VALUE;
+        volatile boolean deleted;
+
+        Segment(long number, File file) {
+            this.number = number;
+            this.file = file;
+        }
+
+        void include(long timestamp) {
+            minTimestamp = Math.min(minTimestamp, timestamp);
+            maxTimestamp = Math.max(maxTimestamp, timestamp);
+        }
+    }
+
+    /**
+     * One recipient's events in the order they were written.
+     */
+    private static class Postings {
+        Segment[] segments = new Segment[4];
+        long[] offsets = new long[4];
+        int[] lengths = new int[4];
+        long[] timestamps = new long[4];
+        int size;
+
+        void add(Segment segment, long offset, int length, long timestamp) {
+            if (size == segments.length) {
+                int capacity = size * 2;
+                segments = Arrays.copyOf(segments, capacity);
+                offsets = Arrays.copyOf(offsets, capacity);
+                lengths = Arrays.copyOf(lengths, capacity);
+                timestamps = Arrays.copyOf(timestamps, capacity);
+            }
+            segments[size] = segment;
+            offsets[size] = offset;
+            lengths[size] = length;
+            timestamps[size] = timestamp;
+            size++;
+        }
+
+        void removeDeleted() {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (!segments[i].deleted) {
+                    segments[kept] = segments[i];
+                    offsets[kept] = offsets[i];
+                    lengths[kept] = lengths[i];
+                    timestamps[kept] = timestamps[i];
+                    kept++;
+                }
+            }
+            Arrays.fill(segments, kept, size, null);
+            size = kept;
+        }
+    }
+
+    /**
+     * A position that has been written but is not in the index yet.
+     */
+    private static class Pending {
+        final String recipientId;
+        final Segment segment;
+        final long offset;
+        final int length;
+        final long timestamp;
+
+        Pending(String recipientId, Segment segment, long offset, int length, long timestamp) {
+            this.recipientId = recipientId;
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.timestamp = timestamp;
+        }
+    }
+
+    @Autowired
+    public ScoreEventStore(@Value("${scoreStore.directory}") String directory,
+                           @Value("${scoreStore.maxSegmentBytes:16777216}") long maxSegmentBytes,
+                           @Value("${scoreStore.retentionDays:84}") int retentionDays) {
+        this.directory = new File(directory);
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.retentionMillis = TimeUnit.DAYS.toMillis(retentionDays);
+        ObjectMapper objectMapper = new ObjectMapper();
+        this.writer = objectMapper.writerFor(TimestampedScoreLog.class);
+        this.reader = objectMapper.readerFor(TimestampedScoreLog.class);
+    }
+
+    /**
+     * Reads the existing segments into the index. New events always go to a new segment.
+     */
+    @PostConstruct
+    public void open() throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create score event directory " + directory);
+        }
+
+        File[] files = directory.listFiles((dir, name) -> segmentNumber(name) >= 0);
+        List<Segment> found = new ArrayList<>();
+        for (File file : files == null ? new File[0] : files) {
+            found.add(new Segment(segmentNumber(file.getName()), file));
+        }
+        found.sort(Comparator.comparingLong(s -> s.number));
+
+        lock.writeLock().lock();
+        try {
+            for (Segment segment : found) {
+                load(segment);
+                segments.add(segment);
+            }
+            deleteExpired();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Opened score event store in {} with {} segments", directory, segments.size());
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+        current = null;
+    }
+
+    @Override
+    public void write(List<TimestampedScoreLog> batch) throws IOException {
+        List<Pending> pending = new ArrayList<>(batch.size());
+        for (TimestampedScoreLog event : batch) {
+            byte[] json = writer.writeValueAsBytes(event);
+            int length = json.length + 1;
+            if (current == null || current.size + length > maxSegmentBytes ||
+                    (current.size > 0 && event.timestamp - current.minTimestamp >= MAX_SEGMENT_SPAN_MILLIS)) {
+                roll();
+            }
+            out.write(json);
+            out.write('\n');
+            pending.add(new Pending(event.recipientId, current, current.size, json.length, event.timestamp));
+            current.size += length;
+            current.include(event.timestamp);
+        }
+        if (out != null) {
+            out.flush();
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (Pending p : pending) {
+                postingsByRecipient.computeIfAbsent(p.recipientId, k -> new Postings())
+                        .add(p.segment, p.offset, p.length, p.timestamp);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the recipient's events with from <= timestamp < to, oldest first
+     */
+    public List<TimestampedScoreLog> query(String recipientId, long from, long to) throws IOException {
+        List<Segment> matchSegments = new ArrayList<>();
+        List<long[]> matchPositions = new ArrayList<>();
+
+        lock.readLock().lock();
+        try {
+            Postings postings = postingsByRecipient.get(recipientId);
+            if (postings != null) {
+                for (int i = 0; i < postings.size; i++) {
+                    if (postings.timestamps[i] >= from && postings.timestamps[i] < to) {
+                        matchSegments.add(postings.segments[i]);
+                        matchPositions.add(new long[]{postings.offsets[i], postings.lengths[i]});
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<TimestampedScoreLog> events = new ArrayList<>(matchSegments.size());
+        RandomAccessFile file = null;
+        Segment open = null;
+        try {
+            for (int i = 0; i < matchSegments.size(); i++) {
+                Segment segment = matchSegments.get(i);
+                if (segment != open) {
+                    if (file != null) {
+                        file.close();
+                        file = null;
+                    }
+                    open = segment;
+                    if (segment.deleted) {
+                        continue;
+                    }
+                    try {
+                        file = new RandomAccessFile(segment.file, "r");
+                    } catch (FileNotFoundException e) {
+                        // Expired since we looked at the index.
+                        continue;
+                    }
+                }
+                if (file == null) {
+                    continue;
+                }
+                byte[] json = new byte[(int) matchPositions.get(i)[1]];
+                file.seek(matchPositions.get(i)[0]);
+                file.readFully(json);
+                events.add(reader.readValue(json));
+            }
+        } finally {
+            if (file != null) {
+                file.close();
+            }
+        }
+
+        events.sort(Comparator.comparingLong(e -> e.timestamp));
+        return events;
+    }
+
+    /**
+     * Feeds every stored event with timestamp >= from to the consumer, in the order they were written.
+     */
+    public void replay(long from, Consumer<TimestampedScoreLog> consumer) throws IOException {
+        List<Segment> toRead = new ArrayList<>();
+        List<Long> sizes = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Segment segment : segments) {
+                if (segment.maxTimestamp >= from) {
+                    toRead.add(segment);
+                    sizes.add(segment.size);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        for (int i = 0; i < toRead.size(); i++) {
+            byte[] bytes;
+            try (RandomAccessFile file = new RandomAccessFile(toRead.get(i).file, "r")) {
+                // Only as far as was flushed when we looked, since the current segment may be growing.
+                bytes = new byte[(int) Math.min(sizes.get(i), file.length())];
+                file.readFully(bytes);
+            } catch (FileNotFoundException e) {
+                continue;
+            }
+            int lineStart = 0;
+            for (int j = 0; j < bytes.length; j++) {
+                if (bytes[j] != '\n') {
+                    continue;
+                }
+                TimestampedScoreLog event;
+                try {
+                    event = reader.readValue(bytes, lineStart, j - lineStart);
+                } catch (IOException e) {
+                    event = null; // Already logged when the segment was loaded.
+                }
+                if (event != null && event.timestamp >= from) {
+                    consumer.accept(event);
+                }
+                lineStart = j + 1;
+            }
+        }
+    }
+
+    private void roll() throws IOException {
+        if (out != null) {
+            out.close();
+        }
+        long number = 0;
+        lock.readLock().lock();
+        try {
+            if (!segments.isEmpty()) {
+                number = segments.get(segments.size() - 1).number + 1;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        Segment segment = new Segment(number, new File(directory, SEGMENT_PREFIX + number + SEGMENT_SUFFIX));
+        out = new BufferedOutputStream(new FileOutputStream(segment.file, true));
+        current = segment;
+
+        lock.writeLock().lock();
+        try {
+            segments.add(segment);
+            deleteExpired();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Must hold the write lock.
+     */
+    private void deleteExpired() {
+        long cutoff = System.currentTimeMillis() - retentionMillis;
+        boolean deletedAny = false;
+        for (Iterator<Segment> it = segments.iterator(); it.hasNext(); ) {
+            Segment segment = it.next();
+            if (segment != current && segment.maxTimestamp < cutoff) {
+                segment.deleted = true;
+                if (segment.file.exists() && !segment.file.delete()) {
+                    log.warn("Could not delete expired score segment {}", segment.file);
+                }
+                it.remove();
+                deletedAny = true;
+            }
+        }
+        if (deletedAny) {
+            for (Iterator<Postings> it = postingsByRecipient.values().iterator(); it.hasNext(); ) {
+                Postings postings = it.next();
+                postings.removeDeleted();
+                if (postings.size == 0) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Indexes every complete line of the segment. A partial line at the end, left by a crash mid-write, is cut off.
+     */
+    private void load(Segment segment) throws IOException {
+        byte[] bytes = Files.readAllBytes(segment.file.toPath());
+        int lineStart = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] != '\n') {
+                continue;
+            }
+            try {
+                TimestampedScoreLog event = reader.readValue(bytes, lineStart, i - lineStart);
+                postingsByRecipient.computeIfAbsent(event.recipientId, k -> new Postings())
+                        .add(segment, lineStart, i - lineStart, event.timestamp);
+                segment.include(event.timestamp);
+            } catch (IOException e) {
+                log.warn("Skipping unreadable score event at {}:{}", segment.file, lineStart);
+            }
+            lineStart = i + 1;
+        }
+        segment.size = lineStart;
+        if (lineStart < bytes.length) {
+            log.warn("Truncating partial score event at the end of {}", segment.file);
+            try (RandomAccessFile file = new RandomAccessFile(segment.file, "rw")) {
+                file.setLength(lineStart);
+            }
+        }
+    }
+
+    private static long segmentNumber(String fileName) {
+        if (!fileName.startsWith(SEGMENT_PREFIX) || !fileName.endsWith(SEGMENT_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(fileName.substring(SEGMENT_PREFIX.length(), fileName.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
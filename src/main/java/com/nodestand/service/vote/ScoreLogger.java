@@ -1,20 +1,72 @@
 package com.nodestand.service.vote;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.nodestand.nodes.vote.VoteType;
+import com.nodestand.util.RingBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Records score changes without making the vote wait for it. logScore only stamps the event and puts it in a bounded
+ * {@link RingBuffer}; a background thread takes events off in batches and hands each batch to every
+ * {@link ScoreEventSink}. If the writer falls so far behind that the buffer fills up, new events are dropped and
+ * counted rather than slowing votes down.
+ *
+ * Events are only offered once the vote's transaction commits, so a vote that rolls back or is retried never reaches
+ * the sinks, and the score history stays in step with Author.nodePoints.
+ */
 @Component
 public class ScoreLogger {
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
-    private ObjectMapper objectMapper = new ObjectMapper();
 
+    private final RingBuffer<TimestampedScoreLog> buffer;
+    private final int batchSize;
+    private final List<ScoreEventSink> sinks;
+
+    // Only used by the writer thread.
+    private final List<TimestampedScoreLog> batch = new ArrayList<>();
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    private volatile boolean running;
+    private Thread writerThread;
+
+    @Autowired
+    public ScoreLogger(@Value("${scoreLogger.capacity:8192}") int capacity,
+                       @Value("${scoreLogger.batchSize:256}") int batchSize,
+                       List<ScoreEventSink> sinks) {
+        this.buffer = new RingBuffer<>(capacity);
+        this.batchSize = batchSize;
+        this.sinks = sinks;
+    }
+
+    /**
+     * Logs the score change once the current transaction commits, or right away when there is none.
+     */
     public void logScore(String recipientId, String granterId, String nodeId, String nodeTitle, int points, VoteType voteType, boolean isNegation) {
 
-        ScoreLog scoreLog = new ScoreLog();
+        TimestampedScoreLog scoreLog = new TimestampedScoreLog();
+        scoreLog.timestamp = System.currentTimeMillis();
         scoreLog.recipientId = recipientId;
         scoreLog.granterId = granterId;
         scoreLog.nodeTitle = nodeTitle;
@@ -23,12 +75,125 @@ public class ScoreLogger {
         scoreLog.voteType = voteType.name();
         scoreLog.isNegation = isNegation;
 
-        try {
-            logger.info("{} {}", recipientId, objectMapper.writeValueAsString(scoreLog));
-        } catch (JsonProcessingException e) {
-            logger.error("Failed to log score!", e);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    offer(scoreLog);
+                }
+            });
+        } else {
+            offer(scoreLog);
+        }
+    }
+
+    private void offer(TimestampedScoreLog scoreLog) {
+        if (buffer.offer(scoreLog)) {
+            published.incrementAndGet();
+        } else {
+            dropped.incrementAndGet();
+        }
+    }
+
+    @PostConstruct
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        writerThread = new Thread(this::writeUntilStopped, "score-logger");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Stops the writer once it has written everything that was logged before the call.
+     */
+    @PreDestroy
+    public synchronized void stop() throws InterruptedException {
+        if (!running) {
+            return;
         }
+        running = false;
+        LockSupport.unpark(writerThread);
+        writerThread.join();
+        writerThread = null;
     }
 
+    /**
+     * Waits until everything logged so far has been written, or the timeout runs out.
+     *
+     * @return false on timeout
+     */
+    public boolean awaitWritten(long timeout, TimeUnit unit) throws InterruptedException {
+        long target = published.get();
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (written.get() + failed.get() < target) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(1);
+        }
+        return true;
+    }
+
+    private void writeUntilStopped() {
+        while (running) {
+            if (writeBatch() == 0) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+        }
+        while (writeBatch() > 0) {
+            // Flush what's left.
+        }
+    }
+
+    /**
+     * Events count as written once every sink has taken them, and as failed if any sink threw.
+     */
+    private int writeBatch() {
+        int count = buffer.drain(batch::add, batchSize);
+        if (count == 0) {
+            return 0;
+        }
+        batches.incrementAndGet();
 
+        boolean ok = true;
+        for (ScoreEventSink sink : sinks) {
+            try {
+                sink.write(batch);
+            } catch (IOException | RuntimeException e) {
+                ok = false;
+                logger.error("Failed to write {} score events to {}", count, sink.getClass().getSimpleName(), e);
+            }
+        }
+        (ok ? written : failed).addAndGet(count);
+        batch.clear();
+        return count;
+    }
+
+    public Stats getStats() {
+        return new Stats(published.get(), dropped.get(), written.get(), failed.get(), batches.get(), buffer.size(),
+                buffer.capacity());
+    }
+
+    public static class Stats {
+        public final long published;
+        public final long dropped;
+        public final long written;
+        public final long failed;
+        public final long batches;
+        public final int pending;
+        public final int capacity;
+
+        public Stats(long published, long dropped, long written, long failed, long batches, int pending, int capacity) {
+            this.published = published;
+            this.dropped = dropped;
+            this.written = written;
+            this.failed = failed;
+            this.batches = batches;
+            this.pending = pending;
+            this.capacity = capacity;
+        }
+    }
 }
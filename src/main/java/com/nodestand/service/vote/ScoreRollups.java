@@ -0,0 +1,280 @@
+package com.nodestand.service.vote;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Points per author per day and per week, kept up to date from score events as they are logged, for profile
+ * sparklines and leaderboards. Days and weeks are in UTC, and weeks start on Monday.
+ *
+ * Each author has a ring of the last {@link #DAYS} day buckets and the last {@link #WEEKS} week buckets. The
+ * leaderboards for the current day and week are kept sorted as events arrive, so reading one is just returning the
+ * latest list. On startup everything is rebuilt from the {@link ScoreEventStore}, which keeps events for at least as
+ * long as the week buckets reach back.
+ */
+@Component
+public class ScoreRollups implements ScoreEventSink {
+
+    private static final Logger log = LoggerFactory.getLogger(ScoreRollups.class);
+
+    public static final int DAYS = 28;
+    public static final int WEEKS = 12;
+    public static final int LEADERBOARD_SIZE = 100;
+
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    // 1970-01-01 was a Thursday; shifting by three days makes weeks start on Monday.
+    private static final int WEEK_OFFSET_DAYS = 3;
+
+    public enum Period {
+        DAY, WEEK
+    }
+
+    public static class Standing {
+        public final String authorStableId;
+        public final int points;
+
+        Standing(String authorStableId, int points) {
+            this.authorStableId = authorStableId;
+            this.points = points;
+        }
+    }
+
+    public static class History {
+        /**
+         * Start of the oldest day bucket, in epoch millis.
+         */
+        public final long dayStart;
+
+        /**
+         * Points per day, oldest first, ending today.
+         */
+        public final int[] days;
+
+        /**
+         * Start of the oldest week bucket, in epoch millis.
+         */
+        public final long weekStart;
+
+        /**
+         * Points per week, oldest first, ending this week.
+         */
+        public final int[] weeks;
+
+        History(long dayStart, int[] days, long weekStart, int[] weeks) {
+            this.dayStart = dayStart;
+            this.days = days;
+            this.weekStart = weekStart;
+            this.weeks = weeks;
+        }
+    }
+
+    /**
+     * A ring of buckets indexed by day or week number, newest at head.
+     */
+    private static class Buckets {
+        final int[] points;
+        long head = Long.MIN_VALUE;
+
+        Buckets(int size) {
+            points = new int[size];
+        }
+
+        void add(long index, int amount) {
+            if (head == Long.MIN_VALUE) {
+                head = index;
+            }
+            if (index > head) {
+                for (long i = Math.max(head + 1, index - points.length + 1); i <= index; i++) {
+                    points[slot(i)] = 0;
+                }
+                head = index;
+            }
+            if (index > head - points.length) {
+                points[slot(index)] += amount;
+            }
+        }
+
+        /**
+         * @return the buckets from end - size + 1 to end, oldest first
+         */
+        int[] window(long end) {
+            int[] window = new int[points.length];
+            for (int i = 0; i < points.length; i++) {
+                long index = end - points.length + 1 + i;
+                if (index <= head && index > head - points.length) {
+                    window[i] = points[slot(index)];
+                }
+            }
+            return window;
+        }
+
+        private int slot(long index) {
+            return (int) Math.floorMod(index, (long) points.length);
+        }
+    }
+
+    private static class AuthorRollup {
+        final Buckets days = new Buckets(DAYS);
+        final Buckets weeks = new Buckets(WEEKS);
+    }
+
+    /**
+     * The running totals for the current day or week, sorted.
+     */
+    private static class Board {
+        long index = Long.MIN_VALUE;
+        final Map<String, Integer> points = new HashMap<>();
+        final TreeSet<Standing> ranking = new TreeSet<>(
+                Comparator.<Standing>comparingInt(s -> -s.points).thenComparing(s -> s.authorStableId));
+        boolean changed;
+
+        /**
+         * Returned to readers as is, so it is replaced rather than changed.
+         */
+        volatile Ranked top = new Ranked(Long.MIN_VALUE, Collections.emptyList());
+
+        void add(long eventIndex, String authorStableId, int amount) {
+            if (eventIndex < index) {
+                return;
+            }
+            if (eventIndex > index) {
+                index = eventIndex;
+                points.clear();
+                ranking.clear();
+            }
+            Integer old = points.get(authorStableId);
+            if (old != null) {
+                ranking.remove(new Standing(authorStableId, old));
+            }
+            int updated = (old == null ? 0 : old) + amount;
+            points.put(authorStableId, updated);
+            ranking.add(new Standing(authorStableId, updated));
+            changed = true;
+        }
+
+        void publish() {
+            if (!changed) {
+                return;
+            }
+            List<Standing> standings = new ArrayList<>(Math.min(ranking.size(), LEADERBOARD_SIZE));
+            for (Standing standing : ranking) {
+                if (standings.size() == LEADERBOARD_SIZE) {
+                    break;
+                }
+                standings.add(standing);
+            }
+            top = new Ranked(index, Collections.unmodifiableList(standings));
+            changed = false;
+        }
+    }
+
+    private static class Ranked {
+        final long index;
+        final List<Standing> standings;
+
+        Ranked(long index, List<Standing> standings) {
+            this.index = index;
+            this.standings = standings;
+        }
+    }
+
+    private final ScoreEventStore scoreEventStore;
+
+    // Guarded by itself.
+    private final Map<String, AuthorRollup> rollups = new HashMap<>();
+
+    // Only changed by the thread that applies events.
+    private final Board dayBoard = new Board();
+    private final Board weekBoard = new Board();
+
+    @Autowired
+    public ScoreRollups(ScoreEventStore scoreEventStore) {
+        this.scoreEventStore = scoreEventStore;
+    }
+
+    @PostConstruct
+    public void rebuild() throws IOException {
+        long start = System.currentTimeMillis();
+        long from = weekStartMillis(weekOf(start) - WEEKS + 1);
+        int[] count = {0};
+        scoreEventStore.replay(from, event -> {
+            apply(event);
+            count[0]++;
+        });
+        dayBoard.publish();
+        weekBoard.publish();
+        log.info("Rolled up {} score events in {} ms", count[0], System.currentTimeMillis() - start);
+    }
+
+    @Override
+    public void write(List<TimestampedScoreLog> batch) {
+        for (TimestampedScoreLog event : batch) {
+            apply(event);
+        }
+        dayBoard.publish();
+        weekBoard.publish();
+    }
+
+    /**
+     * @return at most {@link #LEADERBOARD_SIZE} authors with the most points so far this day or week, best first
+     */
+    public List<Standing> getLeaderboard(Period period, int limit) {
+        long now = System.currentTimeMillis();
+        Ranked ranked = period == Period.DAY ? dayBoard.top : weekBoard.top;
+        long current = period == Period.DAY ? dayOf(now) : weekOf(now);
+        if (ranked.index != current) {
+            // Nobody has scored yet in this period.
+            return Collections.emptyList();
+        }
+        return ranked.standings.subList(0, Math.max(0, Math.min(limit, ranked.standings.size())));
+    }
+
+    public History getHistory(String authorStableId) {
+        long now = System.currentTimeMillis();
+        long today = dayOf(now);
+        long thisWeek = weekOf(now);
+        int[] days;
+        int[] weeks;
+        synchronized (rollups) {
+            AuthorRollup rollup = rollups.get(authorStableId);
+            days = rollup == null ? new int[DAYS] : rollup.days.window(today);
+            weeks = rollup == null ? new int[WEEKS] : rollup.weeks.window(thisWeek);
+        }
+        return new History((today - DAYS + 1) * DAY_MILLIS, days, weekStartMillis(thisWeek - WEEKS + 1), weeks);
+    }
+
+    private void apply(TimestampedScoreLog event) {
+        if (event.recipientId == null || event.points == null || event.timestamp == null) {
+            return;
+        }
+        long day = dayOf(event.timestamp);
+        long week = weekOf(event.timestamp);
+        synchronized (rollups) {
+            AuthorRollup rollup = rollups.computeIfAbsent(event.recipientId, k -> new AuthorRollup());
+            rollup.days.add(day, event.points);
+            rollup.weeks.add(week, event.points);
+        }
+        dayBoard.add(day, event.recipientId, event.points);
+        weekBoard.add(week, event.recipientId, event.points);
+    }
+
+    private static long dayOf(long millis) {
+        return Math.floorDiv(millis, DAY_MILLIS);
+    }
+
+    private static long weekOf(long millis) {
+        return Math.floorDiv(dayOf(millis) + WEEK_OFFSET_DAYS, 7);
+    }
+
+    private static long weekStartMillis(long week) {
+        return (week * 7 - WEEK_OFFSET_DAYS) * DAY_MILLIS;
+    }
+}
@@ -0,0 +1,95 @@
+package com.nodestand.service.vote;
+
+import com.nodestand.nodes.vote.VoteType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Which major versions are being voted on the most right now, overall and broken down by node type and vote type, so
+ * that questions like "most GREAT votes on assertions lately" don't need a scan over every MajorVersion. Each
+ * combination has its own {@link DecayingTopK}, where a vote counts for less the older it is.
+ *
+ * Only votes cast or changed since startup are counted. Revoking a vote doesn't take it back out; it still counts as
+ * activity until it decays.
+ */
+@Component
+public class TrendingNodes {
+
+    private static final String ANY = "*";
+
+    private final int capacity;
+    private final long halfLifeMinutes;
+
+    // nodeType or ANY + "/" + voteType or ANY -> board
+    private final ConcurrentMap<String, DecayingTopK> boards = new ConcurrentHashMap<>();
+
+    @Autowired
+    public TrendingNodes(@Value("${trending.capacity:1000}") int capacity,
+                         @Value("${trending.halfLifeMinutes:360}") long halfLifeMinutes) {
+        this.capacity = capacity;
+        this.halfLifeMinutes = halfLifeMinutes;
+    }
+
+    /**
+     * Counts the vote once the current transaction commits, so a vote that fails doesn't trend.
+     */
+    public void recordVote(String majorVersionStableId, String nodeType, VoteType voteType) {
+        Runnable record = () -> record(majorVersionStableId, nodeType, voteType, System.currentTimeMillis());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    record.run();
+                }
+            });
+        } else {
+            record.run();
+        }
+    }
+
+    void record(String majorVersionStableId, String nodeType, VoteType voteType, long timeMillis) {
+        board(nodeType, voteType.name()).add(majorVersionStableId, timeMillis);
+        board(nodeType, ANY).add(majorVersionStableId, timeMillis);
+        board(ANY, voteType.name()).add(majorVersionStableId, timeMillis);
+        board(ANY, ANY).add(majorVersionStableId, timeMillis);
+    }
+
+    /**
+     * @param nodeType e.g. "assertion", or null for every type
+     * @param voteType null for every vote type
+     * @return up to limit major version stableIds, hottest first
+     */
+    public List<DecayingTopK.Trend> getTrending(String nodeType, VoteType voteType, int limit) {
+        DecayingTopK board = boards.get(key(nodeType, voteType == null ? null : voteType.name()));
+        return board == null ? Collections.emptyList() : board.top(limit, System.currentTimeMillis());
+    }
+
+    /**
+     * For sorting lists of nodes that came from elsewhere.
+     *
+     * @return the decayed vote count of the major version, or 0 if it isn't trending
+     */
+    public double getScore(String nodeType, VoteType voteType, String majorVersionStableId) {
+        DecayingTopK board = boards.get(key(nodeType, voteType == null ? null : voteType.name()));
+        return board == null ? 0 : board.score(majorVersionStableId, System.currentTimeMillis());
+    }
+
+    // Only created by votes, so that asking about a node type that doesn't exist doesn't make a board for it.
+    private DecayingTopK board(String nodeType, String voteType) {
+        return boards.computeIfAbsent(key(nodeType, voteType),
+                k -> new DecayingTopK(capacity, halfLifeMinutes, TimeUnit.MINUTES));
+    }
+
+    private static String key(String nodeType, String voteType) {
+        return (nodeType == null ? ANY : nodeType) + "/" + (voteType == null ? ANY : voteType);
+    }
+}
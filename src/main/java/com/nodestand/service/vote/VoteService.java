@@ -4,6 +4,8 @@ import com.nodestand.nodes.NodeRulesException;
 import com.nodestand.nodes.User;
 import com.nodestand.nodes.vote.VoteType;
 
+import java.util.Map;
+
 /**
  * Created by Tyler on 1/1/2017.
  */
@@ -11,5 +13,13 @@ public interface VoteService {
 
     void voteNode(String userStableId, String nodeStableId, VoteType voteType) throws NodeRulesException;
 
+    /**
+     * Casts or changes several votes at once. Either all of them are accepted or, if any node can't be voted on,
+     * none are.
+     *
+     * @param votesByNodeStableId at most one node per major version
+     */
+    void voteNodes(String userStableId, Map<String, VoteType> votesByNodeStableId) throws NodeRulesException;
+
     void unvoteNode(String nodeStableId, String userStableId) throws NodeRulesException;
 }
@@ -2,22 +2,21 @@ package com.nodestand.service.vote;
 
 import com.nodestand.nodes.ArgumentNode;
 import com.nodestand.nodes.Author;
+import com.nodestand.nodes.NodeInputException;
 import com.nodestand.nodes.NodeRulesException;
 import com.nodestand.nodes.User;
 import com.nodestand.nodes.repository.ArgumentNodeRepository;
 import com.nodestand.nodes.repository.UserRepository;
 import com.nodestand.nodes.source.SourceNode;
-import com.nodestand.nodes.subject.SubjectNode;
 import com.nodestand.nodes.version.MajorVersion;
 import com.nodestand.nodes.vote.ArgumentVote;
 import com.nodestand.nodes.vote.VoteType;
+import com.nodestand.service.argument.GraphCache;
 import org.neo4j.ogm.session.Session;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.util.Map;
-import java.util.Optional;
-import java.util.Set;
+import java.util.*;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -35,62 +34,102 @@ public class VoteServiceNeo4j implements VoteService {
     private final UserRepository userRepository;
     private final Session session;
     private final ScoreLogger scoreLogger;
+    private final GraphCache graphCache;
+    private final TrendingNodes trendingNodes;
 
     @Autowired
-    public VoteServiceNeo4j(ArgumentNodeRepository argumentNodeRepository, UserRepository userRepository, Session session, ScoreLogger scoreLogger) {
+    public VoteServiceNeo4j(ArgumentNodeRepository argumentNodeRepository, UserRepository userRepository, Session session,
+                            ScoreLogger scoreLogger, GraphCache graphCache, TrendingNodes trendingNodes) {
         this.argumentNodeRepository = argumentNodeRepository;
         this.userRepository = userRepository;
         this.session = session;
         this.scoreLogger = scoreLogger;
+        this.graphCache = graphCache;
+        this.trendingNodes = trendingNodes;
     }
 
-    @Override
-    public void voteNode(String userStableId, String nodeStableId, VoteType voteType) throws NodeRulesException {
+    /**
+     * Everything that a batch of votes by one user changes, gathered up so that it can be written out at the end.
+     */
+    private static class Tally {
+        // majorVersionStableId -> change per VoteType ordinal. Sorted, so that concurrent batches lock the major
+        // versions in the same order.
+        final Map<String, int[]> votesByMajorVersion = new TreeMap<>();
 
-        User user = userRepository.loadUserWithVotes(userStableId);
-        ArgumentNode node = argumentNodeRepository.getNodeRich(nodeStableId);
+        // authorStableId -> points, sorted for the same reason.
+        final Map<String, Integer> pointsByAuthor = new TreeMap<>();
 
-        if (!node.acceptsVotes()) {
-            throw new NodeRulesException("Cannot vote on a node of type " + node.getType());
+        void addVote(String majorVersionStableId, VoteType voteType, int delta) {
+            votesByMajorVersion.computeIfAbsent(majorVersionStableId, k -> new int[VoteType.values().length])
+                    [voteType.ordinal()] += delta;
         }
 
-        Author originalAuthor = node.getBody().getMajorVersion().author;
-        if (isOwnAuthor(originalAuthor, user)) {
-            throw new NodeRulesException("Can't vote on your own node.");
+        void addPoints(String authorStableId, int points) {
+            pointsByAuthor.merge(authorStableId, points, Integer::sum);
         }
+    }
 
-        MajorVersion mv = node.getBody().getMajorVersion();
+    @Override
+    public void voteNode(String userStableId, String nodeStableId, VoteType voteType) throws NodeRulesException {
+        voteNodes(userStableId, Collections.singletonMap(nodeStableId, voteType));
+    }
 
-        Optional<ArgumentVote> existingVote = user.getExistingVote(mv);
+    @Override
+    public void voteNodes(String userStableId, Map<String, VoteType> votesByNodeStableId) throws NodeRulesException {
 
-        if (existingVote.isPresent()) {
-            ArgumentVote vote = existingVote.get();
-            VoteType oldVote = vote.voteType;
-            if (vote.voteType.equals(voteType)) {
-                return; // Nothing to do.
-            }
-            vote.voteType = voteType; // This mutates the user's vote
+        if (votesByNodeStableId.isEmpty()) {
+            return;
+        }
 
-            mv.decrementVote(oldVote);
-            mv.incrementVote(voteType);
+        List<ArgumentNode> nodes = loadNodes(votesByNodeStableId.keySet());
+        User user = userRepository.loadUserWithVotesOn(userStableId,
+                nodes.stream().map(n -> n.getBody().getMajorVersion().getStableId()).collect(Collectors.toList()));
+        checkVotable(nodes, user);
+        Map<String, Author> owners = loadOwners(nodes);
 
-            updateScore(node, voteType, oldVote, user);
+        Tally tally = new Tally();
+        Map<String, ArgumentNode> voted = new LinkedHashMap<>();
+        for (ArgumentNode node : nodes) {
+            VoteType voteType = votesByNodeStableId.get(node.getStableId());
+            MajorVersion mv = node.getBody().getMajorVersion();
 
-        } else {
-            ArgumentVote newVote = new ArgumentVote();
-            newVote.voteType = voteType;
-            newVote.majorVersion = mv;
-            newVote.user = user;
+            Optional<ArgumentVote> existingVote = user.getExistingVote(mv);
+
+            if (existingVote.isPresent()) {
+                ArgumentVote vote = existingVote.get();
+                VoteType oldVote = vote.voteType;
+                if (vote.voteType.equals(voteType)) {
+                    continue; // Nothing to do.
+                }
+                vote.voteType = voteType; // This mutates the user's vote
 
-            user.registerNewVote(newVote);
+                tally.addVote(mv.getStableId(), oldVote, -1);
+                updateScore(node, voteType, oldVote, user, owners, tally);
 
-            mv.incrementVote(voteType);
+            } else {
+                ArgumentVote newVote = new ArgumentVote();
+                newVote.voteType = voteType;
+                newVote.majorVersion = mv;
+                newVote.user = user;
 
-            updateScore(node, voteType, null, user);
+                user.registerNewVote(newVote);
+
+                updateScore(node, voteType, null, user, owners, tally);
+            }
+            tally.addVote(mv.getStableId(), voteType, 1);
+            voted.put(mv.getStableId(), node);
         }
 
-        session.save(mv);
-        session.save(user);
+        if (voted.isEmpty()) {
+            return;
+        }
+
+        save(user, owners, tally);
+
+        for (Map.Entry<String, ArgumentNode> entry : voted.entrySet()) {
+            trendingNodes.recordVote(entry.getKey(), entry.getValue().getType(),
+                    votesByNodeStableId.get(entry.getValue().getStableId()));
+        }
     }
 
     @Override
@@ -100,7 +139,6 @@ public class VoteServiceNeo4j implements VoteService {
         // card vote revoked. A will net 0 points, and B will net negative points. This is acceptable
         // because it seems like B made things worse.
 
-        User user = userRepository.loadUserWithVotes(userStableId);
         ArgumentNode node = argumentNodeRepository.getNodeRich(nodeStableId);
 
         if (!node.acceptsVotes()) {
@@ -108,35 +146,155 @@ public class VoteServiceNeo4j implements VoteService {
         }
 
         MajorVersion mv = node.getBody().getMajorVersion();
+        User user = userRepository.loadUserWithVotesOn(userStableId, Collections.singletonList(mv.getStableId()));
 
         Optional<ArgumentVote> existingVote = user.getExistingVote(mv);
 
         if (existingVote.isPresent()) {
             ArgumentVote vote = existingVote.get();
 
-            user.revokeVote(mv.getStableId());
+            user.revokeVote(mv);
+
+            Tally tally = new Tally();
+            tally.addVote(mv.getStableId(), vote.voteType, -1);
+            List<ArgumentNode> nodes = Collections.singletonList(node);
+            Map<String, Author> owners = loadOwners(nodes);
+            updateScore(node, null, vote.voteType, user, owners, tally);
+
+            save(user, owners, tally);
+        }
+    }
+
+    /**
+     * Loads the nodes in one query, in the order given.
+     */
+    private List<ArgumentNode> loadNodes(Collection<String> nodeStableIds) throws NodeInputException {
 
-            mv.decrementVote(vote.voteType);
+        Map<String, ArgumentNode> nodesByStableId = new HashMap<>();
+        for (ArgumentNode node : argumentNodeRepository.getNodesRich(nodeStableIds)) {
+            nodesByStableId.put(node.getStableId(), node);
+        }
+
+        List<ArgumentNode> nodes = new ArrayList<>(nodeStableIds.size());
+        for (String stableId : nodeStableIds) {
+            ArgumentNode node = nodesByStableId.get(stableId);
+            if (node == null) {
+                throw new NodeInputException("Could not find node " + stableId);
+            }
+            nodes.add(node);
+        }
+        return nodes;
+    }
+
+    /**
+     * Checks that the user may vote on all of the nodes.
+     */
+    private void checkVotable(List<ArgumentNode> nodes, User user) throws NodeRulesException {
+        Set<String> majorVersions = new HashSet<>();
+        for (ArgumentNode node : nodes) {
+            if (!node.acceptsVotes()) {
+                throw new NodeRulesException("Cannot vote on a node of type " + node.getType());
+            }
+            if (isOwnAuthor(node.getBody().getMajorVersion().author, user)) {
+                throw new NodeRulesException("Can't vote on your own node.");
+            }
+            if (!majorVersions.add(node.getBody().getMajorVersion().getStableId())) {
+                throw new NodeInputException("Can only vote once per major version: " + node.getStableId());
+            }
+        }
+    }
+
+    /**
+     * @return authorStableId -> Author for everybody who could get points from votes on the nodes, in one query
+     */
+    private Map<String, Author> loadOwners(List<ArgumentNode> nodes) {
+        Map<String, Author> owners = new HashMap<>();
+        Set<String> edgeOwnerIds = new HashSet<>();
+        for (ArgumentNode node : nodes) {
+            MajorVersion mv = node.getBody().getMajorVersion();
+            if (node instanceof SourceNode) {
+                owners.put(mv.author.getStableId(), mv.author);
+            } else {
+                edgeOwnerIds.addAll(mv.getEdgeOwners().values());
+            }
+        }
+        edgeOwnerIds.removeAll(owners.keySet());
+        edgeOwnerIds.remove("");
+        if (!edgeOwnerIds.isEmpty()) {
+            for (Author author : userRepository.loadAuthors(edgeOwnerIds)) {
+                owners.put(author.getStableId(), author);
+            }
+        }
+        return owners;
+    }
+
+    /**
+     * Writes the user's votes, then the points and the vote counters in one statement each.
+     */
+    private void save(User user, Map<String, Author> owners, Tally tally) {
+
+        session.save(user);
+
+        awardPoints(owners, tally.pointsByAuthor);
+        addVotes(tally.votesByMajorVersion);
+
+        for (String majorVersionStableId : tally.votesByMajorVersion.keySet()) {
+            graphCache.invalidateMajorVersion(majorVersionStableId);
+        }
+    }
 
-            updateScore(node, null, vote.voteType, user);
+    /**
+     * Like {@link #addVotes}, adds to the points in the database, so that authors getting points from concurrent votes
+     * don't lose any, and a vote touching many authors is still a single write. The loaded authors get the points too,
+     * since the session keeps handing out the same objects.
+     */
+    private void awardPoints(Map<String, Author> owners, Map<String, Integer> pointsByAuthor) {
+        List<Map<String, Object>> awards = new ArrayList<>(pointsByAuthor.size());
+        for (Map.Entry<String, Integer> entry : pointsByAuthor.entrySet()) {
+            if (entry.getValue() != 0) {
+                owners.get(entry.getKey()).awardNodePoints(entry.getValue());
+                Map<String, Object> award = new HashMap<>();
+                award.put("stableId", entry.getKey());
+                award.put("points", entry.getValue());
+                awards.add(award);
+            }
+        }
+        if (!awards.isEmpty()) {
+            userRepository.awardNodePoints(awards);
+        }
+    }
 
-            session.save(mv);
-            session.save(user);
+    /**
+     * Applies the changes to the counters in the database rather than saving the major versions, so that concurrent
+     * votes on the same node can't overwrite each other's counts. The counters on already loaded major versions are
+     * left as they were.
+     */
+    private void addVotes(Map<String, int[]> votesByMajorVersion) {
+        List<Map<String, Object>> deltas = new ArrayList<>(votesByMajorVersion.size());
+        for (Map.Entry<String, int[]> entry : votesByMajorVersion.entrySet()) {
+            int[] votes = entry.getValue();
+            Map<String, Object> delta = new HashMap<>();
+            delta.put("stableId", entry.getKey());
+            delta.put("great", votes[VoteType.GREAT.ordinal()]);
+            delta.put("weak", votes[VoteType.WEAK.ordinal()]);
+            delta.put("touche", votes[VoteType.TOUCHE.ordinal()]);
+            delta.put("trash", votes[VoteType.TRASH.ordinal()]);
+            deltas.add(delta);
         }
+        argumentNodeRepository.addVotes(deltas);
     }
 
     private boolean isOwnAuthor(Author author, User user) {
-        // Assumes that author.getUser will be non-null if it's the logged in user,
-        // because that user should already be loaded in the session context and neo4j-ogm links
-        // things nicely like that.
-        return author.getUser() != null && author.getUser().getStableId().equals(user.getStableId());
+        return user.getAliases() != null &&
+                user.getAliases().stream().anyMatch(a -> a.getStableId().equals(author.getStableId()));
     }
 
-    private void updateScore(ArgumentNode node, VoteType voteType, VoteType voteTypeToNegate, User voter) {
+    private void updateScore(ArgumentNode node, VoteType voteType, VoteType voteTypeToNegate, User voter,
+                             Map<String, Author> owners, Tally tally) {
         if (node instanceof SourceNode) {
             Author author = node.getBody().getMajorVersion().author;
             if (!isOwnAuthor(author, voter)) { // Can't alter your own points.
-                updatePointsAndSave(node, voter, voteType, voteTypeToNegate, author, 0);
+                updatePoints(node, voter, voteType, voteTypeToNegate, author, 0, tally);
             }
         } else {
             MajorVersion mv = node.getBody().getMajorVersion();
@@ -144,24 +302,19 @@ public class VoteServiceNeo4j implements VoteService {
             Map<String, String> edgeOwners = mv.getEdgeOwners();
 
 
-            Map<String, Long> authorIdCounts = childrenMajorVersions.stream()
-                    .map(mvId -> edgeOwners.containsKey(mvId) ? edgeOwners.get(mvId) : "")
-                    .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+            Map<String, Long> authorIdCounts = countEdgesByOwner(childrenMajorVersions, edgeOwners);
 
-            // Now fetch the owners from the DB and give them points.
             for (Map.Entry<String, Long> entry: authorIdCounts.entrySet()) {
-                if (!entry.getKey().isEmpty()) { // Might be empty if the mapping on the MV was incomplete
-                    Author author = userRepository.loadAuthor(entry.getKey());
-                    if (!isOwnAuthor(author, voter)) { // Can't alter your own points.
-                        updatePointsAndSave(node, voter, voteType, voteTypeToNegate, author, Math.toIntExact(entry.getValue()));
-                    }
+                Author author = owners.get(entry.getKey()); // Missing if the mapping on the MV was incomplete
+                if (author != null && !isOwnAuthor(author, voter)) { // Can't alter your own points.
+                    updatePoints(node, voter, voteType, voteTypeToNegate, author, Math.toIntExact(entry.getValue()), tally);
                 }
             }
 
         }
     }
 
-    private void updatePointsAndSave(ArgumentNode node, User voter, VoteType voteType, VoteType voteTypeToNegate, Author author, int edgesOwned) {
+    private void updatePoints(ArgumentNode node, User voter, VoteType voteType, VoteType voteTypeToNegate, Author author, int edgesOwned, Tally tally) {
 
         int negationPoints = 0;
         if (voteTypeToNegate != null) {
@@ -175,15 +328,21 @@ public class VoteServiceNeo4j implements VoteService {
             scoreLogger.logScore(author.getStableId(), voter.getStableId(), node.getStableId(), node.getBody().getTitle(), votePoints, voteType, false);
         }
 
-        author.awardNodePoints(negationPoints + votePoints);
-
+        tally.addPoints(author.getStableId(), negationPoints + votePoints);
+    }
 
 
-        session.save(author);
+    /**
+     * @return authorStableId -> number of the given child links that the author owns. Links with no known owner are
+     * counted under the empty string.
+     */
+    static Map<String, Long> countEdgesByOwner(Set<String> childrenMajorVersions, Map<String, String> edgeOwners) {
+        return childrenMajorVersions.stream()
+                .map(mvId -> edgeOwners.containsKey(mvId) ? edgeOwners.get(mvId) : "")
+                .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
     }
 
-
-    private int getPoints(VoteType voteType, String nodeType, int numEdgesOwned) {
+    static int getPoints(VoteType voteType, String nodeType, int numEdgesOwned) {
         int baseValue = getBaseValue(voteType);
 
         switch (nodeType) {
@@ -197,7 +356,7 @@ public class VoteServiceNeo4j implements VoteService {
         }
     }
 
-    private int getBaseValue(VoteType voteType) {
+    private static int getBaseValue(VoteType voteType) {
         switch (voteType) {
             case GREAT: return 10;
             case WEAK: return 2;
@@ -0,0 +1,126 @@
+package com.nodestand.util;
+
+/**
+ * Finds links of the form {{[majorVersionStableId]label}} in body text in a single pass, without regex and without
+ * allocating anything per link. It matches exactly what the old pattern matched:
+ *
+ * \{\{\[([0-9a-z]{1,25})\](.+?)(?=}})\}\}
+ *
+ * i.e. the stable id is 1 to 25 lowercase letters or digits, and the label is the shortest non-empty run of
+ * characters up to the next "}}" that doesn't cross a line terminator.
+ */
+public final class BodyLinkScanner {
+
+    public static final int ID_START = 0;
+    public static final int ID_END = 1;
+    public static final int LABEL_START = 2;
+    public static final int LABEL_END = 3;
+    public static final int LINK_SIZE = 4;
+
+    private static final int MAX_ID_LENGTH = 25;
+
+    private BodyLinkScanner() {
+    }
+
+    public interface LinkVisitor {
+        /**
+         * Called once per link, in order. The id is text[idStart, idEnd) and the label is text[labelStart, labelEnd).
+         * The whole link, braces included, is text[idStart - 3, labelEnd + 2).
+         */
+        void visitLink(String text, int idStart, int idEnd, int labelStart, int labelEnd);
+    }
+
+    public static void scan(String text, LinkVisitor visitor) {
+        int[] link = new int[LINK_SIZE];
+        int from = 0;
+        while (findNext(text, from, link)) {
+            visitor.visitLink(text, link[ID_START], link[ID_END], link[LABEL_START], link[LABEL_END]);
+            from = link[LABEL_END] + 2;
+        }
+    }
+
+    /**
+     * Finds the first link starting at or after from, for callers that would rather drive the loop themselves. On
+     * success the offsets are written into link at ID_START, ID_END, LABEL_START and LABEL_END, and the next search
+     * should start from link[LABEL_END] + 2.
+     *
+     * @param link an array of at least LINK_SIZE ints, reused between calls
+     * @return false if there are no more links
+     */
+    public static boolean findNext(String text, int from, int[] link) {
+        int length = text.length();
+        int i = from;
+
+        while (i + 3 < length) {
+            if (text.charAt(i) != '{' || text.charAt(i + 1) != '{' || text.charAt(i + 2) != '[') {
+                i++;
+                continue;
+            }
+
+            int idStart = i + 3;
+            int idEnd = idStart;
+            while (idEnd < length && isIdChar(text.charAt(idEnd))) {
+                idEnd++;
+            }
+            int idLength = idEnd - idStart;
+            if (idLength == 0 || idLength > MAX_ID_LENGTH || idEnd >= length || text.charAt(idEnd) != ']') {
+                i++;
+                continue;
+            }
+
+            int labelStart = idEnd + 1;
+            int labelEnd = findLabelEnd(text, labelStart);
+            if (labelEnd >= 0) {
+                link[ID_START] = idStart;
+                link[ID_END] = idEnd;
+                link[LABEL_START] = labelStart;
+                link[LABEL_END] = labelEnd;
+                return true;
+            } else if (labelEnd == -1) {
+                // Hit the end of the text: no later link can close either.
+                return false;
+            } else {
+                // Hit a line terminator at -labelEnd - 2. Every link opening before it would run into it too,
+                // because the braces and ids of a link never contain one.
+                i = -labelEnd - 1;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the index of the "}}" closing a label that starts at labelStart, or -1 if the text ends first, or
+     * -(index of the line terminator) - 2 if a line terminator comes first.
+     */
+    private static int findLabelEnd(String text, int labelStart) {
+        int length = text.length();
+        if (labelStart >= length) {
+            return -1;
+        }
+        if (isLineTerminator(text.charAt(labelStart))) {
+            return -labelStart - 2;
+        }
+        // The label is at least one character long, so the closing braces start at labelStart + 1 or later.
+        for (int e = labelStart + 1; e < length; e++) {
+            char c = text.charAt(e);
+            if (c == '}' && e + 1 < length && text.charAt(e + 1) == '}') {
+                return e;
+            }
+            if (isLineTerminator(c)) {
+                return -e - 2;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isIdChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9');
+    }
+
+    /**
+     * The characters that '.' refuses to match in a java.util.regex.Pattern compiled without flags.
+     */
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+}
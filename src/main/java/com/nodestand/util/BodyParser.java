@@ -8,70 +8,78 @@ import com.nodestand.nodes.repository.ArgumentNodeRepository;
 import org.apache.commons.lang3.StringUtils;
 
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 public final class BodyParser {
 
 
     public static Set<String> getMajorVersions(String bodyText) {
 
-        BodyTextIterator iterator = new BodyTextIterator(bodyText);
-
         Set<String> links = new HashSet<>();
-        while (iterator.hasNext()) {
-            links.add(iterator.next().getMajorVersionStableId());
-        }
+        BodyLinkScanner.scan(bodyText, (text, idStart, idEnd, labelStart, labelEnd) ->
+                links.add(text.substring(idStart, idEnd)));
 
         return links;
     }
 
+    /**
+     * The distinct linked major versions, sorted so that the stored form doesn't depend on hash order.
+     */
+    public static String[] getMajorVersionArray(String bodyText) {
+        if (bodyText == null) {
+            return new String[0];
+        }
+        return getMajorVersions(bodyText).stream().sorted().toArray(String[]::new);
+    }
+
+    /**
+     * Checks that the links in the body text and the children are the same set of major versions, and returns the
+     * stableIds of the children in the order their links first appear in the text. Children whose major version
+     * isn't loaded yet are loaded all together first.
+     */
     public static String[] validateAndSortLinks(Collection<Node> children, String assertionBodyText, ArgumentNodeRepository repo) throws NodeRulesException {
 
         if (StringUtils.isEmpty(assertionBodyText)) {
             return new String[0];
         }
 
+        List<Long> unloaded = new ArrayList<>();
         for (Node child: children) {
             if (child.getBody() == null || child.getBody().getMajorVersion() == null) {
-                repo.loadWithMajorVersion(child.getId());
+                unloaded.add(child.getId());
             }
         }
+        if (!unloaded.isEmpty()) {
+            repo.loadWithMajorVersions(unloaded);
+        }
 
-        BodyTextIterator iterator = new BodyTextIterator(assertionBodyText);
-
-        //Matcher m = p.matcher(assertionBodyText);
+        Map<String, Node> childrenByMajorVersion = new HashMap<>();
+        for (Node child : children) {
+            if (childrenByMajorVersion.put(child.getBody().getMajorVersion().getStableId(), child) != null) {
+                throw new NodeInputException("Passed multiple children with the same major version!");
+            }
+        }
 
-        List<Node> remainingChildren = new ArrayList<>(children);
-        List<String> argumentNodeStables = new LinkedList<>();
-        Set<String> majorVersionStables = new HashSet<>();
+        Set<String> linked = new HashSet<>();
+        List<String> argumentNodeStables = new ArrayList<>(children.size());
 
-        while (iterator.hasNext()) {
-            String id = iterator.next().getMajorVersionStableId();
+        int[] link = new int[BodyLinkScanner.LINK_SIZE];
+        int from = 0;
+        while (BodyLinkScanner.findNext(assertionBodyText, from, link)) {
+            String majorVersionStableId = assertionBodyText.substring(link[BodyLinkScanner.ID_START], link[BodyLinkScanner.ID_END]);
+            from = link[BodyLinkScanner.LABEL_END] + 2;
 
-            if (majorVersionStables.contains(id)) {
+            if (!linked.add(majorVersionStableId)) {
                 continue;
             }
 
-            List<Node> matches = remainingChildren.stream().filter(n -> n.getBody().getMajorVersion().getStableId().equals(id)).collect(Collectors.toList());
-
-            if (matches.isEmpty()) {
+            Node child = childrenByMajorVersion.get(majorVersionStableId);
+            if (child == null) {
                 throw new NodeInputException("Body text contained an unexpected link!");
             }
-
-            if (matches.size() > 1) {
-                throw new NodeInputException("Passed multiple children with the same major version!");
-            }
-
-            Node child = matches.get(0);
-
-            remainingChildren.remove(child);
             argumentNodeStables.add(child.getStableId());
-            majorVersionStables.add(id);
         }
 
-        if (!remainingChildren.isEmpty()) {
+        if (argumentNodeStables.size() < childrenByMajorVersion.size()) {
             throw new NodeInputException("There were children not represented in the body text!");
         }
 
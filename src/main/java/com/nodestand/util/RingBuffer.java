@@ -0,0 +1,92 @@
+package com.nodestand.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * A bounded, lock-free queue for many producers and a single consumer. Producers claim a slot by advancing the tail
+ * with a compare-and-set and then fill it in; the consumer empties slots in order and treats a claimed but not yet
+ * filled slot as the end of the queue for now. Nobody ever blocks: {@link #offer} returns false when the buffer is
+ * full, and it is up to the caller whether to drop or retry.
+ */
+public final class RingBuffer<E> {
+
+    private final AtomicReferenceArray<E> slots;
+    private final int mask;
+
+    private final AtomicLong tail = new AtomicLong();
+
+    // Only the consumer writes this; producers read it to see whether there is room.
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    public RingBuffer(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity out of range: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        slots = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Safe to call from any thread.
+     *
+     * @return false if the buffer is full
+     */
+    public boolean offer(E element) {
+        if (element == null) {
+            throw new NullPointerException();
+        }
+        while (true) {
+            long t = tail.get();
+            if (t - head.get() > mask) {
+                return false;
+            }
+            if (tail.compareAndSet(t, t + 1)) {
+                slots.lazySet((int) t & mask, element);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Hands up to max elements to the consumer, oldest first. Only one thread may drain.
+     *
+     * @return how many elements were drained
+     */
+    public int drain(Consumer<? super E> consumer, int max) {
+        long h = head.get();
+        int drained = 0;
+        while (drained < max) {
+            int index = (int) h & mask;
+            E element = slots.get(index);
+            if (element == null) {
+                break;
+            }
+            slots.lazySet(index, null);
+            head.lazySet(++h);
+            drained++;
+            // After the slot is released, so that a consumer that throws doesn't wedge the buffer.
+            consumer.accept(element);
+        }
+        return drained;
+    }
+
+    /**
+     * Approximate when other threads are offering or draining.
+     */
+    public int size() {
+        return (int) Math.max(0, Math.min(tail.get() - head.get(), capacity()));
+    }
+}
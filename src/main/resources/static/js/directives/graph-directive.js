@@ -267,6 +267,8 @@ require('./node-type-directive');
                     if (node === rootNode) {
                         $location.path("/graph/" + quickGraph.rootStableId); // Change url back to public version
                     }
+                }, function (err) {
+                    ToastService.error(err.message);
                 });
             } else {
                 // TODO: display an error
@@ -250,7 +250,7 @@ require('../services/body-text-service');
 
                 self.getSearchResults = function(query) {
 
-                    return $http.get('/search', {params: {query: query, types:linkableTypes}})
+                    return $http.get('/suggest', {params: {prefix: query, types:linkableTypes}})
                         .then(function(response){
 
                             var bodyList = response.data;
@@ -283,7 +283,7 @@ require('../services/body-text-service');
                         return;
                     }
 
-                    NodeCache.getLinkChoices(bodyNode.majorVersion.id, function(nodes) {
+                    NodeCache.getLinkChoices(bodyNode.majorVersionId, function(nodes) {
                         // Although the nodes param is a list, it's actually associated with a single selection in the search
                         // box. That's because search results are rolled up by major version to prevent the perception of
                         // duplicates. In the future, we may allow the user to select from among these nodes.
@@ -8,7 +8,7 @@ require('./node-factory');
         .module('nodeStandControllers')
         .factory('NodeCache', NodeCache);
 
-    function NodeCache($http, Node) {
+    function NodeCache($http, $mdDialog, $window, Node) {
 
         var cache = {};
 
@@ -296,7 +296,8 @@ require('./node-factory');
                     title: node.body.title,
                     qualifier: node.body.qualifier,
                     body: node.body.body,
-                    links: links
+                    links: links,
+                    editVersion: node.editVersion
                 })
                 .success(function (data) {
                     var editedNode = handleNodeEdit(data);
@@ -305,11 +306,7 @@ require('./node-factory');
                         successCallback(editedNode);
                     }
                 })
-                .error(function(err) {
-                    if (errorCallback) {
-                        errorCallback(err);
-                    }
-                });
+                .error(handleEditError(errorCallback));
         }
 
         function saveInterpretationEdit(node, successCallback, errorCallback) {
@@ -326,7 +323,8 @@ require('./node-factory');
                     title: node.body.title,
                     qualifier: node.body.qualifier,
                     body: node.body.body,
-                    sourceId: sourceId
+                    sourceId: sourceId,
+                    editVersion: node.editVersion
                 })
                 .success(function (data) {
                     var editedNode = handleNodeEdit(data);
@@ -335,11 +333,7 @@ require('./node-factory');
                         successCallback(editedNode);
                     }
                 })
-                .error(function(err) {
-                    if (errorCallback) {
-                        errorCallback(err);
-                    }
-                });
+                .error(handleEditError(errorCallback));
         }
 
         function saveSourceEdit(node, successCallback, errorCallback) {
@@ -350,7 +344,8 @@ require('./node-factory');
                     nodeId: node.id,
                     title: node.body.title,
                     qualifier: node.body.qualifier,
-                    url: node.body.url
+                    url: node.body.url,
+                    editVersion: node.editVersion
                 })
                 .success(function (data) {
                     var editedNode = handleNodeEdit(data);
@@ -359,11 +354,7 @@ require('./node-factory');
                         successCallback(editedNode);
                     }
                 })
-                .error(function(err) {
-                    if (errorCallback) {
-                        errorCallback(err);
-                    }
-                });
+                .error(handleEditError(errorCallback));
         }
 
         function saveSubjectEdit(node, successCallback, errorCallback) {
@@ -374,7 +365,8 @@ require('./node-factory');
                     nodeId: node.id,
                     title: node.body.title,
                     qualifier: node.body.qualifier,
-                    url: node.body.url
+                    url: node.body.url,
+                    editVersion: node.editVersion
                 })
                 .success(function (data) {
                     var editedNode = handleNodeEdit(data);
@@ -383,11 +375,27 @@ require('./node-factory');
                         successCallback(editedNode);
                     }
                 })
-                .error(function(err) {
-                    if (errorCallback) {
-                        errorCallback(err);
-                    }
-                });
+                .error(handleEditError(errorCallback));
+        }
+
+        // The server refuses an edit or publish with a 409 when someone else changed the node since we loaded it.
+        // Nothing we have on the page can be trusted after that, so offer to reload instead of passing the error on.
+        function handleEditError(errorCallback) {
+            return function(err, status) {
+                if (status === 409) {
+                    $mdDialog.show($mdDialog.confirm()
+                        .title("This card has changed")
+                        .textContent("Someone else changed this card since you loaded it. Reload to see their " +
+                            "changes? Anything you haven't saved will be lost.")
+                        .ok("Reload")
+                        .cancel("Stay here"))
+                        .then(function() {
+                            $window.location.reload();
+                        });
+                } else if (errorCallback) {
+                    errorCallback(err);
+                }
+            };
         }
 
         cache.publishNode = function(node, successCallback, errorCallback) {
@@ -401,7 +409,8 @@ require('./node-factory');
 
             $http.post('/publishNode',
                 {
-                    nodeId: node.id
+                    nodeId: node.id,
+                    editVersion: node.editVersion
                 })
                 .success(function (data) {
                     inductQuickGraph(data);
@@ -425,11 +434,7 @@ require('./node-factory');
                         successCallback(data); // This callback probably ought to change the URL to incorporate the new id.
                     }
                 })
-                .error(function(err) {
-                    if (errorCallback) {
-                        errorCallback(err);
-                    }
-                });
+                .error(handleEditError(errorCallback));
         };
 
         function insertNode(node) {
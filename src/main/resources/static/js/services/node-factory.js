@@ -69,6 +69,11 @@
                 self.draft = data.draft;
             }
 
+            if (data.editVersion !== undefined && data.editVersion !== null) {
+                // Sent back with edits and publishes, so the server can refuse them if someone else got there first.
+                self.editVersion = data.editVersion;
+            }
+
             self.childOrder = data.childOrder;
 
             self.sortChildren();
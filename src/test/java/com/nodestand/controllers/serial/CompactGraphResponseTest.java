@@ -0,0 +1,59 @@
+package com.nodestand.controllers.serial;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nodestand.nodes.ArgumentNode;
+import com.nodestand.test.SyntheticGraph;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class CompactGraphResponseTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void compactFormatKeepsTheGraph() throws Exception {
+        QuickGraphResponse graph = SyntheticGraph.tree(2, 3, 4);
+
+        JsonNode compact = objectMapper.readTree(objectMapper.writeValueAsBytes(new CompactGraphResponse(graph)));
+
+        Assert.assertEquals(graph.getNodes().size(), compact.get("nodes").size());
+        Assert.assertEquals(graph.getEdges().size() * 2, compact.get("edges").size());
+        Assert.assertEquals(4, compact.get("authors").size());
+        Assert.assertEquals(graph.getNodes().size(), compact.get("majorVersions").size());
+
+        Map<Long, ArgumentNode> byId = new HashMap<>();
+        graph.getNodes().forEach(n -> byId.put(n.getId(), n));
+
+        for (JsonNode row : compact.get("nodes")) {
+            ArgumentNode node = byId.get(row.get("id").asLong());
+            Assert.assertEquals(node.getBody().getTitle(), row.get("title").asText());
+            Assert.assertEquals(node.getType(), row.get("type").asText());
+            JsonNode author = compact.get("authors").get(row.get("author").asInt());
+            Assert.assertEquals(node.getBody().author.getStableId(), author.get("stableId").asText());
+            JsonNode majorVersion = compact.get("majorVersions").get(row.get("majorVersion").asInt());
+            Assert.assertEquals(node.getBody().getMajorVersion().getStableId(), majorVersion.get("stableId").asText());
+            Assert.assertEquals(node.getBody().getMajorVersion().greatVotes, majorVersion.get("greatVotes").asInt());
+        }
+
+        JsonNode edges = compact.get("edges");
+        for (int i = 0; i < edges.size(); i += 2) {
+            long start = compact.get("nodes").get(edges.get(i).asInt()).get("id").asLong();
+            long end = compact.get("nodes").get(edges.get(i + 1).asInt()).get("id").asLong();
+            Assert.assertTrue(graph.getEdges().stream().anyMatch(e -> e.getStart() == start && e.getEnd() == end));
+        }
+    }
+
+    @Test
+    public void compactFormatIsSmaller() throws Exception {
+        QuickGraphResponse graph = SyntheticGraph.tree(3, 6, 20);
+
+        byte[] full = objectMapper.writeValueAsBytes(graph);
+        byte[] compact = objectMapper.writeValueAsBytes(new CompactGraphResponse(graph));
+
+        Assert.assertTrue(compact.length < full.length);
+    }
+}
@@ -0,0 +1,280 @@
+package com.nodestand.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.nodestand.nodes.Author;
+import com.nodestand.nodes.assertion.AssertionNode;
+import com.nodestand.nodes.interpretation.InterpretationNode;
+import com.nodestand.nodes.repository.ArgumentBodyRepository;
+import com.nodestand.nodes.repository.UserRepository;
+import com.nodestand.nodes.vote.VoteType;
+import com.nodestand.service.argument.ArgumentService;
+import com.nodestand.service.argument.ArgumentTestUtil;
+import com.nodestand.service.argument.GraphCache;
+import com.nodestand.service.search.SearchIndex;
+import com.nodestand.service.vote.ScoreLogger;
+import com.nodestand.service.vote.VoteService;
+import com.nodestand.test.ConcurrentIntegrationContext;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.neo4j.ogm.session.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Seeds a synthetic debate and then hammers the services from several threads, one workload at a time. The results
+ * (p50 / p99 latency and throughput per operation) are written as JSON so that runs can be diffed between versions.
+ *
+ * Skipped unless -DloadTest=true, which the loadTest gradle task sets. Sizes can be tuned with the loadTest.*
+ * system properties read below.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = {ConcurrentIntegrationContext.class})
+@ActiveProfiles({"concurrent"})
+public class ServiceLoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(ServiceLoadTest.class);
+
+    private static final String[] TOPICS = {"taxes", "climate", "housing", "transit", "schools", "energy", "health", "trade"};
+
+    private final int triples = Integer.getInteger("loadTest.triples", 500);
+    private final int parents = Integer.getInteger("loadTest.parents", 200);
+    private final int fanOut = Integer.getInteger("loadTest.fanOut", 3);
+    private final int voters = Integer.getInteger("loadTest.voters", 20);
+    private final int threads = Integer.getInteger("loadTest.threads", 8);
+    private final int operations = Integer.getInteger("loadTest.operations", 400);
+    private final int warmupOperations = Integer.getInteger("loadTest.warmupOperations", 50);
+    private final String reportPath = System.getProperty("loadTest.report", "build/load-test-report.json");
+
+    @Autowired
+    private ArgumentService argumentService;
+
+    @Autowired
+    private VoteService voteService;
+
+    @Autowired
+    private ArgumentBodyRepository argumentBodyRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private GraphCache graphCache;
+
+    @Autowired
+    private ScoreLogger scoreLogger;
+
+    @Autowired
+    private SearchIndex searchIndex;
+
+    @Autowired
+    private Neo4jDatabaseCleaner cleaner;
+
+    @Autowired
+    private Session session;
+
+    private Author seedAuthor;
+    private final List<Author> voterAuthors = new ArrayList<>();
+    private final List<String> rootStableIds = new ArrayList<>();
+    private final List<String> votableStableIds = new ArrayList<>();
+    private final List<InterpretationNode> interpretations = new ArrayList<>();
+
+    @BeforeClass
+    public static void onlyWhenAsked() {
+        // Checked before the spring context starts, so a normal test run doesn't pay for a second embedded database.
+        Assume.assumeTrue("Load test skipped; run with -DloadTest=true", Boolean.getBoolean("loadTest"));
+    }
+
+    @Before
+    public void seed() throws Exception {
+        seedAuthor = ArgumentTestUtil.registerUser(userRepository, "seed", "Seed");
+        for (int i = 0; i < voters; i++) {
+            voterAuthors.add(ArgumentTestUtil.registerUser(userRepository, "voter" + i, "Voter " + i));
+        }
+
+        long userId = seedAuthor.getUser().getNodeId();
+        Random random = new Random(42);
+
+        List<AssertionNode> tripleRoots = new ArrayList<>();
+        for (int i = 0; i < triples; i++) {
+            AssertionNode root = ArgumentTestUtil.createPublishedTriple(argumentService, seedAuthor);
+            InterpretationNode interpretation = (InterpretationNode) root.getSupportingNodes().iterator().next();
+            tripleRoots.add(root);
+            interpretations.add(interpretation);
+            rootStableIds.add(root.getStableId());
+            votableStableIds.add(root.getStableId());
+            votableStableIds.add(interpretation.getStableId());
+            votableStableIds.add(interpretation.getLeafNode().getStableId());
+            session.clear();
+        }
+
+        for (int i = 0; i < parents; i++) {
+            List<Long> links = new ArrayList<>();
+            StringBuilder body = new StringBuilder("Consider ");
+            for (AssertionNode child : pickDistinct(tripleRoots, fanOut, random)) {
+                links.add(child.getId());
+                body.append("{{[").append(child.getBody().getMajorVersion().getStableId()).append("]this}} ");
+            }
+            AssertionNode parent = argumentService.createAssertion(userId, seedAuthor.getStableId(),
+                    "On " + TOPICS[i % TOPICS.length] + " " + i, "Parent", body.toString(), links);
+            parent = (AssertionNode) argumentService.publishNode(userId, parent.getId(), null).getRootNode();
+            rootStableIds.add(parent.getStableId());
+            votableStableIds.add(parent.getStableId());
+            session.clear();
+        }
+    }
+
+    @After
+    public void cleanup() {
+        cleaner.cleanDb();
+        graphCache.clear();
+        searchIndex.clear();
+    }
+
+    @Test
+    public void runWorkloads() throws Exception {
+        Map<String, Object> results = new LinkedHashMap<>();
+
+        results.put("getGraph", runWorkload(random -> {
+            Long viewer = random.nextBoolean() ? null : pick(voterAuthors, random).getUser().getNodeId();
+            argumentService.getGraph(pick(rootStableIds, random), viewer);
+        }));
+
+        results.put("voteNode", runWorkload(random -> {
+            Author voter = pick(voterAuthors, random);
+            VoteType voteType = VoteType.values()[random.nextInt(VoteType.values().length)];
+            voteService.voteNode(voter.getUser().getStableId(), pick(votableStableIds, random), voteType);
+        }));
+
+        results.put("createAndPublishAssertion", runWorkload(random -> {
+            Author author = pick(voterAuthors, random);
+            InterpretationNode interpretation = pick(interpretations, random);
+            String body = "Building on {{[" + interpretation.getBody().getMajorVersion().getStableId() + "]that}}";
+            AssertionNode created = argumentService.createAssertion(author.getUser().getNodeId(), author.getStableId(),
+                    "More on " + pick(Arrays.asList(TOPICS), random), "Q", body,
+                    Collections.singletonList(interpretation.getId()));
+            argumentService.publishNode(author.getUser().getNodeId(), created.getId(), null);
+        }));
+
+        results.put("search", runWorkload(random -> {
+            String topic = pick(Arrays.asList(TOPICS), random);
+            List<Long> bodyIds = searchIndex.search(topic, pick(voterAuthors, random).getUser().getNodeId(), null, null, 50)
+                    .hits.stream().map(hit -> hit.bodyId).collect(Collectors.toList());
+            if (!bodyIds.isEmpty()) {
+                argumentBodyRepository.loadBodiesRich(bodyIds);
+            }
+        }));
+
+        Map<String, Object> config = new LinkedHashMap<>();
+        config.put("triples", triples);
+        config.put("parents", parents);
+        config.put("fanOut", fanOut);
+        config.put("voters", voters);
+        config.put("threads", threads);
+        config.put("operations", operations);
+        config.put("warmupOperations", warmupOperations);
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("config", config);
+        report.put("operations", results);
+        report.put("graphCache", graphCache.getStats());
+        report.put("scoreLogger", scoreLogger.getStats());
+
+        ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        File reportFile = new File(reportPath);
+        if (reportFile.getParentFile() != null) {
+            reportFile.getParentFile().mkdirs();
+        }
+        objectMapper.writeValue(reportFile, report);
+        log.info("Wrote the load test report to {}", reportFile.getAbsolutePath());
+    }
+
+    private interface Operation {
+        void run(Random random) throws Exception;
+    }
+
+    private Map<String, Object> runWorkload(Operation operation) throws InterruptedException {
+        execute(operation, warmupOperations, new long[warmupOperations]);
+
+        long[] latencies = new long[operations];
+        long start = System.nanoTime();
+        int errors = execute(operation, operations, latencies);
+        long wallNanos = System.nanoTime() - start;
+
+        Arrays.sort(latencies);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("count", operations);
+        result.put("errors", errors);
+        result.put("throughputPerSecond", operations / (wallNanos / 1e9));
+        result.put("p50Millis", percentile(latencies, 0.50) / 1e6);
+        result.put("p99Millis", percentile(latencies, 0.99) / 1e6);
+        result.put("maxMillis", latencies[latencies.length - 1] / 1e6);
+        return result;
+    }
+
+    /**
+     * Runs the operation count times spread over the thread pool, recording each latency. Failures are counted
+     * rather than thrown, because some contention errors are expected under load.
+     */
+    private int execute(Operation operation, int count, long[] latencies) throws InterruptedException {
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            pool.submit(() -> {
+                Random random = ThreadLocalRandom.current();
+                int i;
+                while ((i = next.getAndIncrement()) < count) {
+                    long start = System.nanoTime();
+                    try {
+                        operation.run(random);
+                    } catch (Exception e) {
+                        if (errors.getAndIncrement() == 0) {
+                            log.warn("First failed operation of the workload", e);
+                        }
+                    } finally {
+                        latencies[i] = System.nanoTime() - start;
+                        session.clear(); // The next operation on this thread should act like a fresh request.
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.HOURS);
+        return errors.get();
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static <T> T pick(List<T> items, Random random) {
+        return items.get(random.nextInt(items.size()));
+    }
+
+    private static <T> List<T> pickDistinct(List<T> items, int count, Random random) {
+        List<T> shuffled = new ArrayList<>(items);
+        Collections.shuffle(shuffled, random);
+        return shuffled.subList(0, Math.min(count, shuffled.size()));
+    }
+}
@@ -16,8 +16,10 @@ import org.neo4j.ogm.session.Session;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @RunWith(SpringJUnit4ClassRunner.class)
 public class ArgumentNodeRepositoryTest extends Neo4jIntegrationTest {
@@ -86,5 +88,25 @@ public class ArgumentNodeRepositoryTest extends Neo4jIntegrationTest {
         Assert.assertNotNull(triple.getBody().getMajorVersion());
     }
 
+    @Test
+    public void publicNodesByMajorVersion() throws NotAuthorizedException, NodeRulesException {
+
+        Author jim = registerUser("1234", "Jim");
+
+        AssertionNode triple = ArgumentTestUtil.createPublishedTriple(argumentService, jim);
+        InterpretationNode interp = (InterpretationNode) triple.getGraphChildren().iterator().next();
+        String tripleMv = triple.getBody().getMajorVersion().getStableId();
+        String interpMv = interp.getBody().getMajorVersion().getStableId();
+
+        session.clear();
 
+        Set<ArgumentNode> nodes = argumentNodeRepository.getPublicNodesRich(Arrays.asList(tripleMv, interpMv, "missing"));
+
+        Assert.assertEquals(2, nodes.size());
+        for (ArgumentNode node : nodes) {
+            Assert.assertTrue(node.getBody().isPublic());
+            Assert.assertNotNull(node.getBody().getMajorVersion().author);
+            Assert.assertNotNull(node.getBody().author);
+        }
+    }
 }
@@ -2,6 +2,9 @@ package com.nodestand.service.argument;
 
 import com.nodestand.auth.NotAuthorizedException;
 import com.nodestand.controllers.serial.EditResult;
+import com.nodestand.controllers.serial.GraphPageResponse;
+import com.nodestand.controllers.serial.GraphSnapshot;
+import com.nodestand.controllers.serial.QuickEdge;
 import com.nodestand.controllers.serial.QuickGraphResponse;
 import com.nodestand.nodes.*;
 import com.nodestand.nodes.assertion.AssertionBody;
@@ -18,10 +21,14 @@ import org.neo4j.ogm.session.Session;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 @RunWith(SpringJUnit4ClassRunner.class)
 public class ArgumentServiceTest extends Neo4jIntegrationTest {
@@ -38,6 +45,9 @@ public class ArgumentServiceTest extends Neo4jIntegrationTest {
     @Autowired
     private Session session;
 
+    @Autowired
+    private GraphCache graphCache;
+
     private Author registerUser(String socialId, String name) {
 
         final User user = new User(
@@ -89,7 +99,7 @@ public class ArgumentServiceTest extends Neo4jIntegrationTest {
         AssertionNode assertionNode = createPublishedAssertion();
 
         try {
-            argumentService.editAssertion(kyle.getUser().getNodeId(), assertionNode.getId(), "Title", "Q", "Body", new LinkedList<>());
+            argumentService.editAssertion(kyle.getUser().getNodeId(), assertionNode.getId(), "Title", "Q", "Body", new LinkedList<>(), null);
             Assert.fail("Should have thrown an exception because you can't edit a published node directly.");
         } catch (NodeRulesException e) {
             // Good.
@@ -111,12 +121,12 @@ public class ArgumentServiceTest extends Neo4jIntegrationTest {
         List<Long> links = new LinkedList<>();
         links.add(child.getId());
         String body = "New Body {{[" + child.getBody().getMajorVersion().getStableId() + "]link}}";
-        AssertionNode edited = argumentService.editAssertion(kyle.getUser().getNodeId(), result.getEditedNode().getId(), "New Title", "New Qual", body, links);
+        AssertionNode edited = argumentService.editAssertion(kyle.getUser().getNodeId(), result.getEditedNode().getId(), "New Title", "New Qual", body, links, null);
 
         Assert.assertFalse(edited.getBody().isPublic());
         Assert.assertEquals(assertionNode.getId(), edited.getPreviousVersion().getId());
 
-        AssertionNode resultingNode = (AssertionNode) argumentService.publishNode(kyle.getUser().getNodeId(), edited.getId()).getRootNode();
+        AssertionNode resultingNode = (AssertionNode) argumentService.publishNode(kyle.getUser().getNodeId(), edited.getId(), null).getRootNode();
 
         Assert.assertEquals(assertionNode.getId(), resultingNode.getId());
         Assert.assertEquals("New Title", resultingNode.getBody().getTitle());
@@ -147,7 +157,7 @@ public class ArgumentServiceTest extends Neo4jIntegrationTest {
 
         session.clear();
 
-        SourceNode edited = argumentService.editSource(kyle.getUser().getNodeId(), result.getEditedNode().getId(), "New Title", "Q2", "new/url");
+        SourceNode edited = argumentService.editSource(kyle.getUser().getNodeId(), result.getEditedNode().getId(), "New Title", "Q2", "new/url", null);
 
         Assert.assertFalse(edited.getBody().isPublic());
         argumentService.getEditHistory(edited.getStableId());
@@ -158,7 +168,7 @@ public class ArgumentServiceTest extends Neo4jIntegrationTest {
 
         session.clear();
 
-        SourceNode resultingNode = (SourceNode) argumentService.publishNode(kyle.getUser().getNodeId(), edited.getId()).getRootNode();
+        SourceNode resultingNode = (SourceNode) argumentService.publishNode(kyle.getUser().getNodeId(), edited.getId(), null).getRootNode();
 
         Assert.assertEquals(source.getId(), resultingNode.getId());
         Assert.assertEquals("New Title", resultingNode.getBody().getTitle());
@@ -184,7 +194,7 @@ public class ArgumentServiceTest extends Neo4jIntegrationTest {
         session.clear();
 
         // Edit the interp draft
-        argumentService.editInterpretation(kyle.getUser().getNodeId(), interpDraft.getId(), "Edited interp", "Q2", "Edited interp body", resultingNode.getId());
+        argumentService.editInterpretation(kyle.getUser().getNodeId(), interpDraft.getId(), "Edited interp", "Q2", "Edited interp body", resultingNode.getId(), null);
         session.clear();
 
         // Make the assertion a draft
@@ -199,7 +209,7 @@ public class ArgumentServiceTest extends Neo4jIntegrationTest {
         session.clear();
 
         // Publish the interp draft
-        InterpretationNode publishedInterp = (InterpretationNode) argumentService.publishNode(kyle.getUser().getNodeId(), interpDraft.getId()).getRootNode();
+        InterpretationNode publishedInterp = (InterpretationNode) argumentService.publishNode(kyle.getUser().getNodeId(), interpDraft.getId(), null).getRootNode();
         session.clear();
 
         // Make sure the original assertion points to the published changed interp
@@ -220,9 +230,9 @@ public class ArgumentServiceTest extends Neo4jIntegrationTest {
         // Edit and publish the assertion
         List<Long> links = new LinkedList<>();
         links.add(publishedInterp.getId());
-        argumentService.editAssertion(kyle.getUser().getNodeId(), assertionDraft.getId(), "Edited assertion", "Q2", "Edited assertion body " + assertionNode.getBody().getBody(), links);
+        argumentService.editAssertion(kyle.getUser().getNodeId(), assertionDraft.getId(), "Edited assertion", "Q2", "Edited assertion body " + assertionNode.getBody().getBody(), links, null);
         session.clear();
-        AssertionNode publishedAssertion = (AssertionNode) argumentService.publishNode(kyle.getUser().getNodeId(), assertionDraft.getId()).getRootNode();
+        AssertionNode publishedAssertion = (AssertionNode) argumentService.publishNode(kyle.getUser().getNodeId(), assertionDraft.getId(), null).getRootNode();
         session.clear();
 
         // Make sure the resulting graph looks good
@@ -267,16 +277,16 @@ public class ArgumentServiceTest extends Neo4jIntegrationTest {
         // Edit the assertion to point to the interpretation
         links.add(interpretationNode.getId());
         assertionNode = argumentService.editAssertion(jim.getUser().getNodeId(), assertionNode.getId(), "Assertion Title", "Q", "Hello! {{[" +
-                interpretationNode.getBody().getMajorVersion().getStableId() + "]link}}", links);
+                interpretationNode.getBody().getMajorVersion().getStableId() + "]link}}", links, null);
         session.clear();
 
         SourceNode sourceNode = argumentService.createSource(jim.getUser().getNodeId(), jim.getStableId(), "Source Title", "Original", "http://google.com");
         session.clear();
 
-        argumentService.editInterpretation(jim.getUser().getNodeId(), interpretationNode.getId(), "Interp Title", "Q2", "Interp body", sourceNode.getId());
+        argumentService.editInterpretation(jim.getUser().getNodeId(), interpretationNode.getId(), "Interp Title", "Q2", "Interp body", sourceNode.getId(), null);
         session.clear();
 
-        AssertionNode published = (AssertionNode) argumentService.publishNode(jim.getUser().getNodeId(), assertionNode.getId()).getRootNode();
+        AssertionNode published = (AssertionNode) argumentService.publishNode(jim.getUser().getNodeId(), assertionNode.getId(), null).getRootNode();
 
         Assert.assertTrue(published.getBody().isPublic());
     }
@@ -300,12 +310,12 @@ public class ArgumentServiceTest extends Neo4jIntegrationTest {
         List<Long> links = new LinkedList<>();
         links.add(childDraft.getId());
         String body = "New Body {{[" + childDraft.getBody().getMajorVersion().getStableId() + "]link}}";
-        argumentService.editAssertion(kyle.getUser().getNodeId(), rootDraft.getEditedNode().getId(), "Ed Root", "Qual", body, links);
+        argumentService.editAssertion(kyle.getUser().getNodeId(), rootDraft.getEditedNode().getId(), "Ed Root", "Qual", body, links, null);
 
         session.clear();
 
         // Now publish the child
-        ArgumentNode publishedChild = argumentService.publishNode(kyle.getUser().getNodeId(), childDraft.getId()).getRootNode();
+        ArgumentNode publishedChild = argumentService.publishNode(kyle.getUser().getNodeId(), childDraft.getId(), null).getRootNode();
 
         session.clear();
 
@@ -345,17 +355,185 @@ public class ArgumentServiceTest extends Neo4jIntegrationTest {
         List<Long> links = new LinkedList<>();
         links.add(childDraft.getId());
         String body = "New Body {{[" + childDraft.getBody().getMajorVersion().getStableId() + "]link}}";
-        argumentService.editAssertion(kyle.getUser().getNodeId(), rootDraft.getEditedNode().getId(), "Ed Root", "Qual", body, links);
+        argumentService.editAssertion(kyle.getUser().getNodeId(), rootDraft.getEditedNode().getId(), "Ed Root", "Qual", body, links, null);
 
         session.clear();
 
         // Now publish the parent. This used to throw a null pointer.
-        ArgumentNode publishedNode = argumentService.publishNode(kyle.getUser().getNodeId(), rootDraft.getEditedNode().getId()).getRootNode();
+        ArgumentNode publishedNode = argumentService.publishNode(kyle.getUser().getNodeId(), rootDraft.getEditedNode().getId(), null).getRootNode();
 
         Assert.assertEquals(publishedNode.getStableId(), assertionNode.getStableId());
 
     }
 
+    @Test
+    public void publishingUngroundedTreeFails() throws NodeRulesException {
+
+        Author jim = registerUser("1234", "Jim");
+        InterpretationNode interpretation = argumentService.createInterpretation(jim.getUser().getNodeId(),
+                jim.getStableId(), "Interp Title", "Q", "Interp body", null);
+
+        List<Long> links = new LinkedList<>();
+        links.add(interpretation.getId());
+        AssertionNode root = argumentService.createAssertion(jim.getUser().getNodeId(), jim.getStableId(), "Root", "Q",
+                "Hello! {{[" + interpretation.getBody().getMajorVersion().getStableId() + "]link}}", links);
+
+        session.clear();
+
+        try {
+            argumentService.publishNode(jim.getUser().getNodeId(), root.getId(), null);
+            Assert.fail("Should not publish an interpretation that doesn't interpret anything.");
+        } catch (NodeRulesException e) {
+            // Good.
+        }
+
+        session.clear();
+        Assert.assertFalse(session.load(ArgumentNode.class, root.getId(), 1).getBody().isPublic());
+        Assert.assertFalse(session.load(ArgumentNode.class, interpretation.getId(), 1).getBody().isPublic());
+    }
+
+    @Test
+    public void publishingEditsOfAParentAndChildTogether() throws NotAuthorizedException, NodeRulesException {
+        Author kyle = registerUser("5678", "Kyle");
+        AssertionNode assertionNode = createPublishedAssertion();
+        Node childOriginal = assertionNode.getGraphChildren().iterator().next();
+
+        EditResult rootDraft = argumentService.makeDraft(kyle.getUser().getNodeId(), kyle.getStableId(), assertionNode.getId());
+        session.clear();
+        InterpretationNode childDraft = (InterpretationNode) argumentService.makeDraft(kyle.getUser().getNodeId(),
+                kyle.getStableId(), childOriginal.getId()).getEditedNode();
+        argumentService.editInterpretation(kyle.getUser().getNodeId(), childDraft.getId(), "Ed Child", "Qual",
+                "Child body", childDraft.getLeafNode().getId(), null);
+
+        List<Long> links = new LinkedList<>();
+        links.add(childDraft.getId());
+        String body = "New Body {{[" + childDraft.getBody().getMajorVersion().getStableId() + "]link}}";
+        argumentService.editAssertion(kyle.getUser().getNodeId(), rootDraft.getEditedNode().getId(), "Ed Root", "Qual", body, links, null);
+
+        session.clear();
+
+        argumentService.publishNode(kyle.getUser().getNodeId(), rootDraft.getEditedNode().getId(), null);
+
+        session.clear();
+
+        // Both edits landed on the public versions, which got the next minor version, and the drafts are gone.
+        AssertionNode root = (AssertionNode) argumentService.getGraph(assertionNode.getStableId(), null).getRootNode();
+        Assert.assertEquals(assertionNode.getId(), root.getId());
+        Assert.assertEquals("Ed Root", root.getBody().getTitle());
+        Assert.assertEquals(1, root.getBody().getMinorVersion());
+        Assert.assertEquals(1, root.getSupportingNodes().size());
+
+        Node child = root.getSupportingNodes().iterator().next();
+        Assert.assertEquals(childOriginal.getId(), child.getId());
+        Assert.assertEquals("Ed Child", child.getBody().getTitle());
+        Assert.assertEquals(1, child.getBody().getMinorVersion());
+        Assert.assertTrue(child.getBody().isPublic());
+        Assert.assertEquals(child.getStableId(), root.getChildOrder());
+
+        Assert.assertNull(session.load(ArgumentNode.class, rootDraft.getEditedNode().getId()));
+        Assert.assertNull(session.load(ArgumentNode.class, childDraft.getId()));
+    }
+
+    @Test
+    public void publishingMarksTheTreeGrounded() throws NotAuthorizedException, NodeRulesException {
+        Author kyle = registerUser("5678", "Kyle");
+        AssertionNode triple = ArgumentTestUtil.createPublishedTriple(argumentService, kyle);
+        AssertionNode root = publishAssertionOn(kyle, triple);
+
+        session.clear();
+        Assert.assertEquals(4, countGrounded());
+        Assert.assertTrue(session.load(ArgumentNode.class, root.getId()).isGrounded());
+    }
+
+    @Test
+    public void publishingOnNodesFromBeforeGroundingWasRecorded() throws NotAuthorizedException, NodeRulesException {
+        Author kyle = registerUser("5678", "Kyle");
+        AssertionNode triple = ArgumentTestUtil.createPublishedTriple(argumentService, kyle);
+        session.query("match (n:ArgumentNode) remove n.grounded", Collections.emptyMap());
+        session.clear();
+
+        // The old nodes get walked instead, and are still found to be grounded.
+        AssertionNode root = publishAssertionOn(kyle, triple);
+
+        session.clear();
+        Assert.assertTrue(session.load(ArgumentNode.class, root.getId()).isGrounded());
+    }
+
+    @Test
+    public void editingFromAStaleVersionIsRefused() throws NotAuthorizedException, NodeRulesException {
+        Author kyle = registerUser("5678", "Kyle");
+        AssertionNode triple = ArgumentTestUtil.createPublishedTriple(argumentService, kyle);
+        long userId = kyle.getUser().getNodeId();
+        AssertionNode draft = (AssertionNode) argumentService.makeDraft(userId, kyle.getStableId(), triple.getId()).getEditedNode();
+        List<Long> links = new LinkedList<>();
+        links.add(triple.getSupportingNodes().iterator().next().getId());
+        long seen = draft.getEditVersion();
+
+        session.clear();
+        AssertionNode edited = argumentService.editAssertion(userId, draft.getId(), "First", "Q", triple.getBody().getBody(), links, seen);
+        Assert.assertEquals(seen + 1, edited.getEditVersion());
+
+        session.clear();
+        try {
+            argumentService.editAssertion(userId, draft.getId(), "Second", "Q", triple.getBody().getBody(), links, seen);
+            Assert.fail("Should not overwrite an edit the client hasn't seen.");
+        } catch (ConcurrentEditException e) {
+            // Good.
+        }
+
+        session.clear();
+        try {
+            argumentService.publishNode(userId, draft.getId(), seen);
+            Assert.fail("Should not publish a version of the draft the client hasn't seen.");
+        } catch (ConcurrentEditException e) {
+            // Good.
+        }
+
+        session.clear();
+        Assert.assertEquals("First", session.load(ArgumentNode.class, draft.getId(), 1).getBody().getTitle());
+        argumentService.publishNode(userId, draft.getId(), seen + 1);
+    }
+
+    @Test
+    public void publishingOverAChangedPublicNodeIsRefused() throws NotAuthorizedException, NodeRulesException {
+        Author kyle = registerUser("5678", "Kyle");
+        AssertionNode triple = ArgumentTestUtil.createPublishedTriple(argumentService, kyle);
+        long userId = kyle.getUser().getNodeId();
+
+        ArgumentNode first = argumentService.makeDraft(userId, kyle.getStableId(), triple.getId()).getEditedNode();
+        session.clear();
+        ArgumentNode second = argumentService.makeDraft(userId, kyle.getStableId(), triple.getId()).getEditedNode();
+        session.clear();
+
+        argumentService.publishNode(userId, first.getId(), null);
+        session.clear();
+
+        try {
+            argumentService.publishNode(userId, second.getId(), null);
+            Assert.fail("Should not publish over changes the draft wasn't based on.");
+        } catch (ConcurrentEditException e) {
+            // Good.
+        }
+
+        session.clear();
+        Assert.assertNotNull(session.load(ArgumentNode.class, second.getId()));
+        Assert.assertEquals(1, session.load(ArgumentNode.class, triple.getId(), 1).getBody().getMinorVersion());
+    }
+
+    private AssertionNode publishAssertionOn(Author author, AssertionNode child) throws NodeRulesException {
+        List<Long> links = new LinkedList<>();
+        links.add(child.getId());
+        AssertionNode draft = argumentService.createAssertion(author.getUser().getNodeId(), author.getStableId(), "Root",
+                "Q", "Hello! {{[" + child.getBody().getMajorVersion().getStableId() + "]link}}", links);
+        session.clear();
+        return (AssertionNode) argumentService.publishNode(author.getUser().getNodeId(), draft.getId(), null).getRootNode();
+    }
+
+    private long countGrounded() {
+        return ((Number) session.query("match (n:ArgumentNode) where n.grounded return count(n) as grounded",
+                Collections.emptyMap()).iterator().next().get("grounded")).longValue();
+    }
+
     @Test
     public void testRegularConsumers() throws NotAuthorizedException, NodeRulesException {
         Author kyle = registerUser("5678", "Kyle");
@@ -406,16 +584,168 @@ public class ArgumentServiceTest extends Neo4jIntegrationTest {
         links.remove(1);
         AssertionNode editedRoot = argumentService.editAssertion(jim.getUser().getNodeId(), rootNode.getId(), "Root",
                 "Original", String.format("{{[%s]hi}}",
-                        middleNode.getBody().getMajorVersion().getStableId()), links);
+                        middleNode.getBody().getMajorVersion().getStableId()), links, null);
 
         Assert.assertEquals(1, editedRoot.getSupportingNodes().size());
 
         session.clear();
 
-        argumentService.publishNode(jim.getUser().getNodeId(), editedRoot.getId());
+        argumentService.publishNode(jim.getUser().getNodeId(), editedRoot.getId(), null);
+
+    }
+
+
+    @Test
+    public void singleQueryGraphMatchesMultiQueryGraph() throws NotAuthorizedException, NodeRulesException {
+        Author jim = registerUser("1234", "Jim");
+        Author kyle = registerUser("5678", "Kyle");
+        AssertionNode root = ArgumentTestUtil.createPublishedTreeSmall(argumentService, jim);
+        Node child = root.getGraphChildren().iterator().next();
+
+        // A draft consumer of the child, which only kyle should be able to see.
+        argumentService.makeDraft(kyle.getUser().getNodeId(), kyle.getStableId(), root.getId());
+
+        session.clear();
 
+        for (Long userId : new Long[] {null, jim.getUser().getNodeId(), kyle.getUser().getNodeId()}) {
+            for (String stableId : new String[] {root.getStableId(), child.getStableId()}) {
+                QuickGraphResponse multi = argumentService.getGraphMultiQuery(stableId, userId);
+                session.clear();
+                QuickGraphResponse single = argumentService.getGraph(stableId, userId);
+                session.clear();
+
+                Assert.assertEquals(multi.getRootId(), single.getRootId());
+                Assert.assertEquals(idsOf(multi.getNodes()), idsOf(single.getNodes()));
+                Assert.assertEquals(idsOf(multi.getConsumers()), idsOf(single.getConsumers()));
+                Assert.assertEquals(edgesOf(multi), edgesOf(single));
+                Assert.assertNotNull(single.getRootNode().getBody().author);
+                Assert.assertNotNull(single.getRootNode().getBody().getMajorVersion().author);
+                if (stableId.equals(child.getStableId())) {
+                    int expectedConsumers = Objects.equals(userId, kyle.getUser().getNodeId()) ? 2 : 1;
+                    Assert.assertEquals(expectedConsumers, single.getConsumers().size());
+                } else {
+                    Assert.assertFalse(single.getEdges().isEmpty());
+                }
+            }
+        }
     }
 
+    @Test
+    public void cachedGraphIsInvalidatedByPublishingADescendant() throws NotAuthorizedException, NodeRulesException {
+        Author kyle = registerUser("5678", "Kyle");
+        AssertionNode root = createPublishedAssertion();
+        InterpretationNode interp = (InterpretationNode) root.getGraphChildren().iterator().next();
+        session.clear();
+
+        argumentService.getGraph(root.getStableId(), null);
+        long hitsBefore = graphCache.getStats().hits;
+        argumentService.getGraph(root.getStableId(), kyle.getUser().getNodeId());
+        Assert.assertEquals(hitsBefore + 1, graphCache.getStats().hits);
+
+        // Kyle's draft of the root shows up as a consumer of the interpretation only for kyle, even from the cache.
+        argumentService.getGraph(interp.getStableId(), null);
+        argumentService.makeDraft(kyle.getUser().getNodeId(), kyle.getStableId(), root.getId());
+        session.clear();
+        Assert.assertEquals(2, argumentService.getGraph(interp.getStableId(), kyle.getUser().getNodeId()).getConsumers().size());
+        Assert.assertEquals(1, argumentService.getGraph(interp.getStableId(), null).getConsumers().size());
+
+        EditResult draft = argumentService.makeDraft(kyle.getUser().getNodeId(), kyle.getStableId(), interp.getLeafNode().getId());
+        argumentService.editSource(kyle.getUser().getNodeId(), draft.getEditedNode().getId(), "Edited source", "Q", "new/url", null);
+        session.clear();
+        argumentService.publishNode(kyle.getUser().getNodeId(), draft.getEditedNode().getId(), null);
+        session.clear();
+
+        QuickGraphResponse graph = argumentService.getGraph(root.getStableId(), null);
+        Assert.assertTrue(graph.getNodes().stream().anyMatch(n -> "Edited source".equals(n.getBody().getTitle())));
+    }
+
+    @Test
+    public void anonymousSnapshotIsReusedUntilTheRootGainsAConsumer() throws NotAuthorizedException, NodeRulesException {
+        Author jim = registerUser("1234", "Jim");
+        AssertionNode triple = ArgumentTestUtil.createPublishedTriple(argumentService, jim);
+        session.clear();
+
+        GraphSnapshot first = argumentService.getAnonymousGraphSnapshot(triple.getStableId());
+        Assert.assertSame(first, argumentService.getAnonymousGraphSnapshot(triple.getStableId()));
+        Assert.assertTrue(new String(first.getJson(), StandardCharsets.UTF_8).contains(triple.getStableId()));
+
+        List<Long> links = new LinkedList<>();
+        links.add(triple.getId());
+        AssertionNode parent = argumentService.createAssertion(jim.getUser().getNodeId(), jim.getStableId(), "Parent", "Q",
+                "Parent {{[" + triple.getBody().getMajorVersion().getStableId() + "]link}}", links);
+        session.clear();
+
+        // A draft consumer is invisible to anonymous viewers, so the snapshot can stay.
+        Assert.assertSame(first, argumentService.getAnonymousGraphSnapshot(triple.getStableId()));
+
+        argumentService.publishNode(jim.getUser().getNodeId(), parent.getId(), null);
+        session.clear();
+
+        GraphSnapshot second = argumentService.getAnonymousGraphSnapshot(triple.getStableId());
+        Assert.assertNotSame(first, second);
+        Assert.assertNotEquals(first.getEtag(), second.getEtag());
+        Assert.assertTrue(new String(second.getJson(), StandardCharsets.UTF_8).contains(parent.getStableId()));
+    }
+
+    @Test
+    public void pagedGraphCoversTheWholeGraph() throws NotAuthorizedException, NodeRulesException {
+        Author jim = registerUser("1234", "Jim");
+        AssertionNode root = ArgumentTestUtil.createPublishedTreeSmall(argumentService, jim);
+        session.clear();
+
+        QuickGraphResponse wholeGraph = argumentService.getGraphMultiQuery(root.getStableId(), null);
+        session.clear();
+
+        GraphPageResponse page = argumentService.getGraphPage(root.getStableId(), null, 1, null);
+        Assert.assertEquals(root.getId(), page.getRootId());
+        Assert.assertEquals(3, page.getNodes().size()); // The root and its two children
+        Assert.assertNotNull(page.getCursor());
+
+        Set<Long> pagedIds = new HashSet<>(idsOf(page.getNodes()));
+        Set<String> pagedEdges = new HashSet<>(edgesOf(page.getEdges()));
+        int pages = 1;
+        while (page.getCursor() != null) {
+            session.clear();
+            page = argumentService.getGraphPage(root.getStableId(), null, 1, page.getCursor());
+            pagedIds.addAll(idsOf(page.getNodes()));
+            pagedEdges.addAll(edgesOf(page.getEdges()));
+            pages++;
+        }
+
+        Assert.assertEquals(3, pages);
+        Assert.assertEquals(idsOf(wholeGraph.getNodes()), pagedIds);
+        Assert.assertEquals(edgesOf(wholeGraph.getEdges()), pagedEdges);
+    }
+
+    @Test(expected = NodeInputException.class)
+    public void pagedGraphRejectsBadCursor() throws NotAuthorizedException, NodeRulesException {
+        AssertionNode root = createPublishedAssertion();
+        argumentService.getGraphPage(root.getStableId(), null, 2, "not a cursor!");
+    }
+
+    @Test(expected = NodeInputException.class)
+    public void pagedGraphRejectsCursorFromAnotherRoot() throws NotAuthorizedException, NodeRulesException {
+        Author jim = registerUser("1234", "Jim");
+        AssertionNode root = ArgumentTestUtil.createPublishedTreeSmall(argumentService, jim);
+        AssertionNode other = ArgumentTestUtil.createPublishedTriple(argumentService, jim);
+        session.clear();
+
+        String cursor = argumentService.getGraphPage(root.getStableId(), null, 1, null).getCursor();
+        Assert.assertNotNull(cursor);
+        argumentService.getGraphPage(other.getStableId(), null, 1, cursor);
+    }
+
+    private static Set<Long> idsOf(Set<ArgumentNode> nodes) {
+        return nodes.stream().map(ArgumentNode::getId).collect(Collectors.toSet());
+    }
+
+    private static Set<String> edgesOf(QuickGraphResponse graph) {
+        return edgesOf(graph.getEdges());
+    }
+
+    private static Set<String> edgesOf(Set<QuickEdge> edges) {
+        return edges.stream().map(e -> e.getStart() + "->" + e.getEnd()).collect(Collectors.toSet());
+    }
 
     private AssertionNode createPublishedAssertion() throws NodeRulesException, NotAuthorizedException {
 
@@ -22,7 +22,7 @@ public class ArgumentTestUtil {
     public static AssertionNode createPublishedTriple(ArgumentService argumentService, Author jim) throws NodeRulesException, NotAuthorizedException {
         AssertionNode draftNode = createDraftTriple(argumentService, jim);
 
-        return (AssertionNode) argumentService.publishNode(jim.getUser().getNodeId(), draftNode.getId()).getRootNode();
+        return (AssertionNode) argumentService.publishNode(jim.getUser().getNodeId(), draftNode.getId(), null).getRootNode();
     }
 
     public static AssertionNode createDraftTriple(ArgumentService argumentService, Author jim) throws NodeRulesException, NotAuthorizedException {
@@ -52,14 +52,14 @@ public class ArgumentTestUtil {
         links.add(interpretationNode.getId());
         links.add(triple.getId());
         root = argumentService.editAssertion(jim.getUser().getNodeId(), root.getId(), "Root Title", "Orig", "Hello! {{[" +
-                interpretationNode.getBody().getMajorVersion().getStableId() + "]link}} and {{[" + triple.getBody().getMajorVersion().getStableId() + "]link2}}", links);
+                interpretationNode.getBody().getMajorVersion().getStableId() + "]link}} and {{[" + triple.getBody().getMajorVersion().getStableId() + "]link2}}", links, null);
 
         SourceNode sourceNode = argumentService.createSource(jim.getUser().getNodeId(), jim.getStableId(), "ForkSource Title", "Forked", "http://google.com");
 
-        argumentService.editInterpretation(jim.getUser().getNodeId(), interpretationNode.getId(), "ForkInterp Title", "QF", "ForkInterp body", sourceNode.getId());
+        argumentService.editInterpretation(jim.getUser().getNodeId(), interpretationNode.getId(), "ForkInterp Title", "QF", "ForkInterp body", sourceNode.getId(), null);
 
 
-        return (AssertionNode) argumentService.publishNode(jim.getUser().getNodeId(), root.getId()).getRootNode();
+        return (AssertionNode) argumentService.publishNode(jim.getUser().getNodeId(), root.getId(), null).getRootNode();
     }
 
     public static NodeAndRoot createPublishedMultiPathSmall(ArgumentService argumentService, Author jim) throws NotAuthorizedException, NodeRulesException {
@@ -75,9 +75,9 @@ public class ArgumentTestUtil {
         // Edit the assertion to point to the interpretation and the triple
         links.add(interpretationNode.getId());
         links.add(triple.getId());
-        root = argumentService.editAssertion(jim.getUser().getNodeId(), root.getId(), "Root Title", "QR", "Hello! {{[" + interpretationNode.getId() + "]link}} and {{[" + triple.getId() + "]link2}}", links);
+        root = argumentService.editAssertion(jim.getUser().getNodeId(), root.getId(), "Root Title", "QR", "Hello! {{[" + interpretationNode.getId() + "]link}} and {{[" + triple.getId() + "]link2}}", links, null);
 
-        root = (AssertionNode) argumentService.publishNode(jim.getUser().getNodeId(), root.getId()).getRootNode();
+        root = (AssertionNode) argumentService.publishNode(jim.getUser().getNodeId(), root.getId(), null).getRootNode();
 
         return new NodeAndRoot(interpretationNode, root);
     }
@@ -0,0 +1,142 @@
+package com.nodestand.service.argument;
+
+import com.nodestand.nodes.ArgumentNode;
+import com.nodestand.nodes.Author;
+import com.nodestand.nodes.ConcurrentEditException;
+import com.nodestand.nodes.assertion.AssertionNode;
+import com.nodestand.nodes.repository.UserRepository;
+import com.nodestand.service.Neo4jDatabaseCleaner;
+import com.nodestand.test.ConcurrentIntegrationContext;
+import com.nodestand.test.ConcurrentRunner;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.neo4j.ogm.session.Session;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Many requests editing the same draft at once, each in its own transaction the way a request would be. Edits based on
+ * the same editVersion must be refused after the first one, and edits that don't say which version they saw must all
+ * be counted.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = {ConcurrentIntegrationContext.class})
+@ActiveProfiles({"concurrent"})
+public class EditConcurrencyTest {
+
+    private static final int EDITS = 16;
+    private static final int THREADS = 8;
+    private static final int ATTEMPTS = 5;
+
+    @Autowired
+    private ArgumentService argumentService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private GraphCache graphCache;
+
+    @Autowired
+    private Neo4jDatabaseCleaner cleaner;
+
+    @Autowired
+    private Session session;
+
+    private Author author;
+    private AssertionNode draft;
+    private List<Long> links;
+
+    @Before
+    public void setup() throws Exception {
+        author = ArgumentTestUtil.registerUser(userRepository, "author", "Author");
+        AssertionNode triple = ArgumentTestUtil.createPublishedTriple(argumentService, author);
+        links = new ArrayList<>();
+        links.add(triple.getSupportingNodes().iterator().next().getId());
+        draft = argumentService.createAssertion(author.getUser().getNodeId(), author.getStableId(), "Draft", "Q",
+                triple.getBody().getBody(), links);
+        session.clear();
+    }
+
+    @After
+    public void cleanup() {
+        cleaner.cleanDb();
+        graphCache.clear();
+    }
+
+    @Test
+    public void onlyTheFirstEditOfAVersionLands() throws Exception {
+        long seen = draft.getEditVersion();
+        AtomicInteger conflicts = new AtomicInteger();
+        Set<String> landed = ConcurrentHashMap.newKeySet();
+
+        runConcurrently(title -> {
+            try {
+                edit(title, seen);
+                landed.add(title);
+            } catch (RuntimeException e) {
+                if (!(e.getCause() instanceof ConcurrentEditException)) {
+                    throw e;
+                }
+                conflicts.incrementAndGet();
+            }
+        });
+
+        Assert.assertEquals(1, landed.size());
+        Assert.assertEquals(EDITS - 1, conflicts.get());
+
+        ArgumentNode stored = load();
+        Assert.assertEquals(seen + 1, stored.getEditVersion());
+        Assert.assertEquals(landed.iterator().next(), stored.getBody().getTitle());
+    }
+
+    @Test
+    public void uncheckedEditsAreAllCounted() throws Exception {
+        long before = draft.getEditVersion();
+        runConcurrently(title -> edit(title, null));
+        Assert.assertEquals(before + EDITS, load().getEditVersion());
+    }
+
+    /**
+     * Runs each edit once. An edit that fails for another reason than a conflict, for example on a deadlock, is retried
+     * like a user would.
+     */
+    private void runConcurrently(ConcurrentRunner.Operation<String> edit) throws Exception {
+        List<String> titles = new ArrayList<>();
+        for (int i = 0; i < EDITS; i++) {
+            titles.add("Edit " + i);
+        }
+        ConcurrentRunner.run(titles, THREADS, ATTEMPTS, session, edit);
+    }
+
+    private void edit(String title, Long editVersion) {
+        new TransactionTemplate(transactionManager).execute(status -> {
+            try {
+                argumentService.editAssertion(author.getUser().getNodeId(), draft.getId(), title, "Q",
+                        draft.getBody().getBody(), links, editVersion);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+            return null;
+        });
+    }
+
+    private ArgumentNode load() {
+        session.clear();
+        return session.load(ArgumentNode.class, draft.getId(), 1);
+    }
+}
@@ -0,0 +1,150 @@
+package com.nodestand.service.argument;
+
+import com.nodestand.controllers.serial.GraphSnapshot;
+import com.nodestand.controllers.serial.QuickGraphResponse;
+import com.nodestand.nodes.ArgumentNode;
+import com.nodestand.nodes.Author;
+import com.nodestand.nodes.source.SourceBody;
+import com.nodestand.nodes.source.SourceNode;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+public class GraphCacheTest {
+
+    private final Author author = new Author(null, "Jim");
+
+    private SourceNode source(boolean isPublic) {
+        SourceBody body = new SourceBody("Title", "Qual", author, "http://google.com");
+        body.setIsPublic(isPublic);
+        return body.constructNode();
+    }
+
+    private QuickGraphResponse graphOf(ArgumentNode... nodes) {
+        Set<ArgumentNode> nodeSet = new HashSet<>();
+        Collections.addAll(nodeSet, nodes);
+        return new QuickGraphResponse(nodeSet, new HashSet<>(), nodes[0].getId(), nodes[0].getStableId(), new HashSet<>());
+    }
+
+    @Test
+    public void hitAfterPut() {
+        GraphCache cache = new GraphCache(10, 100);
+        SourceNode node = source(true);
+
+        Assert.assertNull(cache.get(node.getStableId()));
+        cache.put(graphOf(node), cache.getGeneration());
+        Assert.assertNotNull(cache.get(node.getStableId()));
+
+        GraphCache.Stats stats = cache.getStats();
+        Assert.assertEquals(1, stats.hits);
+        Assert.assertEquals(1, stats.misses);
+        Assert.assertEquals(1, stats.entries);
+    }
+
+    @Test
+    public void draftsAreNotCached() {
+        GraphCache cache = new GraphCache(10, 100);
+        SourceNode node = source(false);
+
+        cache.put(graphOf(node), cache.getGeneration());
+        Assert.assertNull(cache.get(node.getStableId()));
+    }
+
+    @Test
+    public void leastRecentlyUsedIsEvicted() {
+        GraphCache cache = new GraphCache(2, 100);
+        SourceNode a = source(true);
+        SourceNode b = source(true);
+        SourceNode c = source(true);
+
+        cache.put(graphOf(a), cache.getGeneration());
+        cache.put(graphOf(b), cache.getGeneration());
+        cache.get(a.getStableId());
+        cache.put(graphOf(c), cache.getGeneration());
+
+        Assert.assertNotNull(cache.get(a.getStableId()));
+        Assert.assertNull(cache.get(b.getStableId()));
+        Assert.assertNotNull(cache.get(c.getStableId()));
+        Assert.assertEquals(1, cache.getStats().evictions);
+    }
+
+    @Test
+    public void evictsByWeight() {
+        GraphCache cache = new GraphCache(10, 2);
+        SourceNode a = source(true);
+        SourceNode b = source(true);
+        SourceNode c = source(true);
+
+        cache.put(graphOf(a), cache.getGeneration());
+        cache.put(graphOf(b), cache.getGeneration());
+        cache.put(graphOf(c), cache.getGeneration());
+
+        GraphCache.Stats stats = cache.getStats();
+        Assert.assertEquals(2, stats.entries);
+        Assert.assertEquals(2, stats.weight);
+        Assert.assertNull(cache.get(a.getStableId()));
+    }
+
+    @Test
+    public void invalidatesByMajorVersion() {
+        GraphCache cache = new GraphCache(10, 100);
+        SourceNode a = source(true);
+        SourceNode b = source(true);
+
+        cache.put(graphOf(a), cache.getGeneration());
+        cache.put(graphOf(b), cache.getGeneration());
+
+        cache.invalidateMajorVersion(a.getBody().getMajorVersion().getStableId());
+
+        Assert.assertNull(cache.get(a.getStableId()));
+        Assert.assertNotNull(cache.get(b.getStableId()));
+        Assert.assertEquals(1, cache.getStats().invalidations);
+    }
+
+    @Test
+    public void staleLoadIsNotCached() {
+        GraphCache cache = new GraphCache(10, 100);
+        SourceNode a = source(true);
+
+        long generation = cache.getGeneration();
+        cache.invalidateMajorVersion("someOtherMajorVersion");
+        cache.put(graphOf(a), generation);
+
+        Assert.assertNull(cache.get(a.getStableId()));
+    }
+
+    @Test
+    public void snapshotIsDroppedWhenAConsumerChanges() {
+        GraphCache cache = new GraphCache(10, 100);
+        SourceNode a = source(true);
+        SourceNode consumer = source(true);
+        String consumerMv = consumer.getBody().getMajorVersion().getStableId();
+
+        cache.put(graphOf(a), cache.getGeneration());
+        GraphSnapshot snapshot = new GraphSnapshot(new byte[0], "\"1\"");
+        cache.putSnapshot(a.getStableId(), snapshot, Collections.singleton(consumerMv), cache.getGeneration());
+        Assert.assertSame(snapshot, cache.getSnapshot(a.getStableId()));
+
+        cache.invalidateMajorVersion(consumerMv);
+
+        Assert.assertNull(cache.getSnapshot(a.getStableId()));
+        Assert.assertNotNull(cache.get(a.getStableId()));
+    }
+
+    @Test
+    public void snapshotIsDroppedWhenTheRootGainsAConsumer() {
+        GraphCache cache = new GraphCache(10, 100);
+        SourceNode a = source(true);
+
+        cache.put(graphOf(a), cache.getGeneration());
+        cache.putSnapshot(a.getStableId(), new GraphSnapshot(new byte[0], "\"1\""), Collections.emptySet(), cache.getGeneration());
+
+        cache.invalidateConsumersOf(Collections.singleton(a.getStableId()));
+
+        Assert.assertNull(cache.getSnapshot(a.getStableId()));
+        Assert.assertNotNull(cache.get(a.getStableId()));
+    }
+}
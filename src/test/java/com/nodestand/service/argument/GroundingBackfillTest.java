@@ -0,0 +1,59 @@
+package com.nodestand.service.argument;
+
+import com.nodestand.nodes.ArgumentNode;
+import com.nodestand.nodes.Author;
+import com.nodestand.nodes.assertion.AssertionNode;
+import com.nodestand.nodes.repository.UserRepository;
+import com.nodestand.test.Neo4jIntegrationTest;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.neo4j.ogm.session.Session;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.util.Collections;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+public class GroundingBackfillTest extends Neo4jIntegrationTest {
+
+    @Autowired
+    private ArgumentService argumentService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private GroundingBackfill groundingBackfill;
+
+    @Autowired
+    private Session session;
+
+    private AssertionNode root;
+    private ArgumentNode draft;
+
+    @Before
+    public void setup() throws Exception {
+        Author jim = ArgumentTestUtil.registerUser(userRepository, "123", "Jim");
+        root = ArgumentTestUtil.createPublishedTriple(argumentService, jim);
+        draft = argumentService.makeDraft(jim.getUser().getNodeId(), jim.getStableId(), root.getId()).getEditedNode();
+    }
+
+    @Test
+    public void publishingLeavesNothingToBackfill() throws Exception {
+        Assert.assertEquals(0, groundingBackfill.backfill());
+    }
+
+    @Test
+    public void backfillFlagsOldPublicNodes() throws Exception {
+        session.query("MATCH (n:ArgumentNode) REMOVE n.grounded", Collections.emptyMap());
+
+        Assert.assertEquals(3, groundingBackfill.backfill()); // The published triple, but not the draft.
+        Assert.assertEquals(0, groundingBackfill.backfill());
+
+        session.clear();
+        Assert.assertTrue(session.load(ArgumentNode.class, root.getId()).isGrounded());
+        Assert.assertFalse(session.load(ArgumentNode.class, draft.getId()).isGrounded());
+    }
+}
@@ -0,0 +1,72 @@
+package com.nodestand.service.argument;
+
+import com.nodestand.nodes.ArgumentBody;
+import com.nodestand.nodes.Author;
+import com.nodestand.nodes.assertion.AssertionNode;
+import com.nodestand.nodes.interpretation.InterpretationNode;
+import com.nodestand.nodes.repository.UserRepository;
+import com.nodestand.test.Neo4jIntegrationTest;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.neo4j.ogm.session.Session;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+public class LinkIndexBackfillTest extends Neo4jIntegrationTest {
+
+    @Autowired
+    private ArgumentService argumentService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private LinkIndexBackfill linkIndexBackfill;
+
+    @Autowired
+    private Session session;
+
+    private AssertionNode root;
+    private String interpretationMajorVersion;
+
+    @Before
+    public void setup() throws Exception {
+        Author jim = ArgumentTestUtil.registerUser(userRepository, "123", "Jim");
+        root = ArgumentTestUtil.createPublishedTriple(argumentService, jim);
+        InterpretationNode interpretation = (InterpretationNode) root.getSupportingNodes().iterator().next();
+        interpretationMajorVersion = interpretation.getBody().getMajorVersion().getStableId();
+    }
+
+    @Test
+    public void publishingStoresTheIndex() throws Exception {
+        Assert.assertEquals(0, linkIndexBackfill.backfill());
+
+        session.clear();
+        ArgumentBody body = argumentService.getFullDetail(root.getStableId()).getBody();
+
+        Assert.assertEquals(Collections.singleton(interpretationMajorVersion), body.getMajorVersionsFromBodyText());
+    }
+
+    @Test
+    public void backfillIndexesOldBodies() throws Exception {
+        session.query("MATCH (b:ArgumentBody) REMOVE b.linkedMajorVersions", Collections.emptyMap());
+
+        Assert.assertEquals(2, linkIndexBackfill.backfill()); // The assertion and the interpretation.
+        Assert.assertEquals(0, linkIndexBackfill.backfill());
+
+        Set<String> stored = new HashSet<>();
+        for (Map<String, Object> row : session.query(
+                "MATCH (b:AssertionBody) UNWIND b.linkedMajorVersions AS mv RETURN mv", Collections.emptyMap()).queryResults()) {
+            stored.add((String) row.get("mv"));
+        }
+        Assert.assertEquals(Collections.singleton(interpretationMajorVersion), stored);
+    }
+}
@@ -0,0 +1,165 @@
+package com.nodestand.service.argument;
+
+import com.nodestand.nodes.Author;
+import com.nodestand.nodes.ConcurrentEditException;
+import com.nodestand.nodes.NodeRulesException;
+import com.nodestand.nodes.assertion.AssertionNode;
+import com.nodestand.nodes.repository.UserRepository;
+import com.nodestand.service.Neo4jDatabaseCleaner;
+import com.nodestand.test.ConcurrentIntegrationContext;
+import com.nodestand.test.ConcurrentRunner;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.neo4j.ogm.session.Session;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Many editors publishing their drafts of the same node at once, each publish in its own transaction the way a request
+ * would be. Only one draft of a version can be published over it, so the others are refused and their editors draft
+ * the new version and try again, until every edit has landed. Every publish must get a minor version of its own.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = {ConcurrentIntegrationContext.class})
+@ActiveProfiles({"concurrent"})
+public class PublishConcurrencyTest {
+
+    private static final int EDITORS = 12;
+    private static final int THREADS = 6;
+    private static final int ATTEMPTS = 20; // Drafting the root while others publish over it fails often.
+
+    @Autowired
+    private ArgumentService argumentService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private GraphCache graphCache;
+
+    @Autowired
+    private Neo4jDatabaseCleaner cleaner;
+
+    @Autowired
+    private Session session;
+
+    private AssertionNode rootNode;
+    private String majorVersionStableId;
+    private final List<Author> editors = new ArrayList<>();
+
+    @Before
+    public void setup() throws Exception {
+        Author author = ArgumentTestUtil.registerUser(userRepository, "author", "Author");
+        rootNode = ArgumentTestUtil.createPublishedTriple(argumentService, author);
+        majorVersionStableId = rootNode.getBody().getMajorVersion().getStableId();
+        for (int i = 0; i < EDITORS; i++) {
+            editors.add(ArgumentTestUtil.registerUser(userRepository, "editor" + i, "Editor " + i));
+        }
+        session.clear();
+    }
+
+    @After
+    public void cleanup() {
+        cleaner.cleanDb();
+        graphCache.clear();
+    }
+
+    @Test
+    public void concurrentPublishesGetDistinctMinorVersions() throws Exception {
+        Map<Author, AssertionNode> drafts = new ConcurrentHashMap<>();
+        for (Author editor : editors) {
+            drafts.put(editor, draft(editor));
+        }
+
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        Set<Author> outdated = ConcurrentHashMap.newKeySet();
+        AtomicInteger conflicts = new AtomicInteger();
+        ConcurrentRunner.run(editors, THREADS, ATTEMPTS, session, editor -> {
+            while (true) {
+                if (outdated.contains(editor)) {
+                    // Somebody else published first. Redo the edit on top of theirs, all or nothing.
+                    AssertionNode stale = drafts.get(editor);
+                    drafts.put(editor, transaction.execute(status -> {
+                        try {
+                            argumentService.discardDraft(editor.getUser().getNodeId(), stale.getStableId());
+                            return draft(editor);
+                        } catch (Exception e) {
+                            throw new RuntimeException(e);
+                        }
+                    }));
+                    outdated.remove(editor);
+                }
+                AssertionNode publishing = drafts.get(editor);
+                try {
+                    transaction.execute(status -> {
+                        try {
+                            argumentService.publishNode(editor.getUser().getNodeId(), publishing.getId(), null);
+                        } catch (Exception e) {
+                            throw new RuntimeException(e);
+                        }
+                        return null;
+                    });
+                    return;
+                } catch (RuntimeException e) {
+                    if (!(e.getCause() instanceof ConcurrentEditException)) {
+                        throw e;
+                    }
+                    conflicts.incrementAndGet();
+                    outdated.add(editor);
+                }
+                session.clear();
+            }
+        });
+
+        // Every draft was made from the original version, so all but the first to publish were refused at least once.
+        Assert.assertTrue(conflicts.get() >= EDITORS - 1);
+
+        // The original version plus one for each editor, with no gaps and no repeats.
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i <= EDITORS; i++) {
+            expected.add(i);
+        }
+        Assert.assertEquals(expected, minorVersions());
+    }
+
+    /**
+     * Makes a draft of the root as it is now, with the editor's own title.
+     */
+    private AssertionNode draft(Author editor) throws NodeRulesException {
+        long userId = editor.getUser().getNodeId();
+        AssertionNode draft = (AssertionNode) argumentService.makeDraft(userId, editor.getStableId(),
+                rootNode.getId()).getEditedNode();
+        List<Long> links = new ArrayList<>();
+        links.add(rootNode.getSupportingNodes().iterator().next().getId());
+        argumentService.editAssertion(userId, draft.getId(), "Edit by " + editor.getStableId(), "Q",
+                rootNode.getBody().getBody(), links, null);
+        session.clear();
+        return draft;
+    }
+
+    private List<Integer> minorVersions() {
+        session.clear();
+        List<Integer> minorVersions = new ArrayList<>();
+        Map<String, Object> params = Collections.singletonMap("id", majorVersionStableId);
+        for (Map<String, Object> row : session.query(
+                "match (:MajorVersion {stableId: {id}})<-[:VERSION_OF]-(body:ArgumentBody) where body.isPublic" +
+                        " return body.minorVersion as minorVersion order by minorVersion", params)) {
+            minorVersions.add(((Number) row.get("minorVersion")).intValue());
+        }
+        return minorVersions;
+    }
+}
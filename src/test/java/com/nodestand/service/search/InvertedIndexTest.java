@@ -0,0 +1,175 @@
+package com.nodestand.service.search;
+
+import com.nodestand.nodes.NodeInputException;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class InvertedIndexTest {
+
+    private static final long OWNER = 7L;
+
+    private InvertedIndex index;
+
+    @Before
+    public void setup() {
+        index = new InvertedIndex();
+        put(1, "Climate change is real", "Original", "The {{[abc123]evidence}} is overwhelming.", true);
+        put(2, "Tax policy", "Climate angle", "Carbon taxes and the climate.", true);
+        put(3, "Housing costs", "Original", "Nothing about the weather.", true);
+        put(4, "Climate draft", "Original", "Still writing this.", false);
+    }
+
+    @Test
+    public void prefixAndCaseInsensitive() throws Exception {
+        Assert.assertEquals(ids(1, 2), sorted(search("CLIM", null)));
+        Assert.assertEquals(ids(3), search("hous", null));
+    }
+
+    @Test
+    public void everyTokenMustMatch() throws Exception {
+        Assert.assertEquals(ids(2), search("climate tax", null));
+        Assert.assertEquals(ids(), search("climate housing", null));
+    }
+
+    @Test
+    public void titleMatchesOutrankBodyMatches() throws Exception {
+        put(5, "Unrelated", "Original", "climate climate", true);
+        List<Long> hits = search("climate", null);
+        Assert.assertTrue(hits.indexOf(1L) < hits.indexOf(5L));
+    }
+
+    @Test
+    public void exactTermsOutrankLongerTerms() throws Exception {
+        put(6, "Taxes", "Original", "", true);
+        put(7, "Tax", "Original", "", true);
+        Assert.assertEquals(Long.valueOf(7), search("tax", null).get(0));
+    }
+
+    @Test
+    public void draftsAreOnlyVisibleToTheirOwner() throws Exception {
+        Assert.assertEquals(ids(1, 2), sorted(search("climate", null)));
+        Assert.assertEquals(ids(1, 2), sorted(search("climate", 99L)));
+        Assert.assertTrue(search("climate", OWNER).contains(4L));
+    }
+
+    @Test
+    public void linkLabelsAreIndexedButNotTheirIds() throws Exception {
+        Assert.assertEquals(ids(1), search("evidence", null));
+        Assert.assertEquals(ids(), search("abc123", null));
+    }
+
+    @Test
+    public void replaceAndRemove() throws Exception {
+        put(3, "Climate housing", "Original", "", true);
+        Assert.assertEquals(ids(3), search("housing", null));
+        Assert.assertTrue(search("climate", null).contains(3L));
+
+        index.remove(3);
+        Assert.assertEquals(ids(), search("housing", null));
+        Assert.assertEquals(3, index.size());
+    }
+
+    @Test
+    public void cursorWalksEveryHitOnce() throws Exception {
+        for (long id = 10; id < 30; id++) {
+            put(id, "Paging test " + id, "Original", "", true);
+        }
+        List<Long> all = search("paging", null);
+        Assert.assertEquals(20, all.size());
+
+        List<Long> walked = new ArrayList<>();
+        String cursor = null;
+        do {
+            InvertedIndex.Page page = index.search("paging", null, null, cursor, 6);
+            Assert.assertTrue(page.hits.size() <= 6);
+            walked.addAll(ids(page.hits));
+            cursor = page.nextCursor;
+        } while (cursor != null);
+
+        Assert.assertEquals(all, walked);
+    }
+
+    @Test
+    public void lastPageHasNoCursor() throws Exception {
+        Assert.assertNull(index.search("climate", null, null, null, 2).nextCursor);
+        Assert.assertNotNull(index.search("climate", null, null, null, 1).nextCursor);
+    }
+
+    @Test(expected = NodeInputException.class)
+    public void garbageCursorIsRejected() throws Exception {
+        index.search("climate", null, null, "not a cursor", 10);
+    }
+
+    @Test
+    public void onlyTheBestBodyOfEachMajorVersion() throws Exception {
+        index.put(new InvertedIndex.Document(40, "assertion", "shared", "Zoning rules", "Original", true, OWNER), "");
+        index.put(new InvertedIndex.Document(41, "assertion", "shared", "Zoning", "Original", true, OWNER), "zoning");
+        index.put(new InvertedIndex.Document(42, "assertion", "other", "Zoning elsewhere", "Original", true, OWNER), "");
+
+        Assert.assertEquals(ids(41, 42), sorted(search("zoning", null)));
+
+        // The collapse happens before paging, so the other version doesn't turn up on a later page.
+        InvertedIndex.Page first = index.search("zoning", null, null, null, 1);
+        InvertedIndex.Page second = index.search("zoning", null, null, first.nextCursor, 1);
+        Assert.assertEquals(ids(41), ids(first.hits));
+        Assert.assertEquals(ids(42), ids(second.hits));
+        Assert.assertNull(second.nextCursor);
+    }
+
+    @Test
+    public void typeFilter() throws Exception {
+        index.put(new InvertedIndex.Document(50, "source", "mv50", "Climate data", null, true, OWNER), null);
+
+        Assert.assertEquals(ids(50), ids(index.search("climate", null, Collections.singleton("source"), null, 10).hits));
+        Assert.assertEquals(ids(1, 2), sorted(ids(index.search("climate", null,
+                Arrays.asList("assertion", "interpretation"), null, 10).hits)));
+        Assert.assertEquals(ids(), ids(index.search("climate", null, Collections.emptyList(), null, 10).hits));
+    }
+
+    @Test
+    public void survivesCompaction() throws Exception {
+        for (long id = 100; id < 3100; id++) {
+            put(id, "Bulk " + (id % 2 == 0 ? "even" : "odd"), "Original", "", true);
+        }
+        for (long id = 100; id < 2600; id++) {
+            index.remove(id);
+        }
+
+        Assert.assertEquals(504, index.size());
+        Assert.assertEquals(250, index.search("bulk even", null, null, null, 1000).hits.size());
+        Assert.assertEquals(ids(1, 2), sorted(search("climate", null)));
+    }
+
+    @Test
+    public void regexCharactersAreJustText() throws Exception {
+        Assert.assertEquals(ids(), search(".*", null));
+        Assert.assertEquals(ids(1, 2), sorted(search("climate.*", null)));
+    }
+
+    private List<Long> search(String query, Long searcherId) throws NodeInputException {
+        return ids(index.search(query, searcherId, null, null, 100).hits);
+    }
+
+    private static List<Long> ids(List<InvertedIndex.Document> documents) {
+        return documents.stream().map(d -> d.bodyId).collect(Collectors.toList());
+    }
+
+    private static List<Long> ids(long... ids) {
+        return Arrays.stream(ids).boxed().collect(Collectors.toList());
+    }
+
+    private static List<Long> sorted(List<Long> ids) {
+        return ids.stream().sorted().collect(Collectors.toList());
+    }
+
+    private void put(long id, String title, String qualifier, String body, boolean isPublic) {
+        index.put(new InvertedIndex.Document(id, "assertion", "mv" + id, title, qualifier, isPublic, OWNER), body);
+    }
+}
@@ -0,0 +1,128 @@
+package com.nodestand.service.search;
+
+import com.nodestand.nodes.Author;
+import com.nodestand.nodes.NodeInputException;
+import com.nodestand.nodes.assertion.AssertionNode;
+import com.nodestand.nodes.repository.UserRepository;
+import com.nodestand.service.argument.ArgumentService;
+import com.nodestand.service.argument.ArgumentTestUtil;
+import com.nodestand.test.Neo4jIntegrationTest;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+public class SearchIndexTest extends Neo4jIntegrationTest {
+
+    @Autowired
+    private ArgumentService argumentService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private SearchIndex searchIndex;
+
+    private Author jim;
+    private Author bob;
+
+    @Before
+    public void setup() {
+        // Other test classes share the database and purge it behind the index's back.
+        searchIndex.clear();
+        jim = ArgumentTestUtil.registerUser(userRepository, "123", "Jim");
+        bob = ArgumentTestUtil.registerUser(userRepository, "456", "Bob");
+    }
+
+    @Test
+    public void draftsBecomeVisibleToEveryoneOnPublish() throws Exception {
+        AssertionNode draft = ArgumentTestUtil.createDraftTriple(argumentService, jim);
+
+        Assert.assertEquals(1, search("assertion", jim).size());
+        Assert.assertEquals(0, search("assertion", bob).size());
+
+        argumentService.publishNode(jim.getUser().getNodeId(), draft.getId(), null);
+
+        List<String> titles = search("assertion", bob);
+        Assert.assertEquals(1, titles.size());
+        Assert.assertEquals("Assertion Title", titles.get(0));
+        Assert.assertEquals(1, search("interp", bob).size());
+    }
+
+    @Test
+    public void editsAreReindexed() throws Exception {
+        AssertionNode draft = ArgumentTestUtil.createDraftTriple(argumentService, jim);
+        Long interpretationId = draft.getSupportingNodes().iterator().next().getId();
+
+        argumentService.editAssertion(jim.getUser().getNodeId(), draft.getId(), "Renamed claim", "Original",
+                draft.getBody().getBody(), Collections.singletonList(interpretationId), null);
+
+        Assert.assertEquals(0, search("assertion", jim).size());
+        Assert.assertEquals(1, search("renamed", jim).size());
+    }
+
+    @Test
+    public void discardedDraftsAreRemoved() throws Exception {
+        AssertionNode draft = ArgumentTestUtil.createDraftTriple(argumentService, jim);
+
+        argumentService.discardDraft(jim.getUser().getNodeId(), draft.getStableId());
+
+        Assert.assertEquals(0, search("assertion", jim).size());
+    }
+
+    @Test
+    public void rebuildLoadsEverythingFromTheDatabase() throws Exception {
+        ArgumentTestUtil.createPublishedTriple(argumentService, jim);
+        ArgumentTestUtil.createDraftTriple(argumentService, bob);
+        searchIndex.clear();
+
+        searchIndex.rebuild();
+
+        Assert.assertEquals(1, search("assertion", jim).size());
+        Assert.assertEquals(2, search("assertion", bob).size());
+        Assert.assertEquals(1, search("src", jim).size());
+    }
+
+    @Test
+    public void draftsAreOnlySuggestedToTheirOwner() throws Exception {
+        AssertionNode draft = ArgumentTestUtil.createDraftTriple(argumentService, jim);
+        Assert.assertEquals(1, suggest("assert", jim, "assertion").size());
+        Assert.assertEquals(0, suggest("assert", bob, "assertion").size());
+        Assert.assertEquals(0, suggest("assert", jim, "source").size());
+
+        argumentService.publishNode(jim.getUser().getNodeId(), draft.getId(), null);
+
+        List<TitleTrie.Title> suggestions = suggest("assert", bob, "assertion", "source");
+        Assert.assertEquals(1, suggestions.size());
+        Assert.assertEquals(draft.getBody().getMajorVersion().getStableId(), suggestions.get(0).getMajorVersionStableId());
+        Assert.assertEquals(1, suggest("assert", jim, "assertion").size());
+        Assert.assertEquals(1, suggest("sour", bob, "source").size());
+
+        AssertionNode secondDraft = ArgumentTestUtil.createDraftTriple(argumentService, bob);
+        searchIndex.clear();
+        searchIndex.rebuild();
+        Assert.assertEquals(1, suggest("assert", jim, "assertion").size());
+        Assert.assertEquals(2, suggest("assert", bob, "assertion").size());
+
+        argumentService.discardDraft(bob.getUser().getNodeId(), secondDraft.getStableId());
+        Assert.assertEquals(1, suggest("assert", bob, "assertion").size());
+    }
+
+    private List<TitleTrie.Title> suggest(String prefix, Author searcher, String... types) {
+        return searchIndex.suggest(prefix, searcher.getUser().getNodeId(), Arrays.asList(types), 10);
+    }
+
+    private List<String> search(String query, Author searcher) throws NodeInputException {
+        return searchIndex.search(query, searcher.getUser().getNodeId(), null, null, 50).hits.stream()
+                .map(hit -> hit.title)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,116 @@
+package com.nodestand.service.search;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class TitleTrieTest {
+
+    private TitleTrie trie;
+
+    @Before
+    public void setup() {
+        trie = new TitleTrie(Arrays.asList(
+                title(1, "mv1", "Climate change is real"),
+                title(2, "mv2", "Carbon taxes work"),
+                title(3, "mv3", "Climate models are too hot"),
+                title(4, "mv4", "Housing, zoning & climate")));
+    }
+
+    @Test
+    public void matchesTheStartOfAnyWord() {
+        Assert.assertEquals(ids(1, 3, 4), sorted(suggest("clim")));
+        Assert.assertEquals(ids(1), suggest("CHANGE"));
+        Assert.assertEquals(ids(4), suggest("zoning climate"));
+        Assert.assertEquals(ids(), suggest("limate"));
+        Assert.assertEquals(ids(), suggest("  "));
+    }
+
+    @Test
+    public void titleStartsAndShortTitlesRankFirst() {
+        Assert.assertEquals(ids(1, 3, 4), suggest("climate"));
+    }
+
+    @Test
+    public void newerBodyReplacesItsMajorVersion() {
+        trie.put(title(5, "mv1", "Weather change is real"));
+        Assert.assertEquals(ids(3, 4), suggest("climate"));
+        Assert.assertEquals(ids(5), suggest("weather"));
+
+        // A late arriving older body doesn't win.
+        trie.put(title(1, "mv1", "Climate change is real"));
+        Assert.assertEquals(ids(5), suggest("weather"));
+        Assert.assertEquals(4, trie.size());
+    }
+
+    @Test
+    public void removeForgetsEveryWord() {
+        trie.remove("mv4");
+        Assert.assertEquals(ids(), suggest("housing"));
+        Assert.assertEquals(ids(1, 3), suggest("climate"));
+        Assert.assertEquals(3, trie.size());
+    }
+
+    @Test
+    public void longPrefixesAreCheckedPastTheCutoff() {
+        trie.put(title(10, "mv10", "The quick brown fox jumps over the lazy dog"));
+        trie.put(title(11, "mv11", "The quick brown fox jumps over the lazy cat"));
+        Assert.assertEquals(ids(10), suggest("the quick brown fox jumps over the lazy d"));
+        Assert.assertEquals(ids(10, 11), sorted(suggest("quick brown fox jumps over")));
+    }
+
+    @Test
+    public void limitAndOneEntryPerTitle() {
+        List<TitleTrie.Title> titles = new ArrayList<>();
+        for (long id = 100; id < 130; id++) {
+            titles.add(title(id, "mv" + id, "Tax tax tax " + id));
+        }
+        trie = new TitleTrie(titles);
+
+        List<Long> hits = suggest("tax");
+        Assert.assertEquals(TitleTrie.MAX_SUGGESTIONS, hits.size());
+        Assert.assertEquals(hits.size(), hits.stream().distinct().count());
+        Assert.assertEquals(3, ids(trie.suggest("tax", 3)).size());
+    }
+
+    @Test
+    public void incrementalPutsMatchBulkLoad() {
+        TitleTrie incremental = new TitleTrie();
+        List<TitleTrie.Title> titles = new ArrayList<>();
+        for (long id = 0; id < 200; id++) {
+            TitleTrie.Title title = title(id, "mv" + (id % 150), "Topic " + (id % 7) + " about " + Long.toString(id, 36));
+            titles.add(title);
+            incremental.put(title);
+        }
+        TitleTrie bulk = new TitleTrie(titles);
+
+        for (String prefix : Arrays.asList("t", "topic", "topic 3", "about", "a", "1", "z")) {
+            Assert.assertEquals(prefix, ids(bulk.suggest(prefix, 10)), ids(incremental.suggest(prefix, 10)));
+        }
+    }
+
+    private List<Long> suggest(String prefix) {
+        return ids(trie.suggest(prefix, TitleTrie.MAX_SUGGESTIONS));
+    }
+
+    private static List<Long> ids(List<TitleTrie.Match> matches) {
+        return matches.stream().map(m -> m.title.getBodyId()).collect(Collectors.toList());
+    }
+
+    private static List<Long> ids(long... ids) {
+        return Arrays.stream(ids).boxed().collect(Collectors.toList());
+    }
+
+    private static List<Long> sorted(List<Long> ids) {
+        return ids.stream().sorted().collect(Collectors.toList());
+    }
+
+    private static TitleTrie.Title title(long bodyId, String majorVersion, String title) {
+        return new TitleTrie.Title(bodyId, bodyId + 1000, majorVersion, "assertion", title, "Original");
+    }
+}
@@ -0,0 +1,108 @@
+package com.nodestand.service.vote;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+public class DecayingTopKTest {
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    @Test
+    public void countsHalveEveryHalfLife() {
+        DecayingTopK topK = new DecayingTopK(10, 1, TimeUnit.HOURS);
+        topK.add("a", 0);
+        topK.add("a", 0);
+
+        Assert.assertEquals(2, topK.score("a", 0), 1e-9);
+        Assert.assertEquals(1, topK.score("a", HOUR), 1e-9);
+        Assert.assertEquals(0.5, topK.score("a", 2 * HOUR), 1e-9);
+        Assert.assertEquals(0, topK.score("b", HOUR), 0);
+    }
+
+    @Test
+    public void recentVotesOutrankOlderOnes() {
+        DecayingTopK topK = new DecayingTopK(10, 1, TimeUnit.HOURS);
+        for (int i = 0; i < 3; i++) {
+            topK.add("old", 0);
+        }
+        topK.add("new", 2 * HOUR);
+        topK.add("new", 2 * HOUR);
+
+        Assert.assertEquals(keys("new", "old"), keys(topK.top(10, 2 * HOUR)));
+        Assert.assertEquals(keys("new"), keys(topK.top(1, 2 * HOUR)));
+    }
+
+    @Test
+    public void frequentKeysSurviveEviction() {
+        DecayingTopK topK = new DecayingTopK(5, 1, TimeUnit.DAYS);
+        for (int i = 0; i < 1000; i++) {
+            topK.add("hot", i);
+            topK.add("cold" + i, i);
+        }
+
+        Assert.assertEquals(5, topK.size());
+        List<DecayingTopK.Trend> top = topK.top(1, 1000);
+        Assert.assertEquals("hot", top.get(0).key);
+        Assert.assertTrue(top.get(0).score - top.get(0).error <= 1000);
+        Assert.assertTrue(top.get(0).score > 999.9);
+    }
+
+    @Test
+    public void landmarkMovesWithoutChangingScores() {
+        DecayingTopK topK = new DecayingTopK(10, 1, TimeUnit.MINUTES);
+        topK.add("a", 0);
+        topK.add("b", 0);
+        topK.add("b", 0);
+
+        // Far enough along that the weights have to be scaled down.
+        long later = TimeUnit.MINUTES.toMillis(100);
+        topK.add("a", later);
+
+        Assert.assertEquals(1, topK.score("a", later), 1e-9);
+        Assert.assertEquals(2 * Math.pow(2, -100), topK.score("b", later), 1e-40);
+        Assert.assertEquals(keys("a", "b"), keys(topK.top(10, later)));
+    }
+
+    @Test
+    public void concurrentAddsAreAllCounted() throws InterruptedException {
+        DecayingTopK topK = new DecayingTopK(100, 1, TimeUnit.DAYS);
+        int threads = 4;
+        int adds = 5000;
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < adds; i++) {
+                    topK.add("k" + (i % 10), 0);
+                }
+            });
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        double total = topK.top(100, 0).stream().mapToDouble(t -> t.score).sum();
+        Assert.assertEquals(threads * adds, total, 1e-6);
+    }
+
+    private static List<String> keys(String... keys) {
+        return Arrays.asList(keys);
+    }
+
+    private static List<String> keys(List<DecayingTopK.Trend> trends) {
+        return trends.stream().map(t -> t.key).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,119 @@
+package com.nodestand.service.vote;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+public class ScoreEventStoreTest {
+
+    private static final long NOW = System.currentTimeMillis();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ScoreEventStore store;
+
+    @Before
+    public void setup() throws Exception {
+        store = open(1 << 20);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        store.close();
+    }
+
+    @Test
+    public void queriesByRecipientAndTime() throws Exception {
+        store.write(Arrays.asList(event("alice", NOW - 3000, 1), event("bob", NOW - 2000, 2), event("alice", NOW - 1000, 3)));
+        store.write(Arrays.asList(event("alice", NOW, 4)));
+
+        Assert.assertEquals(Arrays.asList(1, 3, 4), points(store.query("alice", 0, Long.MAX_VALUE)));
+        Assert.assertEquals(Arrays.asList(3), points(store.query("alice", NOW - 1000, NOW)));
+        Assert.assertEquals(Arrays.asList(2), points(store.query("bob", 0, Long.MAX_VALUE)));
+        Assert.assertEquals(Arrays.asList(), points(store.query("carol", 0, Long.MAX_VALUE)));
+
+        TimestampedScoreLog read = store.query("bob", 0, Long.MAX_VALUE).get(0);
+        Assert.assertEquals("granter", read.granterId);
+        Assert.assertEquals(Long.valueOf(NOW - 2000), read.timestamp);
+    }
+
+    @Test
+    public void rollsSegmentsAndReopens() throws Exception {
+        store.close();
+        store = open(200);
+        for (int i = 0; i < 20; i++) {
+            store.write(Arrays.asList(event(i % 2 == 0 ? "alice" : "bob", NOW + i, i)));
+        }
+        Assert.assertTrue(segmentFiles().length > 5);
+
+        store.close();
+        store = open(200);
+        store.write(Arrays.asList(event("alice", NOW + 100, 100)));
+
+        Assert.assertEquals(Arrays.asList(0, 2, 4, 6, 8, 10, 12, 14, 16, 18, 100), points(store.query("alice", 0, Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void partialLineFromACrashIsDropped() throws Exception {
+        store.write(Arrays.asList(event("alice", NOW, 1)));
+        store.close();
+        try (FileOutputStream out = new FileOutputStream(segmentFiles()[0], true)) {
+            out.write("{\"recipientId\":\"alice\",\"poi".getBytes("UTF-8"));
+        }
+
+        store = open(1 << 20);
+        store.write(Arrays.asList(event("alice", NOW + 1, 2)));
+
+        Assert.assertEquals(Arrays.asList(1, 2), points(store.query("alice", 0, Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void expiredSegmentsAreDeleted() throws Exception {
+        long old = NOW - TimeUnit.DAYS.toMillis(8);
+        store.write(Arrays.asList(event("alice", old, 1)));
+        // More than a day later, so this goes to a new segment and the old one expires.
+        store.write(Arrays.asList(event("alice", NOW, 2)));
+
+        Assert.assertEquals(1, segmentFiles().length);
+        Assert.assertEquals(Arrays.asList(2), points(store.query("alice", 0, Long.MAX_VALUE)));
+    }
+
+    private ScoreEventStore open(long maxSegmentBytes) throws IOException {
+        ScoreEventStore opened = new ScoreEventStore(folder.getRoot().getPath(), maxSegmentBytes, 7);
+        opened.open();
+        return opened;
+    }
+
+    private File[] segmentFiles() {
+        return folder.getRoot().listFiles((dir, name) -> name.endsWith(".jsonl"));
+    }
+
+    private static List<Integer> points(List<TimestampedScoreLog> events) {
+        return events.stream().map(e -> e.points).collect(Collectors.toList());
+    }
+
+    private static TimestampedScoreLog event(String recipientId, long timestamp, int points) {
+        TimestampedScoreLog event = new TimestampedScoreLog();
+        event.recipientId = recipientId;
+        event.granterId = "granter";
+        event.nodeId = "node";
+        event.nodeTitle = "Title";
+        event.points = points;
+        event.voteType = "GREAT";
+        event.isNegation = false;
+        event.timestamp = timestamp;
+        return event;
+    }
+}
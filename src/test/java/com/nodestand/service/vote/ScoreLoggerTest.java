@@ -0,0 +1,80 @@
+package com.nodestand.service.vote;
+
+import com.nodestand.nodes.vote.VoteType;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class ScoreLoggerTest {
+
+    private ScoreLogger scoreLogger;
+
+    private final List<TimestampedScoreLog> received = new ArrayList<>();
+    private final ScoreEventSink recorder = batch -> received.addAll(batch);
+
+    @After
+    public void tearDown() throws Exception {
+        scoreLogger.stop();
+    }
+
+    @Test
+    public void dropsAndCountsWhenTheBufferIsFull() throws Exception {
+        scoreLogger = new ScoreLogger(4, 2, Collections.singletonList(recorder));
+
+        for (int i = 0; i < 6; i++) {
+            log(i);
+        }
+        ScoreLogger.Stats stats = scoreLogger.getStats();
+        Assert.assertEquals(4, stats.published);
+        Assert.assertEquals(2, stats.dropped);
+        Assert.assertEquals(4, stats.pending);
+
+        scoreLogger.start();
+        Assert.assertTrue(scoreLogger.awaitWritten(10, TimeUnit.SECONDS));
+
+        stats = scoreLogger.getStats();
+        Assert.assertEquals(4, stats.written);
+        Assert.assertEquals("author3", received.get(3).recipientId);
+        Assert.assertEquals(0, stats.pending);
+        Assert.assertEquals(2, stats.batches);
+    }
+
+    @Test
+    public void stopWritesWhatIsLeft() throws Exception {
+        scoreLogger = new ScoreLogger(1024, 16, Collections.singletonList(recorder));
+        scoreLogger.start();
+        for (int i = 0; i < 500; i++) {
+            log(i);
+        }
+        scoreLogger.stop();
+
+        Assert.assertEquals(500, scoreLogger.getStats().written);
+        Assert.assertEquals(500, received.size());
+    }
+
+    @Test
+    public void aFailingSinkDoesNotStopTheOthers() throws Exception {
+        ScoreEventSink broken = batch -> {
+            throw new IOException("disk full");
+        };
+        scoreLogger = new ScoreLogger(16, 16, Arrays.asList(broken, recorder));
+        log(1);
+        scoreLogger.start();
+        Assert.assertTrue(scoreLogger.awaitWritten(10, TimeUnit.SECONDS));
+
+        Assert.assertEquals(1, scoreLogger.getStats().failed);
+        Assert.assertEquals(1, received.size());
+        Assert.assertNotNull(received.get(0).timestamp);
+    }
+
+    private void log(int i) {
+        scoreLogger.logScore("author" + i, "user", "node", "Title", 1, VoteType.GREAT, false);
+    }
+}
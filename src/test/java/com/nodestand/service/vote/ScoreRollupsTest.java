@@ -0,0 +1,104 @@
+package com.nodestand.service.vote;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+public class ScoreRollupsTest {
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+    private static final long NOW = System.currentTimeMillis();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ScoreEventStore store;
+    private ScoreRollups rollups;
+
+    @Before
+    public void setup() throws Exception {
+        store = new ScoreEventStore(folder.getRoot().getPath(), 1 << 20, 84);
+        store.open();
+        rollups = new ScoreRollups(store);
+        rollups.rebuild();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        store.close();
+    }
+
+    @Test
+    public void dayBucketsEndToday() throws Exception {
+        write(event("alice", NOW, 5), event("alice", NOW, -1), event("alice", NOW - DAY, 3),
+                event("alice", NOW - 40 * DAY, 100));
+
+        ScoreRollups.History history = rollups.getHistory("alice");
+        Assert.assertEquals(ScoreRollups.DAYS, history.days.length);
+        Assert.assertEquals(4, history.days[ScoreRollups.DAYS - 1]);
+        Assert.assertEquals(3, history.days[ScoreRollups.DAYS - 2]);
+        Assert.assertEquals(7, Arrays.stream(history.days).sum());
+        Assert.assertTrue(history.dayStart <= NOW - (ScoreRollups.DAYS - 1) * DAY);
+
+        // The old event is past the day buckets but within the week buckets.
+        Assert.assertEquals(107, Arrays.stream(history.weeks).sum());
+    }
+
+    @Test
+    public void unknownAuthorHasEmptyHistory() {
+        ScoreRollups.History history = rollups.getHistory("nobody");
+        Assert.assertEquals(0, Arrays.stream(history.days).sum());
+        Assert.assertEquals(ScoreRollups.WEEKS, history.weeks.length);
+    }
+
+    @Test
+    public void leaderboardRanksThisPeriodOnly() throws Exception {
+        write(event("alice", NOW, 5), event("bob", NOW, 8), event("carol", NOW, 2), event("alice", NOW, 4),
+                event("dave", NOW - 20 * DAY, 50));
+
+        Assert.assertEquals(Arrays.asList("alice", "bob", "carol"), authors(rollups.getLeaderboard(ScoreRollups.Period.DAY, 10)));
+        Assert.assertEquals(9, rollups.getLeaderboard(ScoreRollups.Period.WEEK, 10).get(0).points);
+        Assert.assertEquals(Collections.singletonList("alice"), authors(rollups.getLeaderboard(ScoreRollups.Period.WEEK, 1)));
+    }
+
+    @Test
+    public void rebuildsFromTheStore() throws Exception {
+        write(event("alice", NOW, 5), event("bob", NOW - 2 * DAY, 8));
+
+        ScoreRollups rebuilt = new ScoreRollups(store);
+        rebuilt.rebuild();
+
+        Assert.assertArrayEquals(rollups.getHistory("alice").days, rebuilt.getHistory("alice").days);
+        Assert.assertArrayEquals(rollups.getHistory("bob").weeks, rebuilt.getHistory("bob").weeks);
+        Assert.assertEquals(authors(rollups.getLeaderboard(ScoreRollups.Period.DAY, 10)),
+                authors(rebuilt.getLeaderboard(ScoreRollups.Period.DAY, 10)));
+    }
+
+    private void write(TimestampedScoreLog... events) throws Exception {
+        // The same way the score logger delivers them.
+        store.write(Arrays.asList(events));
+        rollups.write(Arrays.asList(events));
+    }
+
+    private static List<String> authors(List<ScoreRollups.Standing> standings) {
+        return standings.stream().map(s -> s.authorStableId).collect(Collectors.toList());
+    }
+
+    private static TimestampedScoreLog event(String recipientId, long timestamp, int points) {
+        TimestampedScoreLog event = new TimestampedScoreLog();
+        event.recipientId = recipientId;
+        event.points = points;
+        event.voteType = "GREAT";
+        event.timestamp = timestamp;
+        return event;
+    }
+}
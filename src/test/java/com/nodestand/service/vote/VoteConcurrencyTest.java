@@ -0,0 +1,151 @@
+package com.nodestand.service.vote;
+
+import com.nodestand.nodes.Author;
+import com.nodestand.nodes.assertion.AssertionNode;
+import com.nodestand.nodes.repository.UserRepository;
+import com.nodestand.nodes.vote.VoteType;
+import com.nodestand.service.Neo4jDatabaseCleaner;
+import com.nodestand.service.argument.ArgumentService;
+import com.nodestand.service.argument.ArgumentTestUtil;
+import com.nodestand.service.argument.GraphCache;
+import com.nodestand.test.ConcurrentIntegrationContext;
+import com.nodestand.test.ConcurrentRunner;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.neo4j.ogm.session.Session;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+
+/**
+ * Many users voting on the same node at once, each vote in its own transaction the way a request would be. The
+ * counters on the MajorVersion must end up matching the votes that were actually stored, and the author must get
+ * points for every one of them.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = {ConcurrentIntegrationContext.class})
+@ActiveProfiles({"concurrent"})
+public class VoteConcurrencyTest {
+
+    private static final int VOTERS = 24;
+    private static final int THREADS = 8;
+    private static final int ATTEMPTS = 5;
+
+    @Autowired
+    private VoteService voteService;
+
+    @Autowired
+    private ArgumentService argumentService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private GraphCache graphCache;
+
+    @Autowired
+    private Neo4jDatabaseCleaner cleaner;
+
+    @Autowired
+    private Session session;
+
+    private Author author;
+    private AssertionNode rootNode;
+    private String majorVersionStableId;
+    private final List<String> voterStableIds = new ArrayList<>();
+
+    @Before
+    public void setup() throws Exception {
+        author = ArgumentTestUtil.registerUser(userRepository, "author", "Author");
+        rootNode = ArgumentTestUtil.createPublishedTriple(argumentService, author);
+        majorVersionStableId = rootNode.getBody().getMajorVersion().getStableId();
+        for (int i = 0; i < VOTERS; i++) {
+            voterStableIds.add(ArgumentTestUtil.registerUser(userRepository, "voter" + i, "Voter " + i)
+                    .getUser().getStableId());
+        }
+        session.clear();
+    }
+
+    @After
+    public void cleanup() {
+        cleaner.cleanDb();
+        graphCache.clear();
+    }
+
+    @Test
+    public void concurrentVotesAreAllCounted() throws Exception {
+        runConcurrently(voter -> voteService.voteNode(voter, rootNode.getStableId(), VoteType.GREAT));
+        assertCountsMatchVotes();
+        Assert.assertEquals(VOTERS, count(VoteType.GREAT));
+
+        // A GREAT on a triple is worth 10 points to the author of its links.
+        Assert.assertEquals(VOTERS * 10L, userRepository.loadAuthor(author.getStableId()).getNodePoints());
+
+        // Everybody changes their mind at once, then a third of them take it back.
+        runConcurrently(voter -> voteService.voteNode(voter, rootNode.getStableId(),
+                VoteType.values()[voterStableIds.indexOf(voter) % VoteType.values().length]));
+        assertCountsMatchVotes();
+
+        runConcurrently(voter -> {
+            if (voterStableIds.indexOf(voter) % 3 == 0) {
+                voteService.unvoteNode(rootNode.getStableId(), voter);
+            }
+        });
+        assertCountsMatchVotes();
+        Assert.assertEquals(VOTERS - VOTERS / 3, storedVotes().values().stream().mapToInt(Integer::intValue).sum());
+    }
+
+    /**
+     * Every voter runs the vote once, each in its own transaction. A vote that fails, for example on a deadlock, is
+     * retried like a user would, so that every vote eventually lands.
+     */
+    private void runConcurrently(ConcurrentRunner.Operation<String> vote) throws Exception {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        ConcurrentRunner.run(voterStableIds, THREADS, ATTEMPTS, session, voter -> transaction.execute(status -> {
+            try {
+                vote.run(voter);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+            return null;
+        }));
+    }
+
+    private void assertCountsMatchVotes() {
+        Map<VoteType, Integer> stored = storedVotes();
+        for (VoteType voteType : VoteType.values()) {
+            Assert.assertEquals(voteType.name(), stored.getOrDefault(voteType, 0).intValue(), count(voteType));
+        }
+    }
+
+    private Map<VoteType, Integer> storedVotes() {
+        session.clear();
+        Map<VoteType, Integer> votes = new EnumMap<>(VoteType.class);
+        Map<String, Object> params = Collections.singletonMap("id", majorVersionStableId);
+        for (Map<String, Object> row : session.query(
+                "match (:User)-[v:ARGUMENT_VOTE]->(:MajorVersion {stableId: {id}}) return v.voteType as type, count(v) as votes",
+                params)) {
+            votes.put(VoteType.valueOf((String) row.get("type")), ((Number) row.get("votes")).intValue());
+        }
+        return votes;
+    }
+
+    private int count(VoteType voteType) {
+        String property = voteType.name().toLowerCase() + "Votes";
+        Map<String, Object> params = Collections.singletonMap("id", majorVersionStableId);
+        Object value = session.query("match (mv:MajorVersion {stableId: {id}}) return mv." + property + " as votes",
+                params).iterator().next().get("votes");
+        return value == null ? 0 : ((Number) value).intValue();
+    }
+}
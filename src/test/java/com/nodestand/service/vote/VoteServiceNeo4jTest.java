@@ -3,10 +3,16 @@ package com.nodestand.service.vote;
 import com.nodestand.controllers.serial.EditResult;
 import com.nodestand.nodes.*;
 import com.nodestand.nodes.assertion.AssertionNode;
+import com.nodestand.nodes.comment.Comment;
+import com.nodestand.nodes.interpretation.InterpretationNode;
+import com.nodestand.nodes.repository.ArgumentNodeRepository;
 import com.nodestand.nodes.repository.UserRepository;
+import com.nodestand.nodes.source.SourceNode;
+import com.nodestand.nodes.version.MajorVersion;
 import com.nodestand.nodes.vote.VoteType;
 import com.nodestand.service.argument.ArgumentService;
 import com.nodestand.service.argument.ArgumentTestUtil;
+import com.nodestand.service.comment.CommentService;
 import com.nodestand.test.Neo4jIntegrationTest;
 import org.junit.Assert;
 import org.junit.Before;
@@ -17,8 +23,15 @@ import org.junit.runner.RunWith;
 import org.neo4j.ogm.session.Session;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -36,9 +49,27 @@ public class VoteServiceNeo4jTest extends Neo4jIntegrationTest {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private ArgumentNodeRepository argumentNodeRepository;
+
     @Autowired
     private Session session;
 
+    @Autowired
+    private TrendingNodes trendingNodes;
+
+    @Autowired
+    private CommentService commentService;
+
+    @Autowired
+    private ScoreLogger scoreLogger;
+
+    @Autowired
+    private ScoreRollups scoreRollups;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
     @Rule
     public ExpectedException thrown = ExpectedException.none();
 
@@ -73,6 +104,171 @@ public class VoteServiceNeo4jTest extends Neo4jIntegrationTest {
         Assert.assertEquals(10L, fo.getNodePoints());
     }
 
+    @Test
+    public void voteNodeTrends() throws Exception {
+
+        voteService.voteNode(bystander.getUser().getStableId(), rootNode.getStableId(), VoteType.TOUCHE);
+
+        String mvStableId = rootNode.getBody().getMajorVersion().getStableId();
+        Assert.assertTrue(trendingNodes.getScore("assertion", VoteType.TOUCHE, mvStableId) > 0);
+        Assert.assertTrue(trendingNodes.getScore(null, null, mvStableId) > 0);
+        Assert.assertEquals(0, trendingNodes.getScore("source", VoteType.TOUCHE, mvStableId), 0);
+        Assert.assertTrue(trendingNodes.getTrending("assertion", VoteType.TOUCHE, 100).stream()
+                .anyMatch(t -> t.key.equals(mvStableId)));
+    }
+
+    @Test
+    public void rolledBackVotesAreNotScored() throws Exception {
+
+        ScoreRollups.History before = scoreRollups.getHistory(firstAuthor.getStableId());
+        long published = scoreLogger.getStats().published;
+
+        try {
+            new TransactionTemplate(transactionManager).execute(status -> {
+                try {
+                    voteService.voteNode(bystander.getUser().getStableId(), rootNode.getStableId(), VoteType.GREAT);
+                } catch (NodeRulesException e) {
+                    throw new RuntimeException(e);
+                }
+                throw new IllegalStateException("Roll back");
+            });
+            Assert.fail("Expected the transaction to roll back.");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+
+        session.clear(); // The next vote comes in as a fresh request.
+        Assert.assertTrue(scoreLogger.awaitWritten(10, TimeUnit.SECONDS));
+        Assert.assertEquals(published, scoreLogger.getStats().published);
+        Assert.assertArrayEquals(before.days, scoreRollups.getHistory(firstAuthor.getStableId()).days);
+
+        voteService.voteNode(bystander.getUser().getStableId(), rootNode.getStableId(), VoteType.GREAT);
+
+        Assert.assertTrue(scoreLogger.awaitWritten(10, TimeUnit.SECONDS));
+        Assert.assertEquals(published + 1, scoreLogger.getStats().published);
+        int[] days = scoreRollups.getHistory(firstAuthor.getStableId()).days;
+        Assert.assertEquals(before.days[days.length - 1] + 10, days[days.length - 1]);
+    }
+
+    @Test
+    public void voteNodes() throws Exception {
+
+        InterpretationNode interpretation = (InterpretationNode) rootNode.getGraphChildren().iterator().next();
+        SourceNode source = (SourceNode) interpretation.getLeafNode();
+
+        Map<String, VoteType> votes = new LinkedHashMap<>();
+        votes.put(rootNode.getStableId(), VoteType.GREAT);
+        votes.put(interpretation.getStableId(), VoteType.GREAT);
+        votes.put(source.getStableId(), VoteType.WEAK);
+        voteService.voteNodes(bystander.getUser().getStableId(), votes);
+
+        session.clear();
+
+        // 10 for the assertion's one link and 2 * 2 for the source. The interpretation's text links nothing.
+        Author fo = userRepository.loadAuthor(firstAuthor.getStableId());
+        Assert.assertEquals(14L, fo.getNodePoints());
+
+        Assert.assertEquals(1, argumentNodeRepository.getNodeRich(rootNode.getStableId()).getBody().getMajorVersion().greatVotes);
+        Assert.assertEquals(1, argumentNodeRepository.getNodeRich(source.getStableId()).getBody().getMajorVersion().weakVotes);
+
+        // Changing one and repeating the others only changes the one.
+        votes.put(rootNode.getStableId(), VoteType.WEAK);
+        voteService.voteNodes(bystander.getUser().getStableId(), votes);
+
+        session.clear();
+
+        fo = userRepository.loadAuthor(firstAuthor.getStableId());
+        Assert.assertEquals(6L, fo.getNodePoints());
+        MajorVersion rootMv = argumentNodeRepository.getNodeRich(rootNode.getStableId()).getBody().getMajorVersion();
+        Assert.assertEquals(0, rootMv.greatVotes);
+        Assert.assertEquals(1, rootMv.weakVotes);
+    }
+
+    @Test
+    public void voteNodesIsAllOrNothing() throws Exception {
+
+        AssertionNode ownNode = ArgumentTestUtil.createPublishedTriple(argumentService, bystander);
+
+        Map<String, VoteType> votes = new LinkedHashMap<>();
+        votes.put(rootNode.getStableId(), VoteType.GREAT);
+        votes.put(ownNode.getStableId(), VoteType.GREAT);
+
+        try {
+            voteService.voteNodes(bystander.getUser().getStableId(), votes);
+            Assert.fail("Voted on own node.");
+        } catch (NodeRulesException e) {
+            // Expected
+        }
+
+        session.clear();
+
+        Assert.assertEquals(0L, userRepository.loadAuthor(firstAuthor.getStableId()).getNodePoints());
+        Assert.assertEquals(0, argumentNodeRepository.getNodeRich(rootNode.getStableId()).getBody().getMajorVersion().greatVotes);
+    }
+
+    @Test
+    public void votingLeavesUnloadedVotesAlone() throws Exception {
+
+        InterpretationNode interpretation = (InterpretationNode) rootNode.getGraphChildren().iterator().next();
+        String voter = bystander.getUser().getStableId();
+
+        voteService.voteNode(voter, rootNode.getStableId(), VoteType.GREAT);
+        session.clear();
+        voteService.voteNode(voter, interpretation.getStableId(), VoteType.TOUCHE);
+        session.clear();
+
+        Map<Long, VoteType> votes = userRepository.loadUserWithVotes(voter).getBodyVotes();
+        Assert.assertEquals(2, votes.size());
+        Assert.assertEquals(VoteType.GREAT, votes.get(rootNode.getBody().getMajorVersion().getId()));
+
+        session.clear();
+        voteService.unvoteNode(rootNode.getStableId(), voter);
+        session.clear();
+
+        votes = userRepository.loadUserWithVotes(voter).getBodyVotes();
+        Assert.assertEquals(1, votes.size());
+        Assert.assertEquals(VoteType.TOUCHE, votes.get(interpretation.getBody().getMajorVersion().getId()));
+    }
+
+    @Test
+    public void commentVotes() throws Exception {
+
+        long mvId = rootNode.getBody().getMajorVersion().getId();
+        Comment first = commentService.createComment("First", mvId, firstAuthor.getStableId(), firstAuthor.getUser().getNodeId());
+        Comment second = commentService.createComment("Second", mvId, firstAuthor.getStableId(), firstAuthor.getUser().getNodeId());
+        String voter = bystander.getUser().getStableId();
+
+        for (Comment comment : Arrays.asList(first, second)) {
+            session.clear();
+            User user = userRepository.loadUserWithCommentVote(voter, comment.getId());
+            user.registerCommentVote(session.load(Comment.class, comment.getId()), true);
+            session.save(user);
+        }
+
+        // Flip the first one.
+        session.clear();
+        User user = userRepository.loadUserWithCommentVote(voter, first.getId());
+        Comment loaded = session.load(Comment.class, first.getId());
+        user.registerCommentVote(loaded, false);
+        session.save(loaded);
+        session.save(user);
+
+        session.clear();
+        Map<Long, Integer> commentVotes = userRepository.loadUserWithVotes(voter).getCommentVoteMap();
+        Assert.assertEquals(-1, commentVotes.get(first.getId()).intValue());
+        Assert.assertEquals(1, commentVotes.get(second.getId()).intValue());
+        Assert.assertEquals(-1, session.load(Comment.class, first.getId()).score);
+
+        session.clear();
+        user = userRepository.loadUserWithCommentVote(voter, second.getId());
+        user.revokeCommentVote(session.load(Comment.class, second.getId()));
+        session.save(user);
+
+        session.clear();
+        commentVotes = userRepository.loadUserWithVotes(voter).getCommentVoteMap();
+        Assert.assertEquals(Collections.singletonMap(first.getId(), -1), commentVotes);
+    }
+
     @Test
     public void unvoteNode() throws Exception {
         voteNode();
@@ -98,9 +294,9 @@ public class VoteServiceNeo4jTest extends Neo4jIntegrationTest {
         String body = rootNode.getBody().getBody() + " {{[" + child.getBody().getMajorVersion().getStableId() +
                 "]hello}}";
         argumentService.editAssertion(secondAuthor.getUser().getNodeId(), editResult.getEditedNode().getId(),
-                "title", "qual", body, links);
+                "title", "qual", body, links, null);
 
-        argumentService.publishNode(secondAuthor.getUser().getNodeId(), editResult.getEditedNode().getId());
+        argumentService.publishNode(secondAuthor.getUser().getNodeId(), editResult.getEditedNode().getId(), null);
 
         session.clear();
 
@@ -149,9 +345,9 @@ public class VoteServiceNeo4jTest extends Neo4jIntegrationTest {
         String body = rootNode.getBody().getBody() + " {{[" + child.getBody().getMajorVersion().getStableId() +
                 "]hello}}";
         argumentService.editAssertion(secondAuthor.getUser().getNodeId(), editResult.getEditedNode().getId(),
-                "title", "qual", body, links);
+                "title", "qual", body, links, null);
 
-        argumentService.publishNode(secondAuthor.getUser().getNodeId(), editResult.getEditedNode().getId());
+        argumentService.publishNode(secondAuthor.getUser().getNodeId(), editResult.getEditedNode().getId(), null);
 
         session.clear();
 
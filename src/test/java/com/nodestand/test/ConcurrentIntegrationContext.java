@@ -0,0 +1,63 @@
+package com.nodestand.test;
+
+import com.nodestand.SynchronizingTransactionManager;
+import org.neo4j.ogm.session.Session;
+import org.neo4j.ogm.session.SessionFactory;
+import org.springframework.beans.factory.config.CustomScopeConfigurer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.annotation.Scope;
+import org.springframework.context.annotation.ScopedProxyMode;
+import org.springframework.context.support.PropertySourcesPlaceholderConfigurer;
+import org.springframework.context.support.SimpleThreadScope;
+import org.springframework.data.neo4j.config.Neo4jConfiguration;
+import org.springframework.data.neo4j.repository.config.EnableNeo4jRepositories;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+
+import java.io.IOException;
+
+/**
+ * Like {@link IntegrationContext}, but safe to call from several threads at once. In production the Session is
+ * request scoped; here each thread gets its own, which is the closest thing a test has to a request. Call
+ * session.clear() between operations to mimic a fresh request on the same thread.
+ */
+@org.springframework.context.annotation.Configuration
+@EnableNeo4jRepositories("com.nodestand.nodes")
+@EnableTransactionManagement
+@ComponentScan("com.nodestand.service")
+@Profile("concurrent")
+public class ConcurrentIntegrationContext extends Neo4jConfiguration {
+
+    @Bean
+    public static CustomScopeConfigurer threadScope() {
+        CustomScopeConfigurer configurer = new CustomScopeConfigurer();
+        configurer.addScope("thread", new SimpleThreadScope());
+        return configurer;
+    }
+
+    @Override
+    public SessionFactory getSessionFactory() {
+        return IntegrationContext.sharedSessionFactory();
+    }
+
+    @Bean
+    public static PropertySourcesPlaceholderConfigurer properties() throws IOException {
+        return IntegrationContext.testProperties();
+    }
+
+    @Override
+    @Bean
+    @Scope(value = "thread", proxyMode = ScopedProxyMode.TARGET_CLASS)
+    public Session getSession() throws Exception {
+        return super.getSession();
+    }
+
+    @Override
+    @Bean
+    public PlatformTransactionManager transactionManager() throws Exception {
+        return new SynchronizingTransactionManager(super.transactionManager());
+    }
+
+}
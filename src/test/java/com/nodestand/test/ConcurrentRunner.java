@@ -0,0 +1,59 @@
+package com.nodestand.test;
+
+import org.neo4j.ogm.session.Session;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Runs an operation for many items at once from a pool of threads, the way concurrent requests would, for tests on
+ * a {@link ConcurrentIntegrationContext}.
+ */
+public class ConcurrentRunner {
+
+    public interface Operation<T> {
+        void run(T item) throws Exception;
+    }
+
+    private ConcurrentRunner() {
+    }
+
+    /**
+     * Runs the operation once for each item, all of them released at the same moment. An operation that fails, for
+     * example on a deadlock, is tried again like a user would, until it has failed attempts times. The session is
+     * cleared after every attempt to mimic a fresh request on the same thread.
+     */
+    public static <T> void run(Collection<T> items, int threads, int attempts, Session session,
+                               Operation<T> operation) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (T item : items) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (int attempt = 1; ; attempt++) {
+                        try {
+                            operation.run(item);
+                            return null;
+                        } catch (Exception e) {
+                            if (attempt == attempts) {
+                                throw e;
+                            }
+                        } finally {
+                            session.clear();
+                        }
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
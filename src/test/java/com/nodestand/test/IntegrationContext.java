@@ -2,15 +2,22 @@ package com.nodestand.test;
 
 
 import org.neo4j.ogm.config.Configuration;
+import com.nodestand.SynchronizingTransactionManager;
 import org.neo4j.ogm.session.Session;
 import org.neo4j.ogm.session.SessionFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Profile;
+import org.springframework.context.support.PropertySourcesPlaceholderConfigurer;
 import org.springframework.data.neo4j.config.Neo4jConfiguration;
 import org.springframework.data.neo4j.repository.config.EnableNeo4jRepositories;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Properties;
+
 @org.springframework.context.annotation.Configuration
 @EnableNeo4jRepositories("com.nodestand.nodes")
 @EnableTransactionManagement
@@ -18,12 +25,41 @@ import org.springframework.transaction.annotation.EnableTransactionManagement;
 @Profile("integration")
 public class IntegrationContext extends Neo4jConfiguration {
 
+    private static SessionFactory sessionFactory;
+
+    /**
+     * OGM keeps a single driver for the whole JVM and every new SessionFactory replaces it, leaving the sessions of
+     * the old one pointing at a closed database. So every test context shares this one.
+     */
+    static synchronized SessionFactory sharedSessionFactory() {
+        if (sessionFactory == null) {
+            Configuration config = new Configuration();
+            config.driverConfiguration()
+                    .setDriverClassName("org.neo4j.ogm.drivers.embedded.driver.EmbeddedDriver");
+            sessionFactory = new SessionFactory(config, "com.nodestand.nodes");
+        }
+        return sessionFactory;
+    }
+
     @Override
     public SessionFactory getSessionFactory() {
-        Configuration config = new Configuration();
-        config.driverConfiguration()
-                .setDriverClassName("org.neo4j.ogm.drivers.embedded.driver.EmbeddedDriver");
-        return new SessionFactory(config, "com.nodestand.nodes");
+        return sharedSessionFactory();
+    }
+
+    /**
+     * Production has to say where score history is kept, so each test context gets a fresh directory of its own.
+     */
+    static PropertySourcesPlaceholderConfigurer testProperties() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("scoreStore.directory", Files.createTempDirectory("score-events").toString());
+        PropertySourcesPlaceholderConfigurer configurer = new PropertySourcesPlaceholderConfigurer();
+        configurer.setProperties(properties);
+        return configurer;
+    }
+
+    @Bean
+    public static PropertySourcesPlaceholderConfigurer properties() throws IOException {
+        return testProperties();
     }
 
     @Override
@@ -32,4 +68,10 @@ public class IntegrationContext extends Neo4jConfiguration {
         return super.getSession();
     }
 
+    @Override
+    @Bean
+    public PlatformTransactionManager transactionManager() throws Exception {
+        return new SynchronizingTransactionManager(super.transactionManager());
+    }
+
 }
@@ -0,0 +1,121 @@
+package com.nodestand.test;
+
+import com.nodestand.controllers.serial.QuickEdge;
+import com.nodestand.controllers.serial.QuickGraphResponse;
+import com.nodestand.nodes.ArgumentBody;
+import com.nodestand.nodes.ArgumentNode;
+import com.nodestand.nodes.Author;
+import com.nodestand.nodes.Node;
+import com.nodestand.nodes.assertion.AssertionBody;
+import com.nodestand.nodes.assertion.AssertionNode;
+import com.nodestand.nodes.interpretation.InterpretationBody;
+import com.nodestand.nodes.interpretation.InterpretationNode;
+import com.nodestand.nodes.source.SourceBody;
+import com.nodestand.nodes.source.SourceNode;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Builds argument graphs in memory, without a database, for tests and benchmarks that only care about the shape of
+ * the objects. Ids are assigned the way neo4j-ogm would assign them after a save.
+ */
+public class SyntheticGraph {
+
+    private final List<Author> authors = new ArrayList<>();
+    private final Set<ArgumentNode> nodes = new HashSet<>();
+    private long nextId = 1;
+
+    private SyntheticGraph(int authorCount) {
+        for (int i = 0; i < authorCount; i++) {
+            Author author = new Author(null, "Author " + i);
+            setId(author, "nodeId");
+            authors.add(author);
+        }
+    }
+
+    /**
+     * A tree of assertions, width children per assertion and depth levels of them below the root. Every assertion on
+     * the bottom level is supported by an interpretation of its own source.
+     */
+    public static QuickGraphResponse tree(int depth, int width, int authorCount) {
+        SyntheticGraph graph = new SyntheticGraph(authorCount);
+        AssertionNode root = graph.assertionTree(depth, width);
+        return graph.toResponse(root);
+    }
+
+    private AssertionNode assertionTree(int depth, int width) {
+        List<Node> children = new ArrayList<>();
+        if (depth > 0) {
+            for (int i = 0; i < width; i++) {
+                children.add(assertionTree(depth - 1, width));
+            }
+        } else {
+            SourceNode source = register(new SourceBody("Source " + nextId, "Qualifier", nextAuthor(), "http://example.com/" + nextId).constructNode());
+            InterpretationNode interpretation = register(new InterpretationBody("Interpretation " + nextId, "Qualifier",
+                    "What the source says, more or less.", nextAuthor()).constructNode());
+            interpretation.setLeafNode(source);
+            children.add(interpretation);
+        }
+
+        StringBuilder text = new StringBuilder("Because ");
+        for (Node child : children) {
+            text.append("{{[").append(child.getBody().getMajorVersion().getStableId()).append("]this}} ");
+        }
+
+        AssertionNode assertion = register(new AssertionBody("Assertion " + nextId, "Qualifier", text.toString(), nextAuthor()).constructNode());
+        for (Node child : children) {
+            assertion.supportedBy(child);
+        }
+        return assertion;
+    }
+
+    private Author nextAuthor() {
+        return authors.get((int) (nextId % authors.size()));
+    }
+
+    private <T extends ArgumentNode> T register(T node) {
+        ArgumentBody body = node.getBody();
+        body.setNode(node);
+        body.setIsPublic(true);
+        setId(node, "id");
+        setId(body, "id");
+        setId(body.getMajorVersion(), "id");
+        body.getMajorVersion().greatVotes = (int) (nextId % 7);
+        body.getMajorVersion().trashVotes = (int) (nextId % 3);
+        nodes.add(node);
+        return node;
+    }
+
+    private QuickGraphResponse toResponse(AssertionNode root) {
+        Set<QuickEdge> edges = new HashSet<>();
+        for (ArgumentNode node : nodes) {
+            for (Node child : node.getGraphChildren()) {
+                edges.add(new QuickEdge(node.getId(), child.getId()));
+            }
+        }
+        return new QuickGraphResponse(nodes, edges, root.getId(), root.getStableId(), new HashSet<>());
+    }
+
+    private void setId(Object entity, String fieldName) {
+        try {
+            Class<?> type = entity.getClass();
+            while (type != null) {
+                for (Field field : type.getDeclaredFields()) {
+                    if (field.getName().equals(fieldName)) {
+                        field.setAccessible(true);
+                        field.set(entity, nextId++);
+                        return;
+                    }
+                }
+                type = type.getSuperclass();
+            }
+            throw new IllegalArgumentException(entity.getClass() + " has no field " + fieldName);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.nodestand.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class BodyLinkScannerTest {
+
+    /**
+     * The pattern the scanner replaced. It is the reference the scanner has to agree with.
+     */
+    private static final Pattern LINK_PATTERN = Pattern.compile("\\{\\{\\[([0-9a-z]{1,25})\\](.+?)(?=}})\\}\\}");
+
+    private static final String[] FRAGMENTS = {
+            "{", "{{", "{{[", "}", "}}", "]", "[", "a", "z", "0", "9", "q7", "A", "-", " ", "_",
+            "\n", "\r", "\r\n", "\u0085", "\u2028", "\u2029", "\t", "\u00e9", "\uD83D\uDE00", "{{[abc]", "}}}"
+    };
+
+    @Test
+    public void findsLinksAndOffsets() {
+        String text = "Hello, {{[34ab]this}} text has some {links}} embedded {{[2cd]in it}}.";
+
+        List<String> links = scan(text);
+
+        Assert.assertEquals(2, links.size());
+        Assert.assertEquals("10:34ab|15:this", links.get(0));
+        Assert.assertEquals("57:2cd|61:in it", links.get(1));
+    }
+
+    @Test
+    public void edgeCasesMatchThePattern() {
+        String[] cases = {
+                "",
+                "{{[a]b}}",
+                "{{[]b}}",
+                "{{[a]}}",
+                "{{[a]}}}",
+                "{{[a]}}}}",
+                "{{{[a]b}}",
+                "{{[A]b}}",
+                "{{[a]b\n}}",
+                "{{[a]b}\n}",
+                "{{[a]\n{{[b]c}}",
+                "{{[a]b {{[c]d}} e}}",
+                "{{[abcdefghijklmnopqrstuvwxy]z}}",
+                "{{[abcdefghijklmnopqrstuvwxyz]z}}",
+                "{{[a]b\u2028c}} {{[d]e}}",
+                "{{[a]b}} {{[a]b}}",
+                "{{[a]\uD83D\uDE00}}",
+                "{{[a]b",
+        };
+
+        for (String text : cases) {
+            Assert.assertEquals("Mismatch on " + text, regex(text), scan(text));
+        }
+    }
+
+    @Test
+    public void randomTextMatchesThePattern() {
+        Random random = new Random(20170101);
+
+        for (int round = 0; round < 50000; round++) {
+            String text = randomText(random);
+            Assert.assertEquals("Mismatch on " + text, regex(text), scan(text));
+        }
+    }
+
+    private static String randomText(Random random) {
+        StringBuilder text = new StringBuilder();
+        int parts = random.nextInt(30);
+        for (int i = 0; i < parts; i++) {
+            if (random.nextInt(4) == 0) {
+                // Something close to a real link, with an id that may be too short or too long.
+                text.append("{{[");
+                int idLength = random.nextInt(28);
+                for (int j = 0; j < idLength; j++) {
+                    text.append("0123456789abcdefghijklmnopqrstuvwxyz".charAt(random.nextInt(36)));
+                }
+                text.append(random.nextInt(8) == 0 ? "" : "]");
+            } else {
+                text.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+            }
+        }
+        return text.toString();
+    }
+
+    private static List<String> scan(String text) {
+        List<String> links = new ArrayList<>();
+        BodyLinkScanner.scan(text, (t, idStart, idEnd, labelStart, labelEnd) ->
+                links.add(describe(t, idStart, idEnd, labelStart, labelEnd)));
+        return links;
+    }
+
+    private static List<String> regex(String text) {
+        List<String> links = new ArrayList<>();
+        Matcher matcher = LINK_PATTERN.matcher(text);
+        while (matcher.find()) {
+            links.add(describe(text, matcher.start(1), matcher.end(1), matcher.start(2), matcher.end(2)));
+        }
+        return links;
+    }
+
+    private static String describe(String text, int idStart, int idEnd, int labelStart, int labelEnd) {
+        return idStart + ":" + text.substring(idStart, idEnd) + "|" + labelStart + ":" + text.substring(labelStart, labelEnd);
+    }
+}
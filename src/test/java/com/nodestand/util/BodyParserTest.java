@@ -1,12 +1,14 @@
 package com.nodestand.util;
 
+import com.nodestand.nodes.Node;
+import com.nodestand.nodes.NodeInputException;
+import com.nodestand.nodes.NodeRulesException;
+import com.nodestand.nodes.assertion.AssertionBody;
+import com.nodestand.nodes.assertion.AssertionNode;
 import org.junit.Assert;
 import org.junit.Test;
 
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
 
 public class BodyParserTest {
 
@@ -24,4 +26,42 @@ public class BodyParserTest {
         Assert.assertEquals(expectedSet, actualSet);
     }
 
+
+    @Test
+    public void linksAreSortedByFirstAppearance() throws NodeRulesException {
+        AssertionNode a = child("A");
+        AssertionNode b = child("B");
+        String body = "First " + link(b) + ", then " + link(a) + " and " + link(b) + " again.";
+
+        String[] order = BodyParser.validateAndSortLinks(Arrays.<Node>asList(a, b), body, null);
+
+        Assert.assertArrayEquals(new String[] {b.getStableId(), a.getStableId()}, order);
+    }
+
+    @Test(expected = NodeInputException.class)
+    public void unexpectedLinkIsRefused() throws NodeRulesException {
+        AssertionNode a = child("A");
+        BodyParser.validateAndSortLinks(Collections.<Node>singletonList(a), link(a) + link(child("B")), null);
+    }
+
+    @Test(expected = NodeInputException.class)
+    public void unlinkedChildIsRefused() throws NodeRulesException {
+        AssertionNode a = child("A");
+        BodyParser.validateAndSortLinks(Arrays.<Node>asList(a, child("B")), link(a), null);
+    }
+
+    @Test(expected = NodeInputException.class)
+    public void twoChildrenOfOneMajorVersionAreRefused() throws NodeRulesException {
+        AssertionNode a = child("A");
+        AssertionNode sameMajorVersion = new AssertionBody("A2", "Q", "Body", null, a.getBody().getMajorVersion()).constructNode();
+        BodyParser.validateAndSortLinks(Arrays.<Node>asList(a, sameMajorVersion), link(a), null);
+    }
+
+    private static AssertionNode child(String title) {
+        return new AssertionBody(title, "Q", "Body", null).constructNode();
+    }
+
+    private static String link(Node child) {
+        return "{{[" + child.getBody().getMajorVersion().getStableId() + "]link}}";
+    }
 }
@@ -0,0 +1,100 @@
+package com.nodestand.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class RingBufferTest {
+
+    @Test
+    public void capacityRoundsUpToAPowerOfTwo() {
+        Assert.assertEquals(8, new RingBuffer<>(5).capacity());
+        Assert.assertEquals(8, new RingBuffer<>(8).capacity());
+        Assert.assertEquals(1, new RingBuffer<>(1).capacity());
+    }
+
+    @Test
+    public void fifoAndRejectsWhenFull() {
+        RingBuffer<Integer> buffer = new RingBuffer<>(4);
+        for (int i = 0; i < 4; i++) {
+            Assert.assertTrue(buffer.offer(i));
+        }
+        Assert.assertFalse(buffer.offer(4));
+        Assert.assertEquals(4, buffer.size());
+
+        List<Integer> drained = new ArrayList<>();
+        Assert.assertEquals(3, buffer.drain(drained::add, 3));
+        Assert.assertTrue(buffer.offer(5));
+        Assert.assertEquals(2, buffer.drain(drained::add, 10));
+        Assert.assertEquals(0, buffer.drain(drained::add, 10));
+
+        Assert.assertEquals(Arrays.asList(0, 1, 2, 3, 5), drained);
+    }
+
+    @Test
+    public void throwingConsumerDoesNotWedgeTheBuffer() {
+        RingBuffer<Integer> buffer = new RingBuffer<>(4);
+        buffer.offer(1);
+        buffer.offer(2);
+        try {
+            buffer.drain(i -> {
+                throw new IllegalStateException();
+            }, 10);
+            Assert.fail();
+        } catch (IllegalStateException expected) {
+        }
+        List<Integer> drained = new ArrayList<>();
+        buffer.drain(drained::add, 10);
+        Assert.assertEquals(Collections.singletonList(2), drained);
+    }
+
+    @Test
+    public void concurrentProducersLoseNothing() throws Exception {
+        int producers = 4;
+        int perProducer = 200000;
+        RingBuffer<Long> buffer = new RingBuffer<>(1024);
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        CountDownLatch start = new CountDownLatch(1);
+
+        for (int p = 0; p < producers; p++) {
+            long base = (long) p * perProducer;
+            executor.submit(() -> {
+                start.await();
+                for (long i = 0; i < perProducer; i++) {
+                    while (!buffer.offer(base + i)) {
+                        Thread.yield();
+                    }
+                }
+                return null;
+            });
+        }
+
+        long[] lastSeen = new long[producers];
+        Arrays.fill(lastSeen, -1);
+        long[] received = {0};
+        start.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (received[0] < (long) producers * perProducer && System.nanoTime() < deadline) {
+            buffer.drain(value -> {
+                int producer = (int) (value / perProducer);
+                long sequence = value % perProducer;
+                // Each producer's values arrive in the order it offered them.
+                Assert.assertEquals(lastSeen[producer] + 1, sequence);
+                lastSeen[producer] = sequence;
+                received[0]++;
+            }, 256);
+        }
+        executor.shutdown();
+
+        Assert.assertEquals((long) producers * perProducer, received[0]);
+        Assert.assertEquals(0, buffer.size());
+    }
+}